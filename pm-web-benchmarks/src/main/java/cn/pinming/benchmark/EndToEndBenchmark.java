@@ -0,0 +1,88 @@
+package cn.pinming.benchmark;
+
+import cn.pinming.fixture.ClientFixture;
+import cn.pinming.fixture.StubServer;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerRoutes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过代理向进程内的 {@link StubServer} 发出请求, 同时记录吞吐量和耗时分布; 服务返回固定的 JSON, 只衡量客户端自身的开销;
+ * 并发数用 -t 调整, 比如 {@code java -jar target/benchmarks.jar EndToEnd -t 16}
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(2)
+public class EndToEndBenchmark {
+
+    private StubServer server;
+
+    private ClientFixture<UserApi> fixture;
+
+    private UserApi userApi;
+
+    private Mono<User> body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new StubServer(EndToEndBenchmark::routes);
+        fixture = new ClientFixture<>(UserApi.class, server.url());
+        userApi = fixture.client();
+        body = Mono.just(Payloads.user(1));
+    }
+
+    private static void routes(HttpServerRoutes routes) {
+        byte[] user = Payloads.json(Payloads.user(1));
+        byte[] users = Payloads.json(Payloads.users(Payloads.LIST_SIZE));
+        routes.get("/users/{id}", (request, response) -> response.header("Content-Type", "application/json")
+                        .send(Mono.fromSupplier(() -> Unpooled.wrappedBuffer(user))))
+                .get("/users", (request, response) -> response.header("Content-Type", "application/json")
+                        .send(Mono.fromSupplier(() -> Unpooled.wrappedBuffer(users))))
+                // 原样返回请求体
+                .post("/users", (request, response) -> response.header("Content-Type", "application/json")
+                        .send(request.receive().retain()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Object get() {
+        return userApi.get("1", "trace").block();
+    }
+
+    @Benchmark
+    public Object list() {
+        return userApi.list().collectList().block();
+    }
+
+    @Benchmark
+    public Object create() {
+        return userApi.create(body).block();
+    }
+}
@@ -0,0 +1,95 @@
+package cn.pinming.benchmark;
+
+import cn.pinming.http.handler.RequestInfo;
+import cn.pinming.interceptor.Interceptor;
+import cn.pinming.interceptor.InterceptorChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拦截器链的前置、后置处理开销, 拦截器本身什么都不做
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InterceptorChainBenchmark {
+
+    @Param({"0", "1", "4"})
+    private int interceptors;
+
+    private InterceptorChain chain;
+
+    private ClientRequest request;
+
+    private ClientResponse response;
+
+    private RequestInfo requestInfo;
+
+    @Setup
+    public void setUp() {
+        List<Interceptor> list = new ArrayList<>();
+        for (int i = 0; i < interceptors; i++) {
+            list.add(new NoopInterceptor());
+        }
+        chain = new InterceptorChain(list);
+        request = ClientRequest.create(HttpMethod.GET, URI.create("http://127.0.0.1:8080/users/1")).build();
+        response = ClientResponse.create(HttpStatus.OK).build();
+        requestInfo = new RequestInfo();
+    }
+
+    @TearDown
+    public void tearDown() {
+        chain.destroy();
+    }
+
+    @Benchmark
+    public Object pre() {
+        return chain.applyPre(request).block();
+    }
+
+    @Benchmark
+    public Object post() {
+        return chain.applyPost(request, response, requestInfo).block();
+    }
+
+    private static class NoopInterceptor implements Interceptor {
+
+        @Override
+        public boolean applyPre(ClientRequest clientRequest) {
+            return true;
+        }
+
+        @Override
+        public void applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+        }
+
+        @Override
+        public void applyError(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+        }
+    }
+}
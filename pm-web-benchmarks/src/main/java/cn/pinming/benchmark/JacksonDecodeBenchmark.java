@@ -0,0 +1,99 @@
+package cn.pinming.benchmark;
+
+import cn.pinming.http.codec.CachedObjectMapper;
+import cn.pinming.http.codec.CodecRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端使用的 JSON 解码器与直接调用 Jackson 的对比, 报文是单个对象和 100 个元素的数组
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JacksonDecodeBenchmark {
+
+    private static final ResolvableType USER_TYPE = ResolvableType.forClass(User.class);
+
+    private static final ResolvableType USERS_TYPE = ResolvableType.forClassWithGenerics(List.class, User.class);
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private Jackson2JsonDecoder decoder;
+
+    private CachedObjectMapper mapper;
+
+    private byte[] user;
+
+    private byte[] users;
+
+    @Setup
+    public void setUp() {
+        CodecRegistry codecs = new CodecRegistry();
+        decoder = CodecRegistry.jsonDecoder(codecs.getObjectMapper());
+        mapper = new CachedObjectMapper(codecs.getObjectMapper());
+        user = Payloads.json(Payloads.user(1));
+        users = Payloads.json(Payloads.users(Payloads.LIST_SIZE));
+    }
+
+    private Flux<DataBuffer> body(byte[] bytes) {
+        return Flux.just(bufferFactory.wrap(bytes));
+    }
+
+    @Benchmark
+    public Object decoderSingle() {
+        return decoder.decodeToMono(body(user), USER_TYPE, MediaType.APPLICATION_JSON, Collections.emptyMap()).block();
+    }
+
+    /**
+     * 返回 Flux 时按元素逐个解码
+     */
+    @Benchmark
+    public Object decoderList() {
+        return decoder.decode(body(users), USER_TYPE, MediaType.APPLICATION_JSON, Collections.emptyMap()).collectList().block();
+    }
+
+    @Benchmark
+    public Object jacksonSingle() throws IOException {
+        return mapper.reader(User.class).readValue(user);
+    }
+
+    @Benchmark
+    public Object jacksonList() throws IOException {
+        return mapper.reader(USERS_TYPE.getType()).readValue(users);
+    }
+
+    /**
+     * 对照: 每次新建 ObjectMapper, 即每个客户端一个 mapper 且缓存没有预热时的代价
+     */
+    @Benchmark
+    public Object newObjectMapperSingle() throws IOException {
+        return new ObjectMapper().readValue(user, User.class);
+    }
+}
@@ -0,0 +1,75 @@
+package cn.pinming.benchmark;
+
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.util.MetaInfoUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次调用都反射解析方法({@link MetaInfoUtil#extractMethodInfo}) 与使用预先编译的调用计划的对比
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MetaInfoUtilBenchmark {
+
+    private Method get;
+
+    private Method create;
+
+    private InvocationPlan getPlan;
+
+    private InvocationPlan createPlan;
+
+    private Object[] getArgs;
+
+    private Object[] createArgs;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        get = UserApi.class.getMethod("get", String.class, String.class);
+        create = UserApi.class.getMethod("create", Mono.class);
+        getPlan = MetaInfoUtil.compileInvocationPlan(get);
+        createPlan = MetaInfoUtil.compileInvocationPlan(create);
+        getArgs = new Object[]{"1", "trace"};
+        createArgs = new Object[]{Mono.just(Payloads.user(1))};
+    }
+
+    @Benchmark
+    public Object extractGet() {
+        return MetaInfoUtil.extractMethodInfo(get, getArgs);
+    }
+
+    @Benchmark
+    public Object extractCreate() {
+        return MetaInfoUtil.extractMethodInfo(create, createArgs);
+    }
+
+    @Benchmark
+    public Object bindGet() {
+        return getPlan.bind(getArgs);
+    }
+
+    @Benchmark
+    public Object bindCreate() {
+        return createPlan.bind(createArgs);
+    }
+}
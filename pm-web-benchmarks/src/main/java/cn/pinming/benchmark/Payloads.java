@@ -0,0 +1,42 @@
+package cn.pinming.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基准测试和桩服务共用的报文
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+public final class Payloads {
+
+    public static final int LIST_SIZE = 100;
+
+    private Payloads() {
+    }
+
+    public static User user(int i) {
+        return new User(String.valueOf(i), "user-" + i, 20 + i % 50, "user-" + i + "@pinming.cn", Arrays.asList("admin", "user"));
+    }
+
+    public static List<User> users(int size) {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(user(i));
+        }
+        return users;
+    }
+
+    public static byte[] json(Object value) {
+        try {
+            return new ObjectMapper().writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cn.pinming.benchmark;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.fixture.ClientFixture;
+import cn.pinming.util.MetaInfoUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用代理方法的开销: 分发、绑定参数、组装 invoker 和请求, 不订阅所以不会发出请求;
+ * 对比 jdk 动态代理和编译时生成的实现类
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ProxyInvocationBenchmark {
+
+    private ClientFixture<UserApi> fixture;
+
+    private ClientFixture<UserApi> generatedFixture;
+
+    private UserApi userApi;
+
+    private UserApi generatedUserApi;
+
+    private InvocationPlan plan;
+
+    private Object[] args;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        // 不会真正连接这个地址
+        fixture = new ClientFixture<>(UserApi.class, "http://127.0.0.1:1");
+        userApi = fixture.client();
+        generatedFixture = new ClientFixture<>(UserApi.class, "http://127.0.0.1:1", new PmWebClientProperties(), Collections.emptyList(), true);
+        generatedUserApi = generatedFixture.client();
+        plan = MetaInfoUtil.compileInvocationPlan(UserApi.class.getMethod("get", String.class, String.class));
+        args = new Object[]{"1", "trace"};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+        generatedFixture.close();
+    }
+
+    @Benchmark
+    public Object proxyCall() {
+        return userApi.get("1", "trace");
+    }
+
+    @Benchmark
+    public Object generatedCall() {
+        return generatedUserApi.get("1", "trace");
+    }
+
+    /**
+     * 对照: 只绑定参数
+     */
+    @Benchmark
+    public Object planBind() {
+        return plan.bind(args);
+    }
+}
@@ -0,0 +1,62 @@
+package cn.pinming.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 url 模板和路径参数生成请求地址, 与 WebClient 的 uri(String, Map) 走同样的逻辑
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class UriExpansionBenchmark {
+
+    @Param({"URI_COMPONENT", "TEMPLATE_AND_VALUES"})
+    private DefaultUriBuilderFactory.EncodingMode encodingMode;
+
+    private DefaultUriBuilderFactory factory;
+
+    private Map<String, Object> noVariables;
+
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        factory = new DefaultUriBuilderFactory("http://127.0.0.1:8080");
+        factory.setEncodingMode(encodingMode);
+        noVariables = new LinkedHashMap<>();
+        variables = new LinkedHashMap<>();
+        variables.put("projectId", "10086");
+        variables.put("id", "张三 li");
+    }
+
+    @Benchmark
+    public Object plain() {
+        return factory.expand("/users", noVariables);
+    }
+
+    @Benchmark
+    public Object pathVariables() {
+        return factory.expand("/projects/{projectId}/users/{id}", variables);
+    }
+}
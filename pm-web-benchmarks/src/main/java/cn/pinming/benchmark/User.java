@@ -0,0 +1,29 @@
+package cn.pinming.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 基准测试使用的典型报文
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class User {
+
+    private String id;
+
+    private String name;
+
+    private int age;
+
+    private String email;
+
+    private List<String> roles;
+}
@@ -0,0 +1,30 @@
+package cn.pinming.benchmark;
+
+import cn.pinming.annotation.ApiServer;
+import cn.pinming.fixture.ClientFixture;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 基准测试的客户端接口, 地址由 {@link ClientFixture} 在启动桩服务后解析
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+@ApiServer(ClientFixture.URL_PLACEHOLDER)
+public interface UserApi {
+
+    @GetMapping("/users/{id}")
+    Mono<User> get(@PathVariable("id") String id, @RequestHeader("X-Trace-Id") String traceId);
+
+    @GetMapping("/users")
+    Flux<User> list();
+
+    @PostMapping("/users")
+    Mono<User> create(@RequestBody Mono<User> user);
+}
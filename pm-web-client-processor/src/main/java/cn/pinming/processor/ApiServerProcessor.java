@@ -0,0 +1,152 @@
+package cn.pinming.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 为 {@code @ApiServer} 接口生成实现类, 运行时由 GeneratedProxyCreator 加载
+ * <p>
+ * 生成不了的接口(泛型接口、泛型方法、返回值不是 Mono/Flux 等)只输出提示, 运行时继续使用动态代理
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/08 10:00
+ */
+public class ApiServerProcessor extends AbstractProcessor {
+
+    static final String API_SERVER = "cn.pinming.annotation.ApiServer";
+
+    /**
+     * 与 GeneratedProxyCreator#GENERATED_SUFFIX 一致
+     */
+    static final String GENERATED_SUFFIX = "_PmWebClient";
+
+    private Elements elements;
+
+    private Filer filer;
+
+    private Messager messager;
+
+    private ClientSourceWriter sourceWriter;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.filer = processingEnv.getFiler();
+        this.messager = processingEnv.getMessager();
+        this.sourceWriter = new ClientSourceWriter(processingEnv.getTypeUtils());
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(API_SERVER);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement apiServer = elements.getTypeElement(API_SERVER);
+        if (apiServer == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(apiServer)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<ExecutableElement> methods = clientMethods(type);
+            String reason = unsupportedReason(type, methods);
+            if (reason != null) {
+                messager.printMessage(Diagnostic.Kind.NOTE, String.format("%s %s, 运行时使用动态代理", type.getQualifiedName(), reason), type);
+                continue;
+            }
+            generate(type, methods);
+        }
+        return false;
+    }
+
+    /**
+     * 需要发出请求的方法, 包括从父接口继承的; default 和 static 方法不需要实现
+     */
+    private List<ExecutableElement> clientMethods(TypeElement type) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.ABSTRACT)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    private static String unsupportedReason(TypeElement type, List<ExecutableElement> methods) {
+        if (!type.getTypeParameters().isEmpty()) {
+            return "是泛型接口";
+        }
+        for (Element enclosing = type; enclosing.getKind() != ElementKind.PACKAGE; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                return "是私有的";
+            }
+        }
+        for (ExecutableElement method : methods) {
+            if (!method.getTypeParameters().isEmpty()) {
+                return String.format("的方法 %s 是泛型方法", method.getSimpleName());
+            }
+            if (method.getReturnType().getKind() != TypeKind.DECLARED) {
+                return String.format("的方法 %s 没有返回 Mono 或 Flux", method.getSimpleName());
+            }
+        }
+        return null;
+    }
+
+    private void generate(TypeElement type, List<ExecutableElement> methods) {
+        PackageElement pkg = elements.getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String className = generatedSimpleName(type) + GENERATED_SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try {
+            JavaFileObject file = filer.createSourceFile(qualifiedName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(sourceWriter.write(packageName, className, type, methods));
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, String.format("生成 %s 失败: %s", qualifiedName, e), type);
+        }
+    }
+
+    /**
+     * 内部接口用 _ 连接外部类名, 比如 Outer.Api 生成 Outer_Api_PmWebClient
+     */
+    private static String generatedSimpleName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element enclosing = type.getEnclosingElement(); enclosing.getKind() != ElementKind.PACKAGE;
+             enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,213 @@
+package cn.pinming.processor;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 生成实现类的源码
+ * <p>
+ * {@code @PathVariable} 和 Mono 类型的 {@code @RequestBody} 直接生成绑定代码,
+ * 其他参数调用 MethodDispatcher 中创建代理时生成好的绑定器, 保证与动态代理的行为一致
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/08 10:00
+ */
+class ClientSourceWriter {
+
+    private static final String PATH_VARIABLE = "org.springframework.web.bind.annotation.PathVariable";
+
+    private static final String REQUEST_BODY = "org.springframework.web.bind.annotation.RequestBody";
+
+    private static final String MONO = "reactor.core.publisher.Mono";
+
+    /**
+     * 会生成参数绑定器的注解, 一个参数上有多个时交给绑定器处理
+     */
+    private static final String[] BINDING_ANNOTATIONS = {
+            PATH_VARIABLE,
+            REQUEST_BODY,
+            "org.springframework.web.bind.annotation.RequestHeader",
+            "cn.pinming.annotation.RequestForm",
+            "cn.pinming.annotation.PlainRequestBody",
+            "cn.pinming.annotation.DownloadTo"
+    };
+
+    private static final String METHOD_DISPATCHER = "cn.pinming.proxy.MethodDispatcher";
+
+    private static final String CLIENT_DISPATCHERS = "cn.pinming.proxy.ClientDispatchers";
+
+    private static final String METHOD_INFO = "cn.pinming.bean.MethodInfo";
+
+    private final Types types;
+
+    ClientSourceWriter(Types types) {
+        this.types = types;
+    }
+
+    String write(String packageName, String className, TypeElement type, List<ExecutableElement> methods) {
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n")
+                .append(" * 由 pm-web-client-processor 根据 {@link ").append(type.getQualifiedName()).append("} 生成, 不要修改\n")
+                .append(" */\n")
+                .append("public final class ").append(className).append(" implements ").append(type.getQualifiedName()).append(" {\n");
+
+        List<String> fields = new ArrayList<>(methods.size());
+        for (int i = 0; i < methods.size(); i++) {
+            String field = methods.get(i).getSimpleName() + "$" + i;
+            fields.add(field);
+            source.append("\n    private final ").append(METHOD_DISPATCHER).append(' ').append(field).append(";\n");
+        }
+
+        source.append("\n    public ").append(className).append("(").append(CLIENT_DISPATCHERS).append(" dispatchers) {\n");
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            source.append("        this.").append(fields.get(i)).append(" = dispatchers.get(\"").append(method.getSimpleName()).append('"');
+            for (VariableElement parameter : method.getParameters()) {
+                source.append(", ").append(types.erasure(parameter.asType())).append(".class");
+            }
+            source.append(");\n");
+        }
+        source.append("    }\n");
+
+        DeclaredType declaredType = (DeclaredType) type.asType();
+        for (int i = 0; i < methods.size(); i++) {
+            writeMethod(source, methods.get(i), (ExecutableType) types.asMemberOf(declaredType, methods.get(i)), fields.get(i));
+        }
+
+        source.append("\n    @Override\n")
+                .append("    public String toString() {\n")
+                .append("        return \"PmWebClient generated client for ").append(type.getQualifiedName()).append("\";\n")
+                .append("    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    private void writeMethod(StringBuilder source, ExecutableElement method, ExecutableType methodType, String field) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+        String returnType = methodType.getReturnType().toString();
+
+        source.append("\n    @Override\n")
+                .append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    public ").append(returnType).append(' ').append(method.getSimpleName()).append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                source.append(", ");
+            }
+            TypeMirror parameterType = parameterTypes.get(i);
+            if (method.isVarArgs() && i == parameters.size() - 1) {
+                source.append(((ArrayType) parameterType).getComponentType()).append("...");
+            } else {
+                source.append(parameterType);
+            }
+            source.append(' ').append(parameters.get(i).getSimpleName());
+        }
+        source.append(')');
+        List<? extends TypeMirror> thrownTypes = methodType.getThrownTypes();
+        for (int i = 0; i < thrownTypes.size(); i++) {
+            source.append(i == 0 ? " throws " : ", ").append(thrownTypes.get(i));
+        }
+        source.append(" {\n");
+
+        source.append("        ").append(METHOD_INFO).append(" $methodInfo = this.").append(field).append(".newMethodInfo();\n");
+        for (int i = 0; i < parameters.size(); i++) {
+            writeBinding(source, parameters.get(i), i, field);
+        }
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                args.append(", ");
+            }
+            args.append(parameters.get(i).getSimpleName());
+        }
+        // 参数数组只在调用降级实现时使用
+        source.append("        return (").append(returnType).append(") this.").append(field).append(".dispatch($methodInfo, this.")
+                .append(field).append(".hasFallback() ? new Object[]{").append(args).append("} : null);\n")
+                .append("    }\n");
+    }
+
+    private void writeBinding(StringBuilder source, VariableElement parameter, int index, String field) {
+        List<AnnotationMirror> bindings = new ArrayList<>();
+        for (AnnotationMirror annotation : parameter.getAnnotationMirrors()) {
+            String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            for (String binding : BINDING_ANNOTATIONS) {
+                if (binding.equals(name)) {
+                    bindings.add(annotation);
+                }
+            }
+        }
+        if (bindings.isEmpty()) {
+            return;
+        }
+        String name = parameter.getSimpleName().toString();
+        if (bindings.size() == 1) {
+            AnnotationMirror annotation = bindings.get(0);
+            String annotationName = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (PATH_VARIABLE.equals(annotationName)) {
+                source.append("        $methodInfo.getParams().put(").append(literal(value(annotation))).append(", ").append(name).append(");\n");
+                return;
+            }
+            if (REQUEST_BODY.equals(annotationName) && types.erasure(parameter.asType()).toString().equals(MONO)) {
+                source.append("        $methodInfo.setBody(").append(name).append(");\n");
+                return;
+            }
+        }
+        source.append("        this.").append(field).append(".bind(").append(index).append(", ").append(name).append(", $methodInfo);\n");
+    }
+
+    /**
+     * 与运行时一样只读取 value, 没有指定时为空字符串
+     */
+    private static String value(AnnotationMirror annotation) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return "";
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
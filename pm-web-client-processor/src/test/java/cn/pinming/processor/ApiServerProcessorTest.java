@@ -0,0 +1,236 @@
+package cn.pinming.processor;
+
+import cn.pinming.annotation.ApiServer;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.http.codec.CodecRegistry;
+import cn.pinming.http.resources.PmWebClientResources;
+import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.metrics.PmWebClientMetrics;
+import cn.pinming.proxy.GeneratedProxyCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 11:00
+ */
+public class ApiServerProcessorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @ClassRule
+    public static final TemporaryFolder TEMP = new TemporaryFolder();
+
+    private static DisposableServer server;
+
+    private static File generatedSources;
+
+    private static URLClassLoader classLoader;
+
+    private static PmWebClientResources resources;
+
+    private static GeneratedProxyCreator creator;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // 返回请求方法、路径、X-Trace 请求头和请求体
+        server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .handle((request, response) -> request.receive().aggregate().asString().defaultIfEmpty("")
+                        .flatMap(body -> response.header("Content-Type", "text/plain")
+                                .sendString(Mono.just(request.method() + " " + request.uri() + " "
+                                        + request.requestHeaders().get("X-Trace") + " " + body))
+                                .then()))
+                .bindNow();
+        String url = "http://127.0.0.1:" + server.port();
+
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("sample/BaseApi.java", String.join("\n",
+                "package sample;",
+                "import org.springframework.web.bind.annotation.*;",
+                "import reactor.core.publisher.Mono;",
+                "public interface BaseApi {",
+                "    @GetMapping(\"/base/{id}\")",
+                "    Mono<String> inherited(@PathVariable(\"id\") String id);",
+                "}"));
+        sources.put("sample/UserApi.java", String.join("\n",
+                "package sample;",
+                "import cn.pinming.annotation.ApiServer;",
+                "import org.springframework.web.bind.annotation.*;",
+                "import reactor.core.publisher.Mono;",
+                "import java.util.Map;",
+                "@ApiServer(\"" + url + "\")",
+                "public interface UserApi extends BaseApi {",
+                "    @GetMapping(\"/users/{id}\")",
+                "    Mono<String> get(@PathVariable(\"id\") String id);",
+                "    @PostMapping(\"/users\")",
+                "    Mono<String> create(@RequestBody Mono<String> user);",
+                "    @GetMapping(\"/headers\")",
+                "    Mono<String> headers(@RequestHeader Map<String, String> headers);",
+                "    @GetMapping(\"/tags/{tag}\")",
+                "    Mono<String> tags(@PathVariable(\"tag\") String tag, Object... ignored);",
+                "}"));
+        sources.put("sample/Outer.java", String.join("\n",
+                "package sample;",
+                "import cn.pinming.annotation.ApiServer;",
+                "import org.springframework.web.bind.annotation.*;",
+                "import reactor.core.publisher.Mono;",
+                "public class Outer {",
+                "    @ApiServer(\"" + url + "\")",
+                "    public interface NestedApi {",
+                "        @GetMapping(\"/nested/{id}\")",
+                "        Mono<String> get(@PathVariable(\"id\") String id);",
+                "    }",
+                "}"));
+        File sourceDir = TEMP.newFolder("src");
+        List<File> files = new ArrayList<>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            File file = new File(sourceDir, source.getKey());
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), source.getValue().getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        File classes = TEMP.newFolder("classes");
+        generatedSources = TEMP.newFolder("generated");
+        compile(files, classes);
+
+        classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, ApiServerProcessorTest.class.getClassLoader());
+        PmWebClientProperties properties = new PmWebClientProperties();
+        properties.getMetrics().setJmxEnabled(false);
+        PmWebClientMetrics metrics = new PmWebClientMetrics(new SimpleMeterRegistry(), properties.getMetrics());
+        resources = new PmWebClientResources(properties, metrics, new CodecRegistry());
+        creator = new GeneratedProxyCreator(properties, new DefaultListableBeanFactory(),
+                new InterceptorChain(Collections.emptyList()), resources, metrics);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        resources.destroy();
+        classLoader.close();
+        server.disposeNow();
+    }
+
+    private static void compile(List<File> files, File classes) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-classpath", classpath(),
+                    "-d", classes.getPath(), "-s", generatedSources.getPath(), "-encoding", "UTF-8");
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(files));
+            task.setProcessors(Collections.singletonList(new ApiServerProcessor()));
+            boolean success = task.call();
+            StringBuilder messages = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                messages.append(diagnostic).append('\n');
+            }
+            assertThat(success).as(messages.toString()).isTrue();
+        }
+    }
+
+    /**
+     * 测试的 classpath, surefire 只传入 manifest jar 时再补上示例接口用到的依赖
+     */
+    private static String classpath() throws Exception {
+        Set<String> entries = new LinkedHashSet<>(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        for (Class<?> type : new Class<?>[]{ApiServer.class, GetMapping.class, Mono.class, Publisher.class}) {
+            entries.add(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static Object client(String interfaceName) throws Exception {
+        Object client = creator.createProxy(classLoader.loadClass(interfaceName));
+        assertThat(Proxy.isProxyClass(client.getClass())).isFalse();
+        return client;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String call(Object client, String methodName, Class<?>[] parameterTypes, Object... args) throws Exception {
+        Method method = client.getClass().getMethod(methodName, parameterTypes);
+        return ((Mono<String>) method.invoke(client, args)).block(TIMEOUT);
+    }
+
+    private static String generatedSource(String path) throws Exception {
+        return new String(Files.readAllBytes(new File(generatedSources, path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void pathVariableAndMonoBodyAreBoundInGeneratedCode() throws Exception {
+        String source = generatedSource("sample/UserApi_PmWebClient.java");
+        assertThat(source).contains("$methodInfo.getParams().put(\"id\", id);");
+        assertThat(source).contains("$methodInfo.setBody(user);");
+
+        Object client = client("sample.UserApi");
+
+        assertThat(client.getClass().getName()).isEqualTo("sample.UserApi_PmWebClient");
+        assertThat(call(client, "get", new Class<?>[]{String.class}, "1")).isEqualTo("GET /users/1 null ");
+        assertThat(call(client, "create", new Class<?>[]{Mono.class}, Mono.just("tom")))
+                .startsWith("POST /users null ").contains("tom");
+    }
+
+    @Test
+    public void headerMapIsBoundThroughTheDispatcher() throws Exception {
+        assertThat(generatedSource("sample/UserApi_PmWebClient.java")).contains(".bind(0, headers, $methodInfo);");
+
+        Object client = client("sample.UserApi");
+
+        assertThat(call(client, "headers", new Class<?>[]{Map.class}, Collections.singletonMap("X-Trace", "t1")))
+                .isEqualTo("GET /headers t1 ");
+    }
+
+    @Test
+    public void varargsAndInheritedMethodsAreImplemented() throws Exception {
+        assertThat(generatedSource("sample/UserApi_PmWebClient.java")).contains("java.lang.Object... ignored");
+
+        Object client = client("sample.UserApi");
+
+        assertThat(call(client, "tags", new Class<?>[]{String.class, Object[].class}, "a", new Object[]{1, 2}))
+                .isEqualTo("GET /tags/a null ");
+        assertThat(call(client, "inherited", new Class<?>[]{String.class}, "2")).isEqualTo("GET /base/2 null ");
+    }
+
+    @Test
+    public void nestedInterfaceUsesFlattenedClassName() throws Exception {
+        Object client = client("sample.Outer$NestedApi");
+
+        assertThat(client.getClass().getName()).isEqualTo("sample.Outer_NestedApi_PmWebClient");
+        assertThat(call(client, "get", new Class<?>[]{String.class}, "3")).isEqualTo("GET /nested/3 null ");
+    }
+}
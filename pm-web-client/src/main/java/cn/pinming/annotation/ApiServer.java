@@ -6,11 +6,17 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * 标记一个接口为 http 客户端, value 是服务地址, 支持占位符;
+ * 指定多个地址(或占位符解析出逗号分隔的多个地址)时在这些地址之间做负载均衡;
+ * mediaType 是接口默认的请求体和响应格式, 比如 application/cbor, 方法上的 consumes、produces 优先
+ *
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
  * @since 2020/10/20 9:50
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface ApiServer {
-    String value() default "";
+    String[] value() default {};
+
+    String mediaType() default "";
 }
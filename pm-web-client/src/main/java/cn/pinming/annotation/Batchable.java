@@ -0,0 +1,52 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 把对单个对象的查询合并成一次批量查询
+ * <p>
+ * 在时间窗口内(或达到最大批量时)收集到的调用, 用各自的 key 组成列表调用 {@link #bulkMethod()},
+ * 再按结果对象的 {@link #keyProperty()} 把结果分发给各个调用方, 没有对应结果的调用返回空
+ * <pre>
+ * &#64;GetMapping("/{id}")
+ * &#64;Batchable(bulkMethod = "getUsersByIds", keyProperty = "id")
+ * Mono&lt;User&gt; getUserById(&#64;PathVariable("id") String id);
+ *
+ * &#64;PostMapping("/batch")
+ * Flux&lt;User&gt; getUsersByIds(&#64;RequestBody Mono&lt;List&lt;String&gt;&gt; ids);
+ * </pre>
+ * 批量方法只能有一个参数, 可以是 {@code Mono<List>} 或 {@code List}, 返回 {@code Flux} 或 {@code Mono<List>}
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/19 14:40
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Batchable {
+
+    /**
+     * 同一个接口中批量查询方法的名称
+     */
+    String bulkMethod();
+
+    /**
+     * 结果对象中与 key 对应的属性名
+     */
+    String keyProperty();
+
+    /**
+     * 作为 key 的 @PathVariable 名称, 方法只有一个 @PathVariable 时可以不指定
+     */
+    String key() default "";
+
+    /**
+     * 一次批量查询最多包含的 key 个数
+     */
+    int maxBatchSize() default 100;
+
+    /**
+     * 收集调用的时间窗口, 毫秒
+     */
+    long window() default 10;
+}
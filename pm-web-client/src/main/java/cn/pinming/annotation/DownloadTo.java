@@ -0,0 +1,19 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 把响应体直接写入参数指定的 {@link java.nio.file.Path} 或 {@link java.nio.channels.WritableByteChannel},
+ * 收到一块写一块, 不经过解码器也不在内存中聚合, 不受 maxInMemorySize 限制
+ * <p>
+ * 方法返回 {@code Mono<Long>} 时结果是写入的字节数, 返回 {@code Mono<Void>} 时只表示写完;
+ * Path 会被创建或覆盖, WritableByteChannel 由调用方负责关闭
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/01 9:40
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DownloadTo {
+}
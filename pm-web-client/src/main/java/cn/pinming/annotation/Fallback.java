@@ -0,0 +1,20 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 指定 {@link ApiServer} 接口的降级实现, 熔断器打开或 bulkhead 已满时调用降级实现的同名方法, 而不是直接抛出
+ * {@link cn.pinming.exception.CallNotPermittedException}
+ * <p>
+ * 降级实现需要实现该接口, 容器中有该类型的 bean 时使用 bean, 否则通过无参构造方法创建
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Fallback {
+
+    Class<?> value();
+}
@@ -0,0 +1,34 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 对冲请求: 第一个请求在 {@link #delay()} 内没有返回时再发出一个相同的请求, 使用先成功返回的结果并取消另一个,
+ * 用少量额外请求换取更低的长尾延迟
+ * <p>
+ * 只支持返回 Mono 的 GET 方法。指定 {@link #percentile()} 后等待时间取该方法最近响应时间的分位值,
+ * 额外的请求数不超过请求数的 {@link #budget()} 倍
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/26 10:00
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Hedge {
+
+    /**
+     * 发出对冲请求前的等待时间, 毫秒; 指定 percentile 时在样本不足前使用
+     */
+    long delay() default 50;
+
+    /**
+     * 按最近响应时间的分位值决定等待时间, 比如 0.95, 为 0 时使用固定的 delay
+     */
+    double percentile() default 0;
+
+    /**
+     * 对冲请求数最多占请求数的比例
+     */
+    double budget() default 0.1;
+}
@@ -0,0 +1,48 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 按令牌桶限制发出请求的速率, 用来遵守对方的 QPS 配额, 避免收到 429
+ * <p>
+ * 加在接口上时接口的所有方法共用一个令牌桶, 加在方法上时方法单独使用一个令牌桶;
+ * 指定 {@link #keyHeader()} 或 {@link #keyPathVariable()} 时每个取值各用一个令牌桶。
+ * 令牌不足时最多等待 {@link #maxWait()}, 等待不占用线程; 需要等待更久的请求直接以
+ * {@link cn.pinming.exception.CallNotPermittedException} 失败, 不会占用连接
+ * <p>
+ * 优先级从高到低: pm.webclient.clients.[接口名].methods.[方法名].rate-limit、方法上的注解、
+ * pm.webclient.clients.[接口名].rate-limit、接口上的注解
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 15:20
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimit {
+
+    /**
+     * 每秒允许的请求数
+     */
+    double permitsPerSecond();
+
+    /**
+     * 空闲后允许连续发出的请求数, 0 表示一秒的配额
+     */
+    int burst() default 0;
+
+    /**
+     * 令牌不足时最多等待的时间, 毫秒, 0 表示直接失败
+     */
+    long maxWait() default 0;
+
+    /**
+     * 按这个请求头的值分别限流
+     */
+    String keyHeader() default "";
+
+    /**
+     * 按这个 @PathVariable 的值分别限流
+     */
+    String keyPathVariable() default "";
+}
@@ -0,0 +1,33 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 缓存 GET 方法的响应结果, 只支持返回 Mono 的方法
+ * <p>
+ * 响应带有 Cache-Control: max-age 时以 max-age 为准, no-store 时不缓存; 过期的结果如果带有 ETag,
+ * 会用 If-None-Match 向服务端验证, 304 时继续使用缓存的结果
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ResponseCache {
+
+    /**
+     * 缓存有效期, 毫秒
+     */
+    long ttl() default 60000;
+
+    /**
+     * 最多缓存的结果个数, 超过后淘汰最久未使用的结果
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * 参与区分缓存的请求头, 默认只按 url 区分
+     */
+    String[] keyHeaders() default {};
+}
@@ -0,0 +1,64 @@
+package cn.pinming.annotation;
+
+import java.io.IOException;
+import java.lang.annotation.*;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 请求失败时按指数退避加随机抖动重试, 重试次数受全局重试预算限制
+ * <p>
+ * 默认只重试 GET/HEAD/OPTIONS/PUT/DELETE 这类幂等方法, POST/PATCH 需要显式指定 {@link #nonIdempotent()};
+ * 加在接口上时跳过非幂等的方法。返回 Flux 的方法只在还没有收到任何元素时重试
+ * <p>
+ * 优先级从高到低: pm.webclient.clients.[接口名].methods.[方法名].retry、方法上的注解、
+ * pm.webclient.clients.[接口名].retry、接口上的注解、pm.webclient.retry
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/25 9:40
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Retry {
+
+    /**
+     * 最多发出的请求次数, 包括第一次
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * 第一次重试前的等待时间, 毫秒
+     */
+    long backoff() default 100;
+
+    /**
+     * 最长等待时间, 毫秒
+     */
+    long maxBackoff() default 2000;
+
+    /**
+     * 每次重试等待时间的倍数
+     */
+    double multiplier() default 2;
+
+    /**
+     * 等待时间的随机抖动比例, 0.5 表示在 [0.5, 1.5] 倍之间随机
+     */
+    double jitter() default 0.5;
+
+    /**
+     * 需要重试的响应状态码
+     */
+    int[] retryOnStatus() default {502, 503, 504};
+
+    /**
+     * 需要重试的异常类型(包括异常的 cause), 默认是连接异常和超时
+     */
+    Class<? extends Throwable>[] retryOn() default {IOException.class, TimeoutException.class,
+            io.netty.handler.timeout.TimeoutException.class};
+
+    /**
+     * 是否允许重试 POST/PATCH 等非幂等方法
+     */
+    boolean nonIdempotent() default false;
+}
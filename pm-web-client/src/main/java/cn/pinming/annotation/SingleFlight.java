@@ -0,0 +1,17 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 合并并发的相同请求: 同一个方法、相同的 url 和请求头的请求还没有返回时, 后来的调用直接共用这个请求的结果
+ * <p>
+ * 只对返回 Mono 的 GET 方法生效, 加在接口上时对接口中所有符合条件的方法生效
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/18 10:12
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SingleFlight {
+}
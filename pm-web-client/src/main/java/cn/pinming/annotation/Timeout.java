@@ -0,0 +1,23 @@
+package cn.pinming.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 指定接口或方法的响应超时时间, 从请求发出到收到响应头为止, 每个请求单独计时
+ * <p>
+ * 优先级从高到低: pm.webclient.clients.[接口名].methods.[方法名].response-timeout、方法上的注解、
+ * pm.webclient.clients.[接口名].response-timeout、接口上的注解、pm.webclient.response-timeout
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/21 9:30
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Timeout {
+
+    /**
+     * 响应超时时间, 毫秒
+     */
+    long value();
+}
@@ -0,0 +1,231 @@
+package cn.pinming.autoconfigure;
+
+import cn.pinming.annotation.RateLimit;
+import cn.pinming.annotation.Retry;
+import cn.pinming.annotation.Timeout;
+import cn.pinming.exception.PmWebClientException;
+import cn.pinming.resilience.RateLimitPolicy;
+import cn.pinming.resilience.RetryPolicy;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 单个客户端最终生效的配置, 按 全局 -> 接口 -> 方法 的顺序覆盖
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/21 9:30
+ */
+@Getter
+@ToString
+public class ClientSettings {
+
+    private final String clientName;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final Duration writeTimeout;
+    private final int maxConnections;
+    private final Duration acquireTimeout;
+    private final int maxInMemorySize;
+    /**
+     * 连接池大小与全局配置不同时只能单独创建连接池
+     */
+    private final boolean customPool;
+    private final PmWebClientProperties.CompressionProperties compression;
+
+    /**
+     * 接口级别的熔断器、bulkhead 和自适应并发限制, 没有配置时使用全局配置
+     */
+    private final PmWebClientProperties.CircuitBreakerProperties circuitBreaker;
+    private final PmWebClientProperties.BulkheadProperties bulkhead;
+    private final PmWebClientProperties.AdaptiveLimitProperties adaptiveLimit;
+
+    private final PmWebClientProperties.RateLimitProperties clientRateLimit;
+
+    private final PmWebClientProperties.RetryProperties clientRetry;
+    private final PmWebClientProperties.RetryProperties globalRetry;
+
+    private final Duration clientResponseTimeout;
+    private final Duration globalResponseTimeout;
+
+    @ToString.Exclude
+    private final Map<String, PmWebClientProperties.MethodProperties> methods;
+
+    private ClientSettings(PmWebClientProperties properties, String clientName) {
+        PmWebClientProperties.ClientProperties client = properties.getClients().get(clientName);
+        if (client == null) {
+            client = new PmWebClientProperties.ClientProperties();
+        }
+        this.clientName = clientName;
+        this.connectTimeout = first(client.getConnectTimeout(), properties.getConnectTimeout(),
+                Duration.ofSeconds(properties.getConnectTimeoutSeconds()));
+        this.readTimeout = first(client.getReadTimeout(), properties.getReadTimeout(),
+                Duration.ofSeconds(properties.getReadTimeoutSeconds()));
+        this.writeTimeout = first(client.getWriteTimeout(), properties.getWriteTimeout(),
+                Duration.ofSeconds(properties.getWriteTimeoutSeconds()));
+        this.circuitBreaker = client.getCircuitBreaker() != null ? client.getCircuitBreaker() : properties.getCircuitBreaker();
+        this.bulkhead = client.getBulkhead() != null ? client.getBulkhead() : properties.getBulkhead();
+        this.adaptiveLimit = client.getAdaptiveLimit() != null ? client.getAdaptiveLimit() : properties.getAdaptiveLimit();
+        this.clientRateLimit = client.getRateLimit();
+        this.clientRetry = client.getRetry();
+        this.globalRetry = properties.getRetry();
+        this.clientResponseTimeout = client.getResponseTimeout();
+        this.globalResponseTimeout = properties.getResponseTimeout();
+        this.maxConnections = client.getMaxConnections() != null ? client.getMaxConnections() : properties.getMaxConnections();
+        this.acquireTimeout = client.getAcquireTimeout() != null
+                ? client.getAcquireTimeout() : Duration.ofMillis(properties.getAcquireTimeout());
+        this.maxInMemorySize = client.getMaxInMemorySize() != null
+                ? (int) client.getMaxInMemorySize().toBytes()
+                : properties.getMaxInMemorySizeMegaByte() * 1024 * 1024;
+        this.customPool = client.getMaxConnections() != null || client.getAcquireTimeout() != null;
+        this.compression = client.getCompression() != null ? client.getCompression() : properties.getCompression();
+        this.methods = client.getMethods() != null ? client.getMethods() : Collections.emptyMap();
+    }
+
+    public static ClientSettings of(PmWebClientProperties properties, String clientName) {
+        return new ClientSettings(properties, clientName);
+    }
+
+    /**
+     * 方法配置 {@code methods.<方法名>} 按方法名匹配, 无法区分重载的方法, 有重载的方法名不能单独配置
+     *
+     * @param clientMethods 接口中需要发出请求的方法
+     * @throws PmWebClientException 配置了有重载的方法名时
+     */
+    public void checkMethodNames(Collection<Method> clientMethods) {
+        for (String name : methods.keySet()) {
+            long count = clientMethods.stream().filter(method -> method.getName().equals(name)).count();
+            if (count > 1) {
+                throw new PmWebClientException(String.format("%s 的方法 %s 有 %d 个重载, 不能通过 pm.webclient.clients.%s.methods.%s 单独配置",
+                        clientName, name, count, clientName, name));
+            }
+        }
+    }
+
+    /**
+     * 方法的响应超时, 见 {@link Timeout}
+     *
+     * @return 为空表示不限制
+     */
+    public Duration responseTimeout(Method method) {
+        PmWebClientProperties.MethodProperties methodProperties = methods.get(method.getName());
+        if (methodProperties != null && methodProperties.getResponseTimeout() != null) {
+            return methodProperties.getResponseTimeout();
+        }
+        Timeout timeout = method.getAnnotation(Timeout.class);
+        if (timeout != null) {
+            return Duration.ofMillis(timeout.value());
+        }
+        if (clientResponseTimeout != null) {
+            return clientResponseTimeout;
+        }
+        timeout = method.getDeclaringClass().getAnnotation(Timeout.class);
+        if (timeout != null) {
+            return Duration.ofMillis(timeout.value());
+        }
+        return globalResponseTimeout;
+    }
+
+    /**
+     * 方法的重试策略, 见 {@link Retry}
+     *
+     * @return 不需要重试时为空
+     */
+    public RetryPolicy retryPolicy(Method method) {
+        PmWebClientProperties.MethodProperties methodProperties = methods.get(method.getName());
+        if (methodProperties != null && methodProperties.getRetry() != null) {
+            return retryPolicy(methodProperties.getRetry());
+        }
+        Retry retry = method.getAnnotation(Retry.class);
+        if (retry != null) {
+            return RetryPolicy.of(retry);
+        }
+        if (clientRetry != null) {
+            return retryPolicy(clientRetry);
+        }
+        retry = method.getDeclaringClass().getAnnotation(Retry.class);
+        if (retry != null) {
+            return RetryPolicy.of(retry);
+        }
+        return retryPolicy(globalRetry);
+    }
+
+    private static RetryPolicy retryPolicy(PmWebClientProperties.RetryProperties retry) {
+        return retry != null && retry.isEnabled() ? RetryPolicy.of(retry) : null;
+    }
+
+    /**
+     * 方法的限流配置, 见 {@link RateLimit}
+     *
+     * @return 不限流时为空
+     */
+    public RateLimitPolicy rateLimitPolicy(Method method) {
+        PmWebClientProperties.MethodProperties methodProperties = methods.get(method.getName());
+        if (methodProperties != null && methodProperties.getRateLimit() != null) {
+            return rateLimitPolicy(methodProperties.getRateLimit(), false);
+        }
+        RateLimit rateLimit = method.getAnnotation(RateLimit.class);
+        if (rateLimit != null) {
+            return RateLimitPolicy.of(rateLimit, false);
+        }
+        if (clientRateLimit != null) {
+            return rateLimitPolicy(clientRateLimit, true);
+        }
+        rateLimit = method.getDeclaringClass().getAnnotation(RateLimit.class);
+        return rateLimit != null ? RateLimitPolicy.of(rateLimit, true) : null;
+    }
+
+    private static RateLimitPolicy rateLimitPolicy(PmWebClientProperties.RateLimitProperties rateLimit, boolean shared) {
+        return rateLimit.isEnabled() && rateLimit.getPermitsPerSecond() > 0 ? RateLimitPolicy.of(rateLimit, shared) : null;
+    }
+
+    /**
+     * 方法的压缩配置
+     *
+     * @param methodName 为空时返回接口的配置
+     */
+    public PmWebClientProperties.CompressionProperties compression(String methodName) {
+        PmWebClientProperties.MethodProperties methodProperties = methodName == null ? null : methods.get(methodName);
+        return methodProperties != null && methodProperties.getCompression() != null ? methodProperties.getCompression() : compression;
+    }
+
+    /**
+     * @return 接口或任意一个方法开启了请求或响应压缩
+     */
+    public boolean isCompressionUsed() {
+        if (compression.isResponse() || compression.isRequest()) {
+            return true;
+        }
+        return methods.values().stream()
+                .map(PmWebClientProperties.MethodProperties::getCompression)
+                .anyMatch(c -> c != null && (c.isResponse() || c.isRequest()));
+    }
+
+    /**
+     * @return 方法单独配置的熔断器, 没有时为空
+     */
+    public PmWebClientProperties.CircuitBreakerProperties methodCircuitBreaker(String methodName) {
+        PmWebClientProperties.MethodProperties methodProperties = methods.get(methodName);
+        return methodProperties != null ? methodProperties.getCircuitBreaker() : null;
+    }
+
+    /**
+     * @return 方法单独配置的 bulkhead, 没有时为空
+     */
+    public PmWebClientProperties.BulkheadProperties methodBulkhead(String methodName) {
+        PmWebClientProperties.MethodProperties methodProperties = methods.get(methodName);
+        return methodProperties != null ? methodProperties.getBulkhead() : null;
+    }
+
+    private static Duration first(Duration value, Duration fallback, Duration defaultValue) {
+        if (value != null) {
+            return value;
+        }
+        return fallback != null ? fallback : defaultValue;
+    }
+}
@@ -1,18 +1,32 @@
 package cn.pinming.autoconfigure;
 
+import cn.pinming.http.codec.CodecRegistry;
+import cn.pinming.http.resources.PmWebClientResources;
 import cn.pinming.interceptor.Interceptor;
 import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.interceptor.ReactiveInterceptor;
 import cn.pinming.interfaces.ProxyCreator;
+import cn.pinming.metrics.PmWebClientMetrics;
+import cn.pinming.proxy.GeneratedProxyCreator;
 import cn.pinming.proxy.JDKProxyCreator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
@@ -23,14 +37,48 @@ import java.util.List;
 @AutoConfigureOrder(Ordered.LOWEST_PRECEDENCE)
 public class PmWebClientAutoConfiguration{
 
-    // TODO: 2020/10/22 后期可有其他 creator 的时候可以做成按条件初始化
+    /**
+     * 默认优先使用编译时生成的实现类, proxy-mode 为 JDK 时只用动态代理
+     */
     @Bean
-    public ProxyCreator jdkProxyCreator(PmWebClientProperties properties, DefaultListableBeanFactory beanFactory, InterceptorChain interceptorChain) {
-        return new JDKProxyCreator(properties, beanFactory, interceptorChain);
+    public ProxyCreator proxyCreator(PmWebClientProperties properties, DefaultListableBeanFactory beanFactory, InterceptorChain interceptorChain,
+                                     PmWebClientResources resources, PmWebClientMetrics metrics) {
+        if (properties.getProxyMode() == PmWebClientProperties.ProxyMode.JDK) {
+            return new JDKProxyCreator(properties, beanFactory, interceptorChain, resources, metrics);
+        }
+        return new GeneratedProxyCreator(properties, beanFactory, interceptorChain, resources, metrics);
     }
 
     @Bean
-    public InterceptorChain interceptorChain(@Autowired(required = false) List<Interceptor> interceptors){
-        return new InterceptorChain(interceptors);
+    public PmWebClientMetrics pmWebClientMetrics(PmWebClientProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new PmWebClientMetrics(meterRegistry.getIfAvailable(SimpleMeterRegistry::new), properties.getMetrics());
+    }
+
+    @Bean
+    public PmWebClientResources pmWebClientResources(PmWebClientProperties properties, PmWebClientMetrics metrics, CodecRegistry codecs) {
+        return new PmWebClientResources(properties, metrics, codecs);
+    }
+
+    /**
+     * 所有客户端共用一个 ObjectMapper, 不使用应用自己的 ObjectMapper, 以免服务端接口的序列化配置影响客户端;
+     * 需要定制时可以自己声明 CodecRegistry, 例如 {@code new CodecRegistry(objectMapper)}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public CodecRegistry pmWebClientCodecs() {
+        return new CodecRegistry();
+    }
+
+    @Bean
+    public InterceptorChain interceptorChain(PmWebClientProperties properties, @Autowired(required = false) List<Interceptor> interceptors,
+                                             @Autowired(required = false) List<ReactiveInterceptor> reactiveInterceptors){
+        PmWebClientProperties.InterceptorProperties settings = properties.getInterceptor();
+        // 有界线程池, 后置处理堆积时丢弃而不是无限排队
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getOffloadThreads(), settings.getOffloadThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(settings.getOffloadQueueSize()),
+                new CustomizableThreadFactory("pm-interceptor-"));
+        executor.allowCoreThreadTimeOut(true);
+        return new InterceptorChain(interceptors, reactiveInterceptors, settings.isOffloadBlockingPost(),
+                Schedulers.fromExecutorService(executor));
     }
 }
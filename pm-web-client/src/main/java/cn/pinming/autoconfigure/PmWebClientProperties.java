@@ -1,7 +1,21 @@
 package cn.pinming.autoconfigure;
 
+import cn.pinming.loadbalancer.LoadBalancerStrategy;
+import cn.pinming.resilience.LimitAlgorithm;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
@@ -46,4 +60,395 @@ public class PmWebClientProperties {
      * max in memory size in MegaByte
      */
     private int maxInMemorySizeMegaByte = 10;
+    /**
+     * read timeout with millisecond granularity, e.g. 500ms, overrides readTimeoutSeconds
+     */
+    private Duration readTimeout;
+    /**
+     * write timeout with millisecond granularity, overrides writeTimeoutSeconds
+     */
+    private Duration writeTimeout;
+    /**
+     * connect timeout with millisecond granularity, overrides connectTimeoutSeconds
+     */
+    private Duration connectTimeout;
+    /**
+     * max time from sending a request until the response headers arrive, measured per request, no limit by default
+     */
+    private Duration responseTimeout;
+    /**
+     * how event loop threads and connection pools are shared between clients
+     */
+    private ResourceMode resourceMode = ResourceMode.PER_HOST;
+    /**
+     * how client implementations are created
+     */
+    private ProxyMode proxyMode = ProxyMode.AUTO;
+    /**
+     * default compression of every client
+     */
+    private CompressionProperties compression = new CompressionProperties();
+    /**
+     * number of worker threads of the shared event loop
+     */
+    private int sharedWorkerCount = Runtime.getRuntime().availableProcessors();
+    /**
+     * per client settings, keyed by the simple name of the {@code @ApiServer} interface
+     */
+    private Map<String, ClientProperties> clients = new LinkedHashMap<>();
+    /**
+     * built-in metrics settings
+     */
+    private MetricsProperties metrics = new MetricsProperties();
+    /**
+     * interceptor settings
+     */
+    private InterceptorProperties interceptor = new InterceptorProperties();
+    /**
+     * default circuit breaker of every client, disabled by default
+     */
+    private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+    /**
+     * default bulkhead of every client, disabled by default
+     */
+    private BulkheadProperties bulkhead = new BulkheadProperties();
+    /**
+     * default adaptive concurrency limit of every client, disabled by default
+     */
+    private AdaptiveLimitProperties adaptiveLimit = new AdaptiveLimitProperties();
+    /**
+     * default retry policy of every client, disabled by default
+     */
+    private RetryProperties retry = new RetryProperties();
+    /**
+     * caps retries of all clients as a fraction of requests
+     */
+    private RetryBudgetProperties retryBudget = new RetryBudgetProperties();
+
+    public enum ResourceMode {
+        /**
+         * one shared event loop and one shared connection provider for all clients
+         */
+        SHARED,
+        /**
+         * one shared event loop and one connection provider per target host
+         */
+        PER_HOST,
+        /**
+         * every client has its own event loop and connection provider
+         */
+        PER_CLIENT
+    }
+
+    public enum ProxyMode {
+        /**
+         * use the implementation generated by pm-web-client-processor when present, a JDK dynamic proxy otherwise
+         */
+        AUTO,
+        /**
+         * always use JDK dynamic proxies
+         */
+        JDK
+    }
+
+    @Data
+    public static class MetricsProperties {
+        /**
+         * record per client and per method request metrics
+         */
+        private boolean enabled = true;
+        /**
+         * expose the metrics as a JMX MBean
+         */
+        private boolean jmxEnabled = true;
+        /**
+         * percentiles computed for every request timer
+         */
+        private double[] percentiles = {0.5, 0.9, 0.99, 0.999};
+        /**
+         * publish histogram buckets suitable for aggregating percentiles in the monitoring system
+         */
+        private boolean percentileHistogram = false;
+    }
+
+    @Data
+    public static class InterceptorProperties {
+        /**
+         * number of threads running offloaded post hooks
+         */
+        private int offloadThreads = 2;
+        /**
+         * max number of post hooks waiting to run, hooks beyond this are dropped
+         */
+        private int offloadQueueSize = 1000;
+        /**
+         * run post hooks of blocking {@code Interceptor}s on the offload threads instead of the event loop
+         */
+        private boolean offloadBlockingPost = false;
+    }
+
+    @Data
+    public static class ClientProperties {
+        /**
+         * create an event loop and connection provider only for this client
+         */
+        private boolean dedicatedResources = false;
+        /**
+         * the following settings override the global ones for this client, unset means inherit
+         */
+        private Duration readTimeout;
+        private Duration writeTimeout;
+        private Duration connectTimeout;
+        private Duration responseTimeout;
+        /**
+         * setting either pool option gives this client its own connection provider
+         */
+        private Integer maxConnections;
+        private Duration acquireTimeout;
+        private DataSize maxInMemorySize;
+        /**
+         * compression of all methods of this client, replaces the global one
+         */
+        private CompressionProperties compression;
+        /**
+         * circuit breaker shared by all methods of this client, replaces the global one
+         */
+        private CircuitBreakerProperties circuitBreaker;
+        /**
+         * bulkhead shared by all methods of this client, replaces the global one
+         */
+        private BulkheadProperties bulkhead;
+        /**
+         * adaptive concurrency limit of this client, replaces the global one
+         */
+        private AdaptiveLimitProperties adaptiveLimit;
+        /**
+         * rate limit shared by all methods of this client, replaces {@code @RateLimit} on the interface
+         */
+        private RateLimitProperties rateLimit;
+        /**
+         * retry policy of all methods of this client, replaces the global one and {@code @Retry} on the interface
+         */
+        private RetryProperties retry;
+        /**
+         * endpoints and load balancing of this client
+         */
+        private LoadBalancerProperties loadBalancer = new LoadBalancerProperties();
+        /**
+         * per method settings, keyed by method name
+         */
+        private Map<String, MethodProperties> methods = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class MethodProperties {
+        /**
+         * overrides the response timeout of the client and of {@code @Timeout}
+         */
+        private Duration responseTimeout;
+        /**
+         * gives this method its own circuit breaker instead of the client's one
+         */
+        private CircuitBreakerProperties circuitBreaker;
+        /**
+         * gives this method its own bulkhead instead of the client's one
+         */
+        private BulkheadProperties bulkhead;
+        /**
+         * overrides every other retry setting of this method
+         */
+        private RetryProperties retry;
+        /**
+         * gives this method its own rate limit, overrides {@code @RateLimit}
+         */
+        private RateLimitProperties rateLimit;
+        /**
+         * overrides the compression of the client
+         */
+        private CompressionProperties compression;
+    }
+
+    @Data
+    public static class RetryProperties {
+        private boolean enabled = false;
+        /**
+         * max number of requests including the first one
+         */
+        private int maxAttempts = 3;
+        /**
+         * wait time before the first retry
+         */
+        private Duration backoff = Duration.ofMillis(100);
+        /**
+         * upper bound of the wait time
+         */
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        private double multiplier = 2;
+        /**
+         * random factor of the wait time, 0.5 means between 0.5 and 1.5 times
+         */
+        private double jitter = 0.5;
+        private Set<Integer> retryOnStatus = new HashSet<>(Arrays.asList(502, 503, 504));
+        private List<Class<? extends Throwable>> retryOn = new ArrayList<>(Arrays.asList(IOException.class,
+                TimeoutException.class, io.netty.handler.timeout.TimeoutException.class));
+        /**
+         * also retry POST and PATCH methods
+         */
+        private boolean nonIdempotent = false;
+    }
+
+    @Data
+    public static class LoadBalancerProperties {
+        /**
+         * endpoints of this client, replace the urls of {@code @ApiServer}
+         */
+        private List<String> endpoints = new ArrayList<>();
+        /**
+         * local file listing one endpoint per line, re-read when modified
+         */
+        private String endpointsFile;
+        /**
+         * how often the endpoints file is checked for modification
+         */
+        private Duration refreshInterval = Duration.ofSeconds(5);
+        /**
+         * name of an {@code EndpointProvider} bean supplying the endpoints
+         */
+        private String providerBean;
+        private LoadBalancerStrategy strategy = LoadBalancerStrategy.ROUND_ROBIN;
+        /**
+         * consecutive failures (connection errors, timeouts, 5xx) that eject an endpoint
+         */
+        private int consecutiveFailures = 5;
+        /**
+         * how long an ejected endpoint receives no requests
+         */
+        private Duration ejectionTime = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class RetryBudgetProperties {
+        /**
+         * retries allowed as a fraction of requests in the window
+         */
+        private double ratio = 0.1;
+        /**
+         * retries always allowed per second when there is little traffic
+         */
+        private int minRetriesPerSecond = 10;
+        /**
+         * length of the window, in seconds granularity
+         */
+        private Duration window = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class CircuitBreakerProperties {
+        private boolean enabled = false;
+        /**
+         * number of most recent calls used to compute the failure and slow call rate
+         */
+        private int slidingWindowSize = 100;
+        /**
+         * rates are not evaluated before this many calls were recorded
+         */
+        private int minimumNumberOfCalls = 20;
+        /**
+         * failure rate in percent that opens the circuit, 4xx responses are not failures
+         */
+        private float failureRateThreshold = 50;
+        /**
+         * calls taking longer than this are slow
+         */
+        private Duration slowCallDurationThreshold = Duration.ofSeconds(5);
+        /**
+         * slow call rate in percent that opens the circuit
+         */
+        private float slowCallRateThreshold = 100;
+        /**
+         * how long the circuit stays open before probing
+         */
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+        /**
+         * number of probing calls allowed in half open state
+         */
+        private int permittedCallsInHalfOpenState = 5;
+    }
+
+    @Data
+    public static class BulkheadProperties {
+        private boolean enabled = false;
+        /**
+         * calls beyond this limit fail immediately instead of waiting for a connection
+         */
+        private int maxConcurrentCalls = 50;
+    }
+
+    @Data
+    public static class AdaptiveLimitProperties {
+        private boolean enabled = false;
+        private LimitAlgorithm algorithm = LimitAlgorithm.GRADIENT;
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        /**
+         * factor applied to the limit on timeouts, connection errors, 429 and 503
+         */
+        private double backoffRatio = 0.9;
+        /**
+         * AIMD only: responses slower than this also decrease the limit
+         */
+        private Duration latencyThreshold = Duration.ofSeconds(1);
+        /**
+         * GRADIENT only: how much slower than the long term latency recent requests may get before the limit decreases
+         */
+        private double tolerance = 1.5;
+        /**
+         * GRADIENT only: weight of each new limit, smaller values adapt slower but steadier
+         */
+        private double smoothing = 0.2;
+        /**
+         * responses collected before the limit is adjusted once from their average latency
+         */
+        private int windowSize = 10;
+    }
+
+    @Data
+    public static class RateLimitProperties {
+        private boolean enabled = true;
+        private double permitsPerSecond;
+        /**
+         * requests allowed back to back after being idle, 0 means one second worth of permits
+         */
+        private int burst = 0;
+        /**
+         * longest wait for a permit before failing, zero fails immediately
+         */
+        private Duration maxWait = Duration.ZERO;
+        /**
+         * limit each value of this request header separately
+         */
+        private String keyHeader;
+        /**
+         * limit each value of this path variable separately
+         */
+        private String keyPathVariable;
+    }
+
+    @Data
+    public static class CompressionProperties {
+        /**
+         * send Accept-Encoding and decompress responses: gzip and deflate, plus br and zstd when netty can decode them
+         */
+        private boolean response = false;
+        /**
+         * gzip request bodies of at least request-min-size
+         */
+        private boolean request = false;
+        private DataSize requestMinSize = DataSize.ofKilobytes(2);
+        /**
+         * gzip level of request bodies, 1 (fastest) to 9 (smallest)
+         */
+        private int level = 6;
+    }
 }
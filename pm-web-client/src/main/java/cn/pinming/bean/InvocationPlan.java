@@ -0,0 +1,173 @@
+package cn.pinming.bean;
+
+import cn.pinming.interfaces.ArgumentBinder;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+/**
+ * 接口方法的调用计划, 创建代理时对每个方法解析一次并缓存,
+ * 调用时只需要通过 {@link #bind(Object[])} 绑定参数值即可, 不再对方法做反射解析
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/11 10:02
+ */
+@Getter
+@Builder(toBuilder = true)
+@ToString(exclude = "binders")
+public class InvocationPlan {
+
+	/**
+	 * 接口中定义的方法
+	 */
+	private final Method method;
+
+	/**
+	 * 被代理的接口, 方法继承自父接口时与 method.getDeclaringClass() 不同, 接口级别的配置以它为准
+	 */
+	private final Class<?> clientType;
+
+	/**
+	 * 请求url(模板)
+	 */
+	private final String url;
+
+	/**
+	 * 请求方法
+	 */
+	private final HttpMethod httpMethod;
+
+	/**
+	 * 请求体类型
+	 */
+	private final String requestContentType;
+
+	/**
+	 * 期望的响应格式(Accept), 为空时要 JSON
+	 */
+	private final String accept;
+
+	/**
+	 * 请求body的类型
+	 */
+	private final ParameterizedTypeReference<?> bodyElementType;
+
+	/**
+	 * 返回是flux还是mono
+	 */
+	private final boolean returnFlux;
+
+	/**
+	 * 返回对象的类型
+	 */
+	private final ParameterizedTypeReference<?> returnElementType;
+
+	/**
+	 * 是否直接发送 String 类型的报文内容
+	 */
+	private final boolean rawRequest;
+
+	/**
+	 * 调用方式
+	 */
+	private final InvokeType invokeType;
+
+	/**
+	 * 带 @PathVariable 的参数个数
+	 */
+	private final int pathVariableCount;
+
+	/**
+	 * 请求只能发出一次, 例如写入 {@link java.nio.channels.WritableByteChannel} 的下载和原始字节的 Mono/Flux 请求体, 这类方法不会重试
+	 */
+	private final boolean oneShot;
+
+	/**
+	 * 每个参数对应的绑定器, 没有注解的参数对应 null
+	 */
+	private final ArgumentBinder[] binders;
+
+	/**
+	 * 响应超时时间, 为空表示不限制, 由配置和 {@link cn.pinming.annotation.Timeout} 决定
+	 */
+	private final Duration responseTimeout;
+
+	/**
+	 * 根据调用参数生成本次请求的 {@link MethodInfo}
+	 *
+	 * @param args 方法的参数
+	 * @return {@link MethodInfo}
+	 */
+	public MethodInfo bind(Object[] args) {
+		MethodInfo methodInfo = newMethodInfo();
+		for (int i = 0; i < binders.length; i++) {
+			if (binders[i] != null) {
+				binders[i].bind(args[i], methodInfo);
+			}
+		}
+		return methodInfo;
+	}
+
+	/**
+	 * 生成只包含方法信息、还没有绑定参数的 {@link MethodInfo}, 有路径参数时 params 是可写的
+	 *
+	 * @return {@link MethodInfo}
+	 */
+	public MethodInfo newMethodInfo() {
+		MethodInfo methodInfo = new MethodInfo();
+		methodInfo.setMethodName(method.getName());
+		methodInfo.setUrl(url);
+		methodInfo.setMethod(httpMethod);
+		methodInfo.setReqeustContentType(requestContentType);
+		methodInfo.setAccept(accept);
+		methodInfo.setBodyElementType(bodyElementType);
+		methodInfo.setReturnFlux(returnFlux);
+		methodInfo.setReturnElementType(returnElementType);
+		methodInfo.setRawRequest(rawRequest);
+		methodInfo.setResponseTimeout(responseTimeout);
+		methodInfo.setParams(pathVariableCount == 0 ? Collections.<String, Object>emptyMap() : new LinkedHashMap<>(pathVariableCount * 2));
+		return methodInfo;
+	}
+
+	/**
+	 * 绑定单个参数的值
+	 *
+	 * @param index 参数的位置
+	 * @param arg 参数值
+	 * @param methodInfo {@link #newMethodInfo()} 生成的 {@link MethodInfo}
+	 */
+	public void bind(int index, Object arg, MethodInfo methodInfo) {
+		if (binders[index] != null) {
+			binders[index].bind(arg, methodInfo);
+		}
+	}
+
+	/**
+	 * 调用方式, 对应 {@link cn.pinming.interfaces.HttpHandler} 中的各个 invoke 方法
+	 */
+	public enum InvokeType {
+		/**
+		 * rest 请求
+		 */
+		REST,
+		/**
+		 * form 表单请求
+		 */
+		FORM,
+		/**
+		 * 原始报文请求
+		 */
+		PLAIN,
+		/**
+		 * 不经过解码器, 直接以 DataBuffer 流的方式读取响应体
+		 */
+		DOWNLOAD
+	}
+}
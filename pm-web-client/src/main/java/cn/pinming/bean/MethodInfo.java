@@ -1,5 +1,6 @@
 package cn.pinming.bean;
 
+import java.time.Duration;
 import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,7 +8,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpRequest;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserter;
 import reactor.core.publisher.Mono;
 
 /**
@@ -15,11 +18,16 @@ import reactor.core.publisher.Mono;
  * @since 2020/10/20 10:31
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MethodInfo {
 
+	/**
+	 * 接口中的方法名
+	 */
+	private String methodName;
+
 	/**
 	 * 请求url
 	 */
@@ -35,6 +43,11 @@ public class MethodInfo {
 	 */
 	private String reqeustContentType;
 
+	/**
+	 * 期望的响应格式(Accept), 为空时要 JSON
+	 */
+	private String accept;
+
 	/**
 	 * 请求头
 	 */
@@ -50,6 +63,11 @@ public class MethodInfo {
 	 */
 	private Mono body;
 	
+	/**
+	 * 按原始字节发送的请求体, 设置时忽略 body, 见 {@link cn.pinming.util.PlainBodies}
+	 */
+	private BodyInserter<?, ? super ClientHttpRequest> bodyInserter;
+
 	/**
 	 * 请求body的类型
 	 */
@@ -74,4 +92,14 @@ public class MethodInfo {
 	 * 是否直接发送 String 类型的报文内容
 	 */
 	private boolean rawRequest = false;
+
+	/**
+	 * 响应超时时间, 为空表示不限制
+	 */
+	private Duration responseTimeout;
+
+	/**
+	 * 写入响应体的 Path 或 WritableByteChannel, 见 {@link cn.pinming.annotation.DownloadTo}
+	 */
+	private Object downloadTarget;
 }
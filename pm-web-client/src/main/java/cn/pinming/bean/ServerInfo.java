@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+
+import java.util.List;
+
 /**
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
  * @since 2020/10/20 10:31
@@ -15,9 +18,13 @@ import lombok.NoArgsConstructor;
 public class ServerInfo {
 
 	/**
-	 * 服务器url
+	 * 服务器url, 有多个地址时是第一个, 作为 WebClient 的 baseUrl
 	 */
 	private String url;
+	/**
+	 * 所有服务地址
+	 */
+	private List<String> urls;
 	/**
 	 * 被注解的接口名称
 	 */
@@ -0,0 +1,38 @@
+package cn.pinming.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 缓存的响应结果, 保存的是解码后的对象
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+@Getter
+@AllArgsConstructor
+public class CachedResponse {
+
+    /**
+     * 解码后的响应对象, 响应没有 body 时为 null
+     */
+    private final Object value;
+
+    /**
+     * 响应的 ETag
+     */
+    private final String etag;
+
+    /**
+     * 在这个时间点(System.nanoTime)之前无需验证即可使用
+     */
+    private final long freshUntil;
+
+    public boolean isFresh(long now) {
+        return now - freshUntil < 0;
+    }
+
+    public CachedResponse refresh(long freshUntil) {
+        return new CachedResponse(value, etag, freshUntil);
+    }
+}
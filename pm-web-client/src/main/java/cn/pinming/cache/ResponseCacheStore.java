@@ -0,0 +1,124 @@
+package cn.pinming.cache;
+
+import cn.pinming.invoker.RequestKey;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按近似最近最少使用淘汰的响应缓存, 每个被 {@link cn.pinming.annotation.ResponseCache} 标注的方法一个
+ * <p>
+ * 淘汰使用 CLOCK(second chance) 算法: 结果按写入顺序排成队列, 命中时只设置访问标记, 不加锁也不调整顺序;
+ * 超过上限时从队头取出结果, 有访问标记的清除标记后放回队尾, 没有的淘汰。每个标记最多让结果多留一轮,
+ * 摊还下来每次写入只处理常数个结果, 不需要全局锁, 也不会在缓存满后每次写入都扫描全部结果
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+public class ResponseCacheStore {
+
+    private final int maxEntries;
+
+    private final Counter evictions;
+
+    private final Map<RequestKey, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 按写入顺序排列的结果, 被删除或替换的结果留在队列里, 淘汰时跳过
+     */
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 队列长度, ConcurrentLinkedQueue#size 需要遍历整个队列
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public ResponseCacheStore(int maxEntries, Counter evictions) {
+        this.maxEntries = maxEntries;
+        this.evictions = evictions;
+    }
+
+    public CachedResponse get(RequestKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        // 已经有标记时不再写, 热点结果的读取不会互相使对方的缓存行失效
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.response;
+    }
+
+    public void put(RequestKey key, CachedResponse response) {
+        Entry entry = new Entry(key, response);
+        Entry existing = entries.putIfAbsent(key, entry);
+        if (existing != null) {
+            // 验证后刷新或重新请求得到的结果, 原地替换, 不重复排队
+            existing.response = response;
+            existing.referenced = true;
+            return;
+        }
+        clock.offer(entry);
+        if (queued.incrementAndGet() > maxEntries) {
+            evict();
+        }
+    }
+
+    public void remove(RequestKey key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        for (;;) {
+            int current = queued.get();
+            if (current <= maxEntries) {
+                return;
+            }
+            // 先占用一个名额再出队, 并发写入时不会多淘汰
+            if (!queued.compareAndSet(current, current - 1)) {
+                continue;
+            }
+            Entry entry = clock.poll();
+            if (entry == null) {
+                queued.incrementAndGet();
+                return;
+            }
+            if (entries.get(entry.key) != entry) {
+                // 已经被删除或替换
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.offer(entry);
+                queued.incrementAndGet();
+            } else if (entries.remove(entry.key, entry)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final RequestKey key;
+
+        private volatile CachedResponse response;
+
+        /**
+         * 上次经过队头之后是否被访问过
+         */
+        private volatile boolean referenced;
+
+        Entry(RequestKey key, CachedResponse response) {
+            this.key = key;
+            this.response = response;
+        }
+    }
+}
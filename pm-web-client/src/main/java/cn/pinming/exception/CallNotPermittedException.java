@@ -0,0 +1,22 @@
+package cn.pinming.exception;
+
+/**
+ * 熔断器打开或并发数已满, 请求没有发出就直接失败
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+public class CallNotPermittedException extends PmWebClientException {
+
+    public CallNotPermittedException(String message) {
+        super(message);
+    }
+
+    /**
+     * 快速失败时不需要异常栈, 省掉填充栈的开销
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
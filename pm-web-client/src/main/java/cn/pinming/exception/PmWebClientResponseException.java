@@ -0,0 +1,36 @@
+package cn.pinming.exception;
+
+import lombok.Getter;
+
+/**
+ * 下游返回了非 2xx 的响应
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+@Getter
+public class PmWebClientResponseException extends PmWebClientException {
+
+    /**
+     * 响应状态码
+     */
+    private final int statusCode;
+
+    /**
+     * 响应 body
+     */
+    private final String responseBody;
+
+    public PmWebClientResponseException(String message, int statusCode, String responseBody) {
+        super(message);
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+    }
+
+    /**
+     * @return 是否是调用方的错误(4xx), 这类错误不代表下游不可用
+     */
+    public boolean isClientError() {
+        return statusCode >= 400 && statusCode < 500;
+    }
+}
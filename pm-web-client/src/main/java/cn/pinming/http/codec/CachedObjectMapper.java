@@ -0,0 +1,51 @@
+package cn.pinming.http.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 所有客户端共用的 {@link ObjectMapper}, 按类型缓存 {@link ObjectReader} 和 {@link ObjectWriter}
+ * <p>
+ * 创建 reader/writer 时会预先查找根类型的(反)序列化器并缓存在 ObjectMapper 中, 创建代理时调用一次,
+ * 第一次请求就不需要再解析类型
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/03 10:00
+ */
+public class CachedObjectMapper {
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public CachedObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public ObjectReader reader(Type type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(type, t -> objectMapper.readerFor(objectMapper.constructType(t)));
+        }
+        return reader;
+    }
+
+    public ObjectWriter writer(Type type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = writers.computeIfAbsent(type, t -> objectMapper.writerFor(objectMapper.constructType(t)));
+        }
+        return writer;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+}
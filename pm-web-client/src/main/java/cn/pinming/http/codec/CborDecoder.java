@@ -0,0 +1,88 @@
+package cn.pinming.http.codec;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CBOR 解码器
+ * <p>
+ * Spring 5.1 没有 CBOR 编解码器, 而 Jackson 的 CBOR 也没有非阻塞解析器, 所以先合并整个响应再解析;
+ * 返回 Flux 时响应是元素组成的 CBOR 数组
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/03 10:00
+ */
+class CborDecoder implements Decoder<Object> {
+
+    private final CachedObjectMapper mapper;
+
+    private final int maxInMemorySize;
+
+    CborDecoder(CachedObjectMapper mapper, int maxInMemorySize) {
+        this.mapper = mapper;
+        this.maxInMemorySize = maxInMemorySize;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
+        return mimeType != null && CodecRegistry.APPLICATION_CBOR.isCompatibleWith(mimeType);
+    }
+
+    @Override
+    public Flux<Object> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType, @Nullable MimeType mimeType,
+                               @Nullable Map<String, Object> hints) {
+        ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+        return decodeToMono(inputStream, listType, mimeType, hints).flatMapIterable(list -> (List<?>) list);
+    }
+
+    @Override
+    public Mono<Object> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType, @Nullable MimeType mimeType,
+                                     @Nullable Map<String, Object> hints) {
+        return DataBufferUtils.join(limit(inputStream)).map(buffer -> {
+            try (InputStream in = buffer.asInputStream(true)) {
+                return mapper.reader(elementType.getType()).readValue(in);
+            } catch (IOException e) {
+                throw new DecodingException("CBOR 解码失败: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 与其他解码器一样受 maxInMemorySize 限制
+     */
+    private Flux<DataBuffer> limit(Publisher<DataBuffer> inputStream) {
+        if (maxInMemorySize < 0) {
+            return Flux.from(inputStream);
+        }
+        return Flux.defer(() -> {
+            AtomicLong total = new AtomicLong();
+            return Flux.from(inputStream).doOnNext(buffer -> {
+                if (total.addAndGet(buffer.readableByteCount()) > maxInMemorySize) {
+                    DataBufferUtils.release(buffer);
+                    throw new DataBufferLimitException("Exceeded limit on max bytes to buffer : " + maxInMemorySize);
+                }
+            });
+        });
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return Collections.singletonList(CodecRegistry.APPLICATION_CBOR);
+    }
+}
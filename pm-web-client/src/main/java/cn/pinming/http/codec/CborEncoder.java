@@ -0,0 +1,70 @@
+package cn.pinming.http.codec;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR 编码器, Flux 请求体编码成一个 CBOR 数组
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/03 10:00
+ */
+class CborEncoder implements Encoder<Object> {
+
+    private final CachedObjectMapper mapper;
+
+    CborEncoder(CachedObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, @Nullable MimeType mimeType) {
+        return mimeType != null && CodecRegistry.APPLICATION_CBOR.isCompatibleWith(mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        if (inputStream instanceof Mono) {
+            return Mono.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType)).flux();
+        }
+        ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+        return Flux.from(inputStream).collectList().map(list -> encodeValue(list, bufferFactory, listType)).flux();
+    }
+
+    private DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType type) {
+        DataBuffer buffer = bufferFactory.allocateBuffer();
+        boolean release = true;
+        try (OutputStream out = buffer.asOutputStream()) {
+            mapper.writer(type.getType()).writeValue(out, value);
+            release = false;
+        } catch (IOException e) {
+            throw new EncodingException("CBOR 编码失败: " + e.getMessage(), e);
+        } finally {
+            if (release) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return Collections.singletonList(CodecRegistry.APPLICATION_CBOR);
+    }
+}
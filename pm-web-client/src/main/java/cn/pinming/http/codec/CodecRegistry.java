@@ -0,0 +1,195 @@
+package cn.pinming.http.codec;
+
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.exception.PmWebClientException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ClientCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.MimeType;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 所有客户端共用的编解码配置
+ * <p>
+ * JSON 使用同一个 ObjectMapper, 各个客户端共享(反)序列化器缓存; 按 classpath 上的 jackson-dataformat
+ * 和 protobuf-java 启用其他格式:
+ * <ul>
+ * <li>application/cbor: 本类注册的 {@link CborDecoder}、{@link CborEncoder}</li>
+ * <li>application/x-jackson-smile: Spring 默认注册的 Jackson2SmileDecoder、Jackson2SmileEncoder</li>
+ * <li>application/x-protobuf: Spring 默认注册的 ProtobufDecoder、ProtobufEncoder</li>
+ * </ul>
+ * 接口通过 {@link cn.pinming.annotation.ApiServer#mediaType()} 或映射注解的 consumes、produces 选择格式
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/03 10:00
+ */
+@Slf4j
+public class CodecRegistry {
+
+    /**
+     * 换行分隔的 JSON, 每行一个元素
+     */
+    public static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson");
+
+    public static final MediaType APPLICATION_CBOR = new MediaType("application", "cbor");
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private static final ClassLoader CLASS_LOADER = CodecRegistry.class.getClassLoader();
+
+    private static final boolean CBOR_PRESENT =
+            ClassUtils.isPresent("com.fasterxml.jackson.dataformat.cbor.CBORFactory", CLASS_LOADER);
+
+    private static final boolean SMILE_PRESENT =
+            ClassUtils.isPresent("com.fasterxml.jackson.dataformat.smile.SmileFactory", CLASS_LOADER);
+
+    private static final boolean PROTOBUF_PRESENT =
+            ClassUtils.isPresent("com.google.protobuf.Message", CLASS_LOADER);
+
+    private final CachedObjectMapper json;
+
+    private final CachedObjectMapper cbor;
+
+    public CodecRegistry() {
+        this(Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    public CodecRegistry(ObjectMapper objectMapper) {
+        this.json = new CachedObjectMapper(objectMapper);
+        this.cbor = CBOR_PRESENT ? new CachedObjectMapper(Jackson2ObjectMapperBuilder.cbor().build()) : null;
+    }
+
+    /**
+     * 配置客户端的编解码器, 每个客户端一份, ObjectMapper 共用
+     */
+    public void configure(ClientCodecConfigurer codecs, int maxInMemorySize) {
+        ClientCodecConfigurer.ClientDefaultCodecs defaultCodecs = codecs.defaultCodecs();
+        defaultCodecs.maxInMemorySize(maxInMemorySize);
+        // maxInMemorySize 会写入解码器, 解码器不能在客户端之间共用
+        defaultCodecs.jackson2JsonDecoder(jsonDecoder(json.getObjectMapper()));
+        defaultCodecs.jackson2JsonEncoder(new Jackson2JsonEncoder(json.getObjectMapper()));
+        if (cbor != null) {
+            codecs.customCodecs().decoder(new CborDecoder(cbor, maxInMemorySize));
+            codecs.customCodecs().encoder(new CborEncoder(cbor));
+        }
+    }
+
+    /**
+     * JSON 解码器
+     * <p>
+     * 返回 Flux 时 Jackson2Tokenizer 按顶层数组的元素或按行(x-ndjson、stream+json)逐个切分, 收到一个元素就解码一个,
+     * 不会把整个数组读进内存; maxInMemorySize 只限制单个元素的大小
+     */
+    public static Jackson2JsonDecoder jsonDecoder(ObjectMapper objectMapper) {
+        // fix 'Content type 'application/octet-stream' not supported for bodyType= [XXX]'
+        List<MimeType> mimeTypes = Arrays.asList(
+                new MimeType("application", "json", StandardCharsets.UTF_8),
+                new MimeType("text", "html", StandardCharsets.UTF_8),
+                new MimeType("text", "plain", StandardCharsets.UTF_8),
+                new MimeType("application", "*+json", StandardCharsets.UTF_8),
+                new MimeType("application", "octet-stream", StandardCharsets.UTF_8),
+                new MimeType(APPLICATION_NDJSON, StandardCharsets.UTF_8),
+                new MimeType(MediaType.APPLICATION_STREAM_JSON, StandardCharsets.UTF_8)
+        );
+        return new Jackson2JsonDecoder(objectMapper, mimeTypes.toArray(new MimeType[0]));
+    }
+
+    /**
+     * 创建代理时调用: 检查方法声明的格式有对应的编解码器, 并提前解析请求体和返回值类型的(反)序列化器
+     */
+    public void prepare(InvocationPlan plan) {
+        MediaType contentType = parse(plan.getRequestContentType(), plan);
+        MediaType accept = parse(plan.getAccept(), plan);
+        if (plan.getInvokeType() != InvocationPlan.InvokeType.REST) {
+            return;
+        }
+        CachedObjectMapper writer = mapperFor(contentType);
+        if (writer != null && plan.getBodyElementType() != null) {
+            warmUp(plan, writer, plan.getBodyElementType(), false, false);
+        }
+        CachedObjectMapper reader = mapperFor(accept);
+        if (reader != null && plan.getReturnElementType() != null) {
+            // CBOR 的 Flux 按数组整体解码
+            warmUp(plan, reader, plan.getReturnElementType(), plan.isReturnFlux() && reader == cbor, true);
+        }
+    }
+
+    private MediaType parse(String mediaType, InvocationPlan plan) {
+        if (mediaType == null) {
+            return null;
+        }
+        MediaType parsed = MediaType.parseMediaType(mediaType);
+        if (!isSupported(parsed)) {
+            throw new PmWebClientException(String.format("%s 使用的 %s 缺少编解码器, 请添加对应的依赖", plan.getMethod(), mediaType));
+        }
+        return parsed;
+    }
+
+    /**
+     * classpath 上是否有该格式的编解码器, 不认识的格式交给 Spring 的默认编解码器
+     */
+    public boolean isSupported(MediaType mediaType) {
+        if (APPLICATION_CBOR.isCompatibleWith(mediaType)) {
+            return CBOR_PRESENT;
+        }
+        if (APPLICATION_SMILE.isCompatibleWith(mediaType)) {
+            return SMILE_PRESENT;
+        }
+        if (APPLICATION_PROTOBUF.isCompatibleWith(mediaType)) {
+            return PROTOBUF_PRESENT;
+        }
+        return true;
+    }
+
+    /**
+     * @return 由本类的 ObjectMapper 处理该格式时返回对应的 mapper, 没有声明格式时按 JSON 处理
+     */
+    private CachedObjectMapper mapperFor(MediaType mediaType) {
+        if (mediaType == null || MediaType.APPLICATION_JSON.isCompatibleWith(mediaType)) {
+            return json;
+        }
+        if (APPLICATION_CBOR.isCompatibleWith(mediaType)) {
+            return cbor;
+        }
+        return null;
+    }
+
+    private void warmUp(InvocationPlan plan, CachedObjectMapper mapper, ParameterizedTypeReference<?> typeReference,
+                        boolean asList, boolean read) {
+        Type type = typeReference.getType();
+        if (type == Void.class || type == Object.class || type == String.class || type == DataBuffer.class || type == byte[].class) {
+            return;
+        }
+        if (asList) {
+            type = ResolvableType.forClassWithGenerics(List.class, ResolvableType.forType(type)).getType();
+        }
+        try {
+            if (read) {
+                mapper.reader(type);
+            } else {
+                mapper.writer(type);
+            }
+        } catch (RuntimeException e) {
+            // 解析失败留到请求时再报错, 不影响代理创建
+            log.debug("预先解析 {} 的类型 {} 失败: {}", plan.getMethod(), type, e.toString());
+        }
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return json.getObjectMapper();
+    }
+}
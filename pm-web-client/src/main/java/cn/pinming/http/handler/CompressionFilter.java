@@ -0,0 +1,148 @@
+package cn.pinming.http.handler;
+
+import cn.pinming.autoconfigure.ClientSettings;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按方法的压缩配置设置 Accept-Encoding, 并用 gzip 压缩超过阈值的请求体
+ * <p>
+ * 只压缩编码器一次性输出的请求体(Mono 对象), 压缩在 parallel 线程上进行, 不占用 event loop;
+ * 原始数据(byte[]、Resource、文件、DataBuffer 流)和多段输出的流式请求体原样发送, 不缓冲整个请求体, 文件仍然零拷贝发送
+ * <p>
+ * 响应的解压由 reactor netty 的 {@code HttpContentDecompressor} 完成, 见 {@code HttpClient#compress(boolean)};
+ * br 和 zstd 只有在运行时的 netty 能解压时才会声明
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/29 14:20
+ */
+class CompressionFilter implements ExchangeFilterFunction {
+
+    static final String ACCEPT_ENCODING = acceptEncoding();
+
+    private static final String IDENTITY = "identity";
+
+    private static final String GZIP = "gzip";
+
+    private final ClientSettings settings;
+
+    CompressionFilter(ClientSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String methodName = (String) request.attribute(RequestAttributes.METHOD_NAME).orElse(null);
+        PmWebClientProperties.CompressionProperties compression = settings.compression(methodName);
+        ClientRequest.Builder builder = ClientRequest.from(request)
+                .headers(headers -> {
+                    // 调用方自己声明的 Accept-Encoding 保持不变
+                    if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                        headers.set(HttpHeaders.ACCEPT_ENCODING, compression.isResponse() ? ACCEPT_ENCODING : IDENTITY);
+                    }
+                });
+        if (compression.isRequest() && !request.headers().containsKey(HttpHeaders.CONTENT_ENCODING)
+                && !request.attribute(RequestAttributes.RAW_BODY).isPresent()) {
+            builder.body(compressedBody(request.body(), compression));
+        }
+        return next.exchange(builder.build());
+    }
+
+    /**
+     * 编码器输出单个 buffer 时(写出的是 Mono)按它的大小决定是否压缩, 多段输出的流直接写出
+     */
+    private static BodyInserter<?, ? super ClientHttpRequest> compressedBody(BodyInserter<?, ? super ClientHttpRequest> body,
+                                                                             PmWebClientProperties.CompressionProperties compression) {
+        long minSize = compression.getRequestMinSize().toBytes();
+        int level = compression.getLevel();
+        return (outputMessage, context) -> body.insert(new ClientHttpRequestDecorator(outputMessage) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> bodyPublisher) {
+                long contentLength = getHeaders().getContentLength();
+                if (!(bodyPublisher instanceof Mono) || (contentLength >= 0 && contentLength < minSize)) {
+                    return super.writeWith(bodyPublisher);
+                }
+                return Mono.from(bodyPublisher).flatMap(buffer -> {
+                    if (buffer.readableByteCount() < minSize) {
+                        return super.writeWith(Mono.just(buffer));
+                    }
+                    return Mono.fromCallable(() -> {
+                        try {
+                            return gzip(buffer, level);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    }).subscribeOn(Schedulers.parallel()).flatMap(compressed -> {
+                        HttpHeaders headers = getHeaders();
+                        headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+                        headers.setContentLength(compressed.readableByteCount());
+                        return super.writeWith(Mono.just(compressed));
+                    });
+                });
+            }
+        }, context);
+    }
+
+    private static DataBuffer gzip(DataBuffer source, int level) {
+        DataBuffer target = source.factory().allocateBuffer(Math.max(256, source.readableByteCount() / 4));
+        boolean success = false;
+        try (InputStream in = source.asInputStream();
+             OutputStream out = new GZIPOutputStream(target.asOutputStream()) {
+                 {
+                     def.setLevel(level);
+                 }
+             }) {
+            StreamUtils.copy(in, out);
+            success = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!success) {
+                DataBufferUtils.release(target);
+            }
+        }
+        return target;
+    }
+
+    private static String acceptEncoding() {
+        StringBuilder encodings = new StringBuilder("gzip, deflate");
+        if (available("io.netty.handler.codec.compression.Brotli")) {
+            encodings.append(", br");
+        }
+        if (available("io.netty.handler.codec.compression.Zstd")) {
+            encodings.append(", zstd");
+        }
+        return encodings.toString();
+    }
+
+    /**
+     * netty 对应的压缩格式可用, 即有 isAvailable() 并返回 true
+     */
+    private static boolean available(String className) {
+        try {
+            Object available = Class.forName(className).getMethod("isAvailable").invoke(null);
+            return Boolean.TRUE.equals(available);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+}
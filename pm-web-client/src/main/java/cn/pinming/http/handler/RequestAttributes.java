@@ -0,0 +1,33 @@
+package cn.pinming.http.handler;
+
+/**
+ * 请求上携带的 attribute 名称, 供 {@link org.springframework.web.reactive.function.client.ExchangeFilterFunction} 读取
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/13 10:15
+ */
+public final class RequestAttributes {
+
+    /**
+     * 接口中的方法名
+     */
+    public static final String METHOD_NAME = RequestAttributes.class.getName() + ".methodName";
+
+    /**
+     * 请求的 url 模板, 与 WebClient 自己设置的 attribute 同名
+     */
+    public static final String URI_TEMPLATE = "org.springframework.web.reactive.function.client.WebClient.uriTemplate";
+
+    /**
+     * 本次请求的响应超时时间 {@link java.time.Duration}, 没有时不限制
+     */
+    public static final String RESPONSE_TIMEOUT = RequestAttributes.class.getName() + ".responseTimeout";
+
+    /**
+     * 请求体是不经过编码器的原始数据(byte[]、Resource、文件、DataBuffer 流等)时为 {@code Boolean.TRUE}
+     */
+    public static final String RAW_BODY = RequestAttributes.class.getName() + ".rawBody";
+
+    private RequestAttributes() {
+    }
+}
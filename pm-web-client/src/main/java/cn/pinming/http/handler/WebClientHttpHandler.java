@@ -1,43 +1,60 @@
 package cn.pinming.http.handler;
 
 
+import cn.pinming.autoconfigure.ClientSettings;
 import cn.pinming.autoconfigure.PmWebClientProperties;
 import cn.pinming.bean.MethodInfo;
 import cn.pinming.bean.ServerInfo;
 import cn.pinming.exception.PmWebClientException;
+import cn.pinming.exception.PmWebClientResponseException;
+import cn.pinming.http.codec.CodecRegistry;
+import cn.pinming.http.resources.PmWebClientResources;
 import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.loadbalancer.LoadBalancer;
 import cn.pinming.interfaces.HttpHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import cn.pinming.metrics.PmWebClientMetrics;
+import cn.pinming.resilience.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Tags;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.http.codec.ClientCodecConfigurer;
-import org.springframework.http.codec.json.Jackson2JsonDecoder;
-import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
-import org.springframework.util.MimeType;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyExtractors;
 import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClient.RequestBodySpec;
+import org.springframework.web.reactive.function.client.WebClient.RequestHeadersSpec;
 import org.springframework.web.reactive.function.client.WebClient.ResponseSpec;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.netty.channel.BootstrapHandlers;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.resources.ConnectionProvider;
 import reactor.netty.resources.LoopResources;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Arrays;
-import java.util.List;
+import java.util.Collections;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
@@ -49,13 +66,28 @@ public class WebClientHttpHandler implements HttpHandler {
     private static final CustomLogger customLogger = new CustomLogger(HttpClient.class);
     private WebClient client;
 
-    private static final String PM_WEBCLIENT_START_TIME = "PM_WEBCLIENT_START_TIME";
+    private static final String READ_TIMEOUT_HANDLER = "pmReadTimeoutHandler";
+
+    private static final String WRITE_TIMEOUT_HANDLER = "pmWriteTimeoutHandler";
+
+    /**
+     * 返回 Flux 的方法优先要普通 JSON, 对方支持时也接受按行输出的流
+     */
+    private static final MediaType[] FLUX_ACCEPT = {
+            MediaType.APPLICATION_JSON,
+            new MediaType(CodecRegistry.APPLICATION_NDJSON, Collections.singletonMap("q", "0.9")),
+            new MediaType(MediaType.APPLICATION_STREAM_JSON, Collections.singletonMap("q", "0.9"))
+    };
+
+    private static final ParameterizedTypeReference<MultiValueMap<String, ?>> FORM_DATA_TYPE =
+            new ParameterizedTypeReference<MultiValueMap<String, ?>>() {};
 
     /**
      * 初始化webclient
      */
     @Override
-    public void init(ServerInfo serverInfo, PmWebClientProperties properties, InterceptorChain interceptorChain) {
+    public void init(ServerInfo serverInfo, PmWebClientProperties properties, InterceptorChain interceptorChain, PmWebClientResources resources,
+                     PmWebClientMetrics metrics, LoadBalancer loadBalancer) {
         //By default, HttpClient participates in the global Reactor Netty resources held in
         //reactor.netty.http.HttpResources, including event loop threads and a connection pool. This is the
         //recommended mode, since fixed, shared resources are preferred for event loop concurrency. In this
@@ -66,11 +98,15 @@ public class WebClientHttpHandler implements HttpHandler {
 
         //配置动态连接池
         //ConnectionProvider provider = ConnectionProvider.elastic("elastic pool");
-        //配置固定大小连接池，如最大连接数、连接获取超时、空闲连接死亡时间等
-        ConnectionProvider provider = ConnectionProvider.fixed("fixed", properties.getMaxConnections(), properties.getAcquireTimeout());
-        //指定 Netty 的 select 和 work线程数量
-        LoopResources loop = LoopResources.create(properties.getEventLoopThreadPrefix() + serverInfo.getClientInterfaceName(),
-                properties.getSelectCount(), properties.getWorkerCount(), true);
+        //默认所有客户端共用 event loop, 连接池按 resourceMode 共享或按目标 host 区分, 见 PmWebClientResources
+        // 全局配置被接口级别的 pm.webclient.clients.[接口名].* 覆盖后的结果
+        ClientSettings settings = ClientSettings.of(properties, serverInfo.getClientInterfaceName());
+        ConnectionProvider provider = resources.connectionProvider(serverInfo, settings);
+        LoopResources loop = resources.loopResources(serverInfo);
+        AdaptiveConcurrencyLimiter limiter = settings.getAdaptiveLimit().isEnabled()
+                ? new AdaptiveConcurrencyLimiter(serverInfo.getClientInterfaceName(), settings.getAdaptiveLimit(),
+                metrics.getRegistry(), Tags.of("client", serverInfo.getClientInterfaceName()))
+                : null;
 
         HttpClient httpClient = HttpClient.create(provider).tcpConfiguration(tcpClient -> tcpClient
                 // bootstrap这里不能这么改，会导致每个请求都创建一个连接池, 现在并不需要这个自定义的 logger 所以暂时去掉；
@@ -78,65 +114,86 @@ public class WebClientHttpHandler implements HttpHandler {
 
                 // 每一个TCP创建会配置 TcpClientBootstrap#configure
                 .bootstrap(bootstrap -> BootstrapHandlers.updateLogSupport(bootstrap, customLogger))
-                .doOnConnected(connection -> {
-                    //读写超时设置
-                    connection.addHandlerLast(new ReadTimeoutHandler(properties.getReadTimeoutSeconds()))
-                            .addHandlerLast(new WriteTimeoutHandler(properties.getWriteTimeoutSeconds()));
-                })
                 //连接超时设置
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getConnectTimeoutSeconds() * 1000)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout().toMillis())
                 .option(ChannelOption.TCP_NODELAY, true)
-                .runOn(loop));
+                .runOn(loop))
+                //读写超时设置, 每个请求单独添加, 连接归还到连接池时移除, 不会把空闲连接当成超时
+                .doOnRequest((request, connection) -> connection
+                        .addHandlerLast(READ_TIMEOUT_HANDLER, new ReadTimeoutHandler(settings.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS))
+                        .addHandlerLast(WRITE_TIMEOUT_HANDLER, new WriteTimeoutHandler(settings.getWriteTimeout().toMillis(), TimeUnit.MILLISECONDS)));
         // Having enabled the wiretap, each request and response will be logged in full detail.
         //.wiretap(true);
+        // 加上响应解压, Accept-Encoding 由 CompressionFilter 按方法设置
+        boolean compression = settings.isCompressionUsed();
+        if (compression) {
+            httpClient = httpClient.compress(true);
+        }
 
         this.client = WebClient.builder()
                 .baseUrl(serverInfo.getUrl())
                 //.filter(logRequest())
                 //.filter(logResponse())
+                // 拦截器返回 Mono, 前置和后置处理都不阻塞 event loop
+                .filter((clientRequest, exchangeFunction) -> interceptorChain.applyPre(clientRequest)
+                        .switchIfEmpty(Mono.defer(() -> {
+                            // TODO: 2020/10/26 换个编码
+                            log.warn("请求被拦截，本次请求作废 {}", clientRequest.url().toString());
+                            return Mono.<ClientRequest>error(new PmWebClientException(String.format("请求被拦截，本次请求作废 %s", clientRequest.url().toString())));
+                        }))
+                        .flatMap(request -> {
+                            Instant start = Instant.now();
+                            return exchangeFunction.exchange(request)
+                                    .flatMap(clientResponse -> {
+                                        final long cost = Duration.between(start, Instant.now()).toMillis();
+                                        log.info("signal.isOnComplete {} request time: [{}], resp:{}", request.logPrefix(), cost, clientResponse);
+                                        return interceptorChain.applyPost(request, clientResponse, new RequestInfo(request.url().toString(), cost, start.toEpochMilli()))
+                                                .thenReturn(clientResponse);
+                                    })
+                                    .onErrorResume(throwable -> {
+                                        final long cost = Duration.between(start, Instant.now()).toMillis();
+                                        log.error("signal.isOnError {} request time: [{}]", request.logPrefix(), cost, throwable);
+                                        return interceptorChain.applyError(request, throwable, new RequestInfo(request.url().toString(), cost, start.toEpochMilli()))
+                                                .then(Mono.<ClientResponse>error(throwable));
+                                    });
+                        }))
+                // 按接口方法记录耗时分布、错误数和正在进行的请求数
+                .filters(filters -> {
+                    if (metrics.isEnabled()) {
+                        filters.add(metrics.client(serverInfo.getClientInterfaceName()).filter());
+                    }
+                })
+                // 按耗时自动调整的并发上限, 超过时直接失败
+                .filters(filters -> {
+                    if (limiter != null) {
+                        filters.add(limiter.filter());
+                    }
+                })
+                // 在多个服务地址之间选择本次请求的目标地址
+                .filters(filters -> {
+                    if (loadBalancer != null) {
+                        filters.add(loadBalancer.filter());
+                    }
+                })
+                // 响应超时按请求计时, 从发出请求到收到响应头
                 .filter((clientRequest, exchangeFunction) -> {
-                    if (!interceptorChain.applyPre(clientRequest)) {
-                        // TODO: 2020/10/26 换个编码
-                        log.warn("请求被拦截，本次请求作废 {}", clientRequest.url().toString());
-                        //return Mono.just(ClientResponse.create(HttpStatus.resolve(500)).build());
-                        throw new PmWebClientException(String.format("请求被拦截，本次请求作废 %s", clientRequest.url().toString()));
+                    Duration responseTimeout = (Duration) clientRequest.attribute(RequestAttributes.RESPONSE_TIMEOUT).orElse(null);
+                    if (responseTimeout == null) {
+                        return exchangeFunction.exchange(clientRequest);
+                    }
+                    return exchangeFunction.exchange(clientRequest).timeout(responseTimeout);
+                })
+                // 最内层, 压缩的是最终发出的请求体
+                .filters(filters -> {
+                    if (compression) {
+                        filters.add(new CompressionFilter(settings));
                     }
-                    return exchangeFunction.exchange(clientRequest).doOnEach((signal) -> {
-                        Instant start = signal.getContext().get(PM_WEBCLIENT_START_TIME);
-                        ClientResponse clientResponse = signal.get();
-                        Throwable throwable = signal.getThrowable();
-                        if (signal.isOnComplete()) {
-                            final long cost = Duration.between(start, Instant.now()).toMillis();
-                            log.info("signal.isOnComplete {} request time: [{}], resp:{}", clientRequest.logPrefix(), cost, clientResponse);
-                            interceptorChain.applyPost(clientRequest, clientResponse, new RequestInfo(clientRequest.url().toString(), cost, start.toEpochMilli()));
-                        }
-                        if (signal.isOnError()) {
-                            final long cost = Duration.between(start, Instant.now()).toMillis();
-                            log.error("signal.isOnError {} request time: [{}]", clientRequest.logPrefix(), cost, throwable);
-                            interceptorChain.applyError(clientRequest, clientResponse, new RequestInfo(clientRequest.url().toString(), cost, start.toEpochMilli()));
-                        }
-                    }).subscriberContext((context) -> context.put(PM_WEBCLIENT_START_TIME, Instant.now()));
                 })
                 // Spring WebFlux configures limits for buffering data in-memory in codec to avoid application
                 // memory issues. By the default this is configured to 256KB and if that’s not enough for your use case,
                 // you’ll see the following: org.springframework.core.io.buffer.DataBufferLimitException: Exceeded limit on max
                 // bytes to buffer
-                .codecs(codecs -> {
-                            ClientCodecConfigurer.ClientDefaultCodecs defaultCodecs = codecs.defaultCodecs();
-                            defaultCodecs.maxInMemorySize(properties.getMaxInMemorySizeMegaByte() * 1024 * 1024);
-                            // fix 'Content type 'application/octet-stream' not supported for bodyType= [XXX]'
-                            ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
-                            List<MimeType> mimeTypes = Arrays.asList(
-                                    new MimeType("application", "json", StandardCharsets.UTF_8),
-                                    new MimeType("text", "html", StandardCharsets.UTF_8),
-                                    new MimeType("text", "plain", StandardCharsets.UTF_8),
-                                    new MimeType("application", "*+json", StandardCharsets.UTF_8),
-                                    new MimeType("application", "octet-stream", StandardCharsets.UTF_8)
-                            );
-                            Jackson2JsonDecoder jackson2JsonDecoder = new Jackson2JsonDecoder(objectMapper, (MimeType[]) mimeTypes.toArray());
-                            defaultCodecs.jackson2JsonDecoder(jackson2JsonDecoder);
-                        }
-                )
+                .codecs(codecs -> resources.getCodecs().configure(codecs, settings.getMaxInMemorySize()))
                 //.filter()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
@@ -149,18 +206,10 @@ public class WebClientHttpHandler implements HttpHandler {
     @SuppressWarnings("unchecked")
     public Object invokeRest(MethodInfo methodInfo) {
         Object result;
-        RequestBodySpec request = this.client
-                .method(methodInfo.getMethod())
-                .uri(methodInfo.getUrl(), methodInfo.getParams())
+        RequestBodySpec request = prepare(methodInfo)
                 .contentType(Objects.isNull(methodInfo.getReqeustContentType()) ? null : MediaType.parseMediaType(methodInfo.getReqeustContentType()))
 //				.contentType(MediaType.APPLICATION_JSON)
-                .accept(MediaType.APPLICATION_JSON)
-                .headers(headers -> {
-                    if (Objects.isNull(methodInfo.getRequestHeaders())) {
-                        return;
-                    }
-                    methodInfo.getRequestHeaders().forEach(headers::add);
-                });
+                .accept(accept(methodInfo));
         ResponseSpec retrieve;
         if (methodInfo.getBody() != null) {
             // 发出请求
@@ -169,10 +218,7 @@ public class WebClientHttpHandler implements HttpHandler {
             retrieve = request.retrieve();
         }
         // 处理异常
-        retrieve.onStatus(status -> !status.is2xxSuccessful(), response -> {
-            response.bodyToMono(String.class).subscribe(r -> log.info("请求出错, status:{}, body:{}", response.statusCode(), r));
-            return Mono.just(new PmWebClientException(response.statusCode().toString()));
-        });
+        retrieve.onStatus(status -> !status.is2xxSuccessful(), this::toException);
         // 处理body
         if (methodInfo.isReturnFlux()) {
             result = retrieve.bodyToFlux(methodInfo.getReturnElementType());
@@ -182,6 +228,38 @@ public class WebClientHttpHandler implements HttpHandler {
         return result;
     }
 
+    /**
+     * 接口声明了响应格式时按声明的格式, 否则要 JSON
+     */
+    private static MediaType[] accept(MethodInfo methodInfo) {
+        if (methodInfo.getAccept() != null) {
+            return new MediaType[]{MediaType.parseMediaType(methodInfo.getAccept())};
+        }
+        return methodInfo.isReturnFlux() ? FLUX_ACCEPT : new MediaType[]{MediaType.APPLICATION_JSON};
+    }
+
+    /**
+     * 处理rest请求, 保留响应头供缓存等使用
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<ResponseEntity<Object>> invokeRestForEntity(MethodInfo methodInfo) {
+        RequestBodySpec request = prepare(methodInfo)
+                .contentType(Objects.isNull(methodInfo.getReqeustContentType()) ? null : MediaType.parseMediaType(methodInfo.getReqeustContentType()))
+                .accept(accept(methodInfo));
+        RequestHeadersSpec<?> spec = request;
+        if (methodInfo.getBody() != null) {
+            spec = request.body(methodInfo.getBody(), methodInfo.getBodyElementType());
+        }
+        ParameterizedTypeReference<Object> returnType = (ParameterizedTypeReference<Object>) methodInfo.getReturnElementType();
+        return spec.exchange().flatMap(response -> {
+            if (response.statusCode().is2xxSuccessful() || response.statusCode() == HttpStatus.NOT_MODIFIED) {
+                return response.toEntity(returnType);
+            }
+            return toException(response).flatMap(e -> Mono.<ResponseEntity<Object>>error(e));
+        });
+    }
+
     /**
      * 处理 from 表单请求
      */
@@ -206,37 +284,22 @@ public class WebClientHttpHandler implements HttpHandler {
         //  .bodyToMono(Void.class);
 
         Object result;
-        RequestBodySpec request = this.client
-                .method(methodInfo.getMethod())
-                .uri(methodInfo.getUrl(), methodInfo.getParams())
+        RequestBodySpec request = prepare(methodInfo)
                 // 要支持 multipart 这里不指定，让框架自己决定使用什么 content-type
                 //.contentType(MediaType.parseMediaType(methodInfo.getReqeustContentType()))
-                .accept(MediaType.ALL)
-                .headers(headers -> {
-                    if (Objects.isNull(methodInfo.getRequestHeaders())) {
-                        return;
-                    }
-                    methodInfo.getRequestHeaders().forEach(headers::add);
-                });
+                .accept(MediaType.ALL);
         ResponseSpec retrieve;
         // 判断是否带了 body
         if (methodInfo.getFormData() != null) {
-            MultiValueMap<String, ?> formData = methodInfo.getFormData().block();
             // 发出请求
-            //retrieve = request.body(BodyInserters
-            //		.fromPublisher(methodInfo.getFormData(),
-            //				new ParameterizedTypeReference<MultiValueMap<String, String>>() {}))
-            //		.retrieve();
-            retrieve = request.syncBody(formData).retrieve();
+            // 不指定 content-type 时由 MultipartHttpMessageWriter 在拿到表单内容后决定按 form 还是 multipart 写出,
+            // 表单的 Mono 直接交给 writer 订阅, 请求组装时不再 block
+            retrieve = request.body(methodInfo.getFormData(), FORM_DATA_TYPE).retrieve();
         } else {
             retrieve = request.retrieve();
         }
-        // 处理异常
-        retrieve.onStatus(status -> !status.is2xxSuccessful(), response -> {
-            String msg = String.format("请求出错, status:%s, body:%s", response.statusCode(), response.bodyToMono(String.class).block());
-            log.info(msg);
-            return Mono.just(new PmWebClientException(msg));
-        });
+        // 处理异常, 异步读取错误响应的 body, 不能在 event loop 线程上 block
+        retrieve.onStatus(status -> !status.is2xxSuccessful(), this::toException);
         // 处理body
         if (methodInfo.isReturnFlux()) {
             result = retrieve.bodyToFlux(methodInfo.getReturnElementType());
@@ -250,30 +313,21 @@ public class WebClientHttpHandler implements HttpHandler {
     @SuppressWarnings("unchecked")
     public Object invokePlain(MethodInfo methodInfo) {
         Object result;
-        RequestBodySpec request = this.client
-                .method(methodInfo.getMethod())
-                .uri(methodInfo.getUrl(), methodInfo.getParams())
+        RequestBodySpec request = prepare(methodInfo)
                 .contentType(MediaType.parseMediaType(methodInfo.getReqeustContentType()))
-                .accept(MediaType.ALL)
-                .headers(headers -> {
-                    if (Objects.isNull(methodInfo.getRequestHeaders())) {
-                        return;
-                    }
-                    methodInfo.getRequestHeaders().forEach(headers::add);
-                });
+                .accept(MediaType.ALL);
         ResponseSpec retrieve;
-        if (methodInfo.getBody() != null) {
+        if (methodInfo.getBodyInserter() != null) {
+            // 原始字节直接写出, 文件走 sendFile
+            retrieve = request.body(methodInfo.getBodyInserter()).retrieve();
+        } else if (methodInfo.getBody() != null) {
             // 发出请求
             retrieve = request.body(BodyInserters.fromPublisher(methodInfo.getBody(), methodInfo.getBodyElementType())).retrieve();
         } else {
             retrieve = request.retrieve();
         }
-        // 处理异常
-        retrieve.onStatus(status -> !status.is2xxSuccessful(), response -> {
-            String msg = String.format("请求出错, status:%s, body:%s", response.statusCode(), response.bodyToMono(String.class).block());
-            log.info(msg);
-            return Mono.just(new PmWebClientException(msg));
-        });
+        // 处理异常, 异步读取错误响应的 body, 不能在 event loop 线程上 block
+        retrieve.onStatus(status -> !status.is2xxSuccessful(), this::toException);
         // 处理body
         if (methodInfo.isReturnFlux()) {
             result = retrieve.bodyToFlux(methodInfo.getReturnElementType());
@@ -283,6 +337,116 @@ public class WebClientHttpHandler implements HttpHandler {
         return result;
     }
 
+    /**
+     * 不经过解码器读取响应体, 每收到一块数据就交给下游, 内存占用与响应大小无关
+     */
+    @Override
+    public Object invokeDownload(MethodInfo methodInfo) {
+        RequestBodySpec request = prepare(methodInfo).accept(MediaType.ALL);
+        if (methodInfo.getReqeustContentType() != null) {
+            request.contentType(MediaType.parseMediaType(methodInfo.getReqeustContentType()));
+        }
+        RequestHeadersSpec<?> spec = request;
+        if (methodInfo.getBodyInserter() != null) {
+            spec = request.body(methodInfo.getBodyInserter());
+        } else if (methodInfo.getBody() != null) {
+            spec = request.body(methodInfo.getBody(), methodInfo.getBodyElementType());
+        }
+        Flux<DataBuffer> body = spec.exchange().flatMapMany(response -> {
+            if (!response.statusCode().is2xxSuccessful()) {
+                return toException(response).flatMapMany(e -> Flux.<DataBuffer>error(e));
+            }
+            return response.body(BodyExtractors.toDataBuffers());
+        });
+        Object target = methodInfo.getDownloadTarget();
+        if (target == null) {
+            if (methodInfo.getReturnElementType().getType() == byte[].class) {
+                return body.map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                });
+            }
+            // 由调用方负责释放 DataBuffer
+            return body;
+        }
+        Mono<Long> written = target instanceof Path ? write(body, (Path) target) : write(body, (WritableByteChannel) target);
+        return methodInfo.getReturnElementType().getType() == Void.class ? written.then() : written;
+    }
+
+    /**
+     * 异步写文件, 每次订阅(包括重试)都从头覆盖
+     */
+    private static Mono<Long> write(Flux<DataBuffer> body, Path path) {
+        return Mono.using(
+                () -> AsynchronousFileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                channel -> count(DataBufferUtils.write(body, channel, 0)),
+                channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        log.warn("关闭文件 {} 失败", path, e);
+                    }
+                });
+    }
+
+    /**
+     * WritableByteChannel 可能阻塞, 不在 event loop 上写
+     */
+    private static Mono<Long> write(Flux<DataBuffer> body, WritableByteChannel channel) {
+        return count(DataBufferUtils.write(body.publishOn(Schedulers.elastic()), channel));
+    }
+
+    /**
+     * 统计写入的字节数, 写完的 buffer 立即释放
+     */
+    private static Mono<Long> count(Flux<DataBuffer> written) {
+        return written.reduce(0L, (total, buffer) -> {
+            long size = buffer.readableByteCount();
+            DataBufferUtils.release(buffer);
+            return total + size;
+        });
+    }
+
+    /**
+     * 组装请求的公共部分: 请求方法、url、请求头, 以及供过滤器使用的 attribute
+     */
+    private RequestBodySpec prepare(MethodInfo methodInfo) {
+        return this.client
+                .method(methodInfo.getMethod())
+                .uri(methodInfo.getUrl(), methodInfo.getParams())
+                .attribute(RequestAttributes.METHOD_NAME, methodInfo.getMethodName())
+                .attribute(RequestAttributes.URI_TEMPLATE, methodInfo.getUrl())
+                .attributes(attributes -> {
+                    if (methodInfo.getResponseTimeout() != null) {
+                        attributes.put(RequestAttributes.RESPONSE_TIMEOUT, methodInfo.getResponseTimeout());
+                    }
+                    if (methodInfo.getBodyInserter() != null) {
+                        attributes.put(RequestAttributes.RAW_BODY, Boolean.TRUE);
+                    }
+                })
+                .headers(headers -> {
+                    if (Objects.isNull(methodInfo.getRequestHeaders())) {
+                        return;
+                    }
+                    methodInfo.getRequestHeaders().forEach(headers::add);
+                });
+    }
+
+    /**
+     * 把非 2xx 的响应转换成 {@link PmWebClientResponseException}, 响应 body 异步读取
+     */
+    private Mono<PmWebClientException> toException(ClientResponse response) {
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .map(body -> {
+                    String msg = String.format("请求出错, status:%s, body:%s", response.rawStatusCode(), body);
+                    log.info(msg);
+                    return new PmWebClientResponseException(msg, response.rawStatusCode(), body);
+                });
+    }
+
     private ExchangeFilterFunction logRequest() {
         return (clientRequest, next) -> {
             log.info("{} Request: {} {}", clientRequest.logPrefix(), clientRequest.method(), clientRequest.url());
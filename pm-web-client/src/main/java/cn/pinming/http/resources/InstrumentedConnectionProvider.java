@@ -0,0 +1,111 @@
+package cn.pinming.http.resources;
+
+import cn.pinming.metrics.PoolMetrics;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.channel.BootstrapHandlers;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 包装 {@link ConnectionProvider}, 记录连接获取、归还、创建、关闭等事件到 {@link PoolMetrics}
+ * <p>
+ * reactor netty 0.8 的连接池本身没有指标, 这里通过在每次 acquire 时追加一个 {@link ConnectionObserver}
+ * 来观察连接的状态变化
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/14 11:05
+ */
+public class InstrumentedConnectionProvider implements ConnectionProvider {
+
+    private static final AttributeKey<Boolean> INSTRUMENTED = AttributeKey.valueOf("pmPoolInstrumented");
+
+    /**
+     * 连接当前是否被借出, 用来保证借出的连接只会被归还或关闭一次
+     */
+    private static final AttributeKey<AtomicBoolean> IN_USE = AttributeKey.valueOf("pmPoolConnectionInUse");
+
+    private final ConnectionProvider delegate;
+
+    private final PoolMetrics metrics;
+
+    private final ConnectionObserver observer;
+
+    public InstrumentedConnectionProvider(ConnectionProvider delegate, PoolMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.observer = (connection, newState) -> {
+            if (newState == ConnectionObserver.State.CONNECTED) {
+                metrics.connectionCreated();
+                Channel channel = connection.channel();
+                channel.closeFuture().addListener(future -> {
+                    metrics.connectionClosed();
+                    if (inUse(channel).getAndSet(false)) {
+                        metrics.activeConnectionClosed();
+                    }
+                });
+            } else if (newState == ConnectionObserver.State.RELEASED) {
+                if (inUse(connection.channel()).getAndSet(false)) {
+                    metrics.connectionReleased();
+                }
+            }
+        };
+    }
+
+    @Override
+    public Mono<? extends Connection> acquire(Bootstrap bootstrap) {
+        // 每个请求使用的 bootstrap 都是 clone 出来的, 这里只追加一次观察者
+        if (bootstrap.config().attrs().get(INSTRUMENTED) == null) {
+            bootstrap.attr(INSTRUMENTED, Boolean.TRUE);
+            BootstrapHandlers.connectionObserver(bootstrap, BootstrapHandlers.connectionObserver(bootstrap).then(observer));
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            metrics.acquireStarted();
+            return delegate.acquire(bootstrap)
+                    .doOnSuccess(connection -> {
+                        if (connection == null) {
+                            metrics.acquireCancelled();
+                            return;
+                        }
+                        inUse(connection.channel()).set(true);
+                        metrics.acquireSucceeded(System.nanoTime() - start);
+                    })
+                    .doOnError(e -> metrics.acquireFailed(System.nanoTime() - start, e instanceof TimeoutException))
+                    .doOnCancel(metrics::acquireCancelled);
+        });
+    }
+
+    private static AtomicBoolean inUse(Channel channel) {
+        AtomicBoolean inUse = channel.attr(IN_USE).get();
+        if (inUse == null) {
+            AtomicBoolean created = new AtomicBoolean();
+            inUse = channel.attr(IN_USE).setIfAbsent(created);
+            if (inUse == null) {
+                inUse = created;
+            }
+        }
+        return inUse;
+    }
+
+    @Override
+    public void dispose() {
+        delegate.dispose();
+    }
+
+    @Override
+    public Mono<Void> disposeLater() {
+        return delegate.disposeLater();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return delegate.isDisposed();
+    }
+}
@@ -0,0 +1,150 @@
+package cn.pinming.http.resources;
+
+import cn.pinming.autoconfigure.ClientSettings;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.bean.ServerInfo;
+import cn.pinming.http.codec.CodecRegistry;
+import cn.pinming.metrics.PmWebClientMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 所有客户端共用的 event loop、连接池和编解码配置, 只有显式指定 dedicatedResources 的客户端才会单独创建 event loop 和连接池
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/12 9:40
+ */
+@Slf4j
+public class PmWebClientResources implements DisposableBean {
+
+    private static final String SHARED_POOL_NAME = "pm-shared";
+
+    private final PmWebClientProperties properties;
+
+    private final PmWebClientMetrics metrics;
+
+    private final CodecRegistry codecs;
+
+    private final LoopResources sharedLoop;
+
+    private final Map<String, ConnectionProvider> sharedProviders = new ConcurrentHashMap<>();
+
+    private final List<LoopResources> dedicatedLoops = new CopyOnWriteArrayList<>();
+
+    private final List<ConnectionProvider> dedicatedProviders = new CopyOnWriteArrayList<>();
+
+    /**
+     * 其他跟随容器一起关闭的资源, 比如定时读取服务地址的任务
+     */
+    private final List<Disposable> disposables = new CopyOnWriteArrayList<>();
+
+    public PmWebClientResources(PmWebClientProperties properties, PmWebClientMetrics metrics, CodecRegistry codecs) {
+        this.properties = properties;
+        this.metrics = metrics;
+        this.codecs = codecs;
+        this.sharedLoop = LoopResources.create(properties.getEventLoopThreadPrefix() + "shared",
+                properties.getSelectCount(), properties.getSharedWorkerCount(), true);
+    }
+
+    /**
+     * 获取客户端使用的 event loop
+     */
+    public LoopResources loopResources(ServerInfo serverInfo) {
+        if (!isDedicated(serverInfo)) {
+            return sharedLoop;
+        }
+        //指定 Netty 的 select 和 work线程数量
+        LoopResources loop = LoopResources.create(properties.getEventLoopThreadPrefix() + serverInfo.getClientInterfaceName(),
+                properties.getSelectCount(), properties.getWorkerCount(), true);
+        dedicatedLoops.add(loop);
+        return loop;
+    }
+
+    /**
+     * 获取客户端使用的连接池
+     */
+    public ConnectionProvider connectionProvider(ServerInfo serverInfo, ClientSettings settings) {
+        if (isDedicated(serverInfo) || settings.isCustomPool()) {
+            //配置固定大小连接池，如最大连接数、连接获取超时、空闲连接死亡时间等
+            ConnectionProvider provider = newProvider(serverInfo.getClientInterfaceName(), settings.getMaxConnections(), settings.getAcquireTimeout());
+            dedicatedProviders.add(provider);
+            return provider;
+        }
+        String key = properties.getResourceMode() == PmWebClientProperties.ResourceMode.PER_HOST
+                ? hostKey(serverInfo.getUrl()) : SHARED_POOL_NAME;
+        return sharedProviders.computeIfAbsent(key, name -> newProvider(name, properties.getMaxConnections(),
+                Duration.ofMillis(properties.getAcquireTimeout())));
+    }
+
+    private ConnectionProvider newProvider(String name, int maxConnections, Duration acquireTimeout) {
+        log.info("create connection provider: {}, max connections: {}", name, maxConnections);
+        ConnectionProvider provider = ConnectionProvider.fixed(name, maxConnections, acquireTimeout.toMillis());
+        if (!metrics.isEnabled()) {
+            return provider;
+        }
+        return new InstrumentedConnectionProvider(provider, metrics.pool(name, maxConnections));
+    }
+
+    private boolean isDedicated(ServerInfo serverInfo) {
+        if (properties.getResourceMode() == PmWebClientProperties.ResourceMode.PER_CLIENT) {
+            return true;
+        }
+        PmWebClientProperties.ClientProperties clientProperties = properties.getClients().get(serverInfo.getClientInterfaceName());
+        return clientProperties != null && clientProperties.isDedicatedResources();
+    }
+
+    /**
+     * 以 scheme://host:port 作为连接池的 key, 指向同一个服务的客户端共用连接
+     */
+    static String hostKey(String url) {
+        if (url == null) {
+            return SHARED_POOL_NAME;
+        }
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() == null) {
+                return SHARED_POOL_NAME;
+            }
+            int port = uri.getPort();
+            if (port == -1) {
+                port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+            }
+            return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+        } catch (IllegalArgumentException e) {
+            return SHARED_POOL_NAME;
+        }
+    }
+
+    /**
+     * 获取客户端共用的编解码配置
+     */
+    public CodecRegistry getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * 登记需要在容器关闭时释放的资源
+     */
+    public void register(Disposable disposable) {
+        disposables.add(disposable);
+    }
+
+    @Override
+    public void destroy() {
+        disposables.forEach(Disposable::dispose);
+        sharedProviders.values().forEach(ConnectionProvider::dispose);
+        dedicatedProviders.forEach(ConnectionProvider::dispose);
+        dedicatedLoops.forEach(LoopResources::dispose);
+        sharedLoop.dispose();
+    }
+}
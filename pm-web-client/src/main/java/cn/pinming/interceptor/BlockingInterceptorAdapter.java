@@ -0,0 +1,57 @@
+package cn.pinming.interceptor;
+
+import cn.pinming.http.handler.RequestInfo;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.OrderUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * 把同步的 {@link Interceptor} 适配成 {@link ReactiveInterceptor}, 保留原来的排序
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/20 10:10
+ */
+class BlockingInterceptorAdapter implements ReactiveInterceptor, Ordered {
+
+    private final Interceptor delegate;
+
+    private final boolean offloadPost;
+
+    BlockingInterceptorAdapter(Interceptor delegate, boolean offloadPost) {
+        this.delegate = delegate;
+        this.offloadPost = offloadPost;
+    }
+
+    @Override
+    public Mono<ClientRequest> applyPre(ClientRequest clientRequest) {
+        return Mono.fromCallable(() -> delegate.applyPre(clientRequest))
+                .filter(Boolean::booleanValue)
+                .map(pass -> clientRequest);
+    }
+
+    @Override
+    public Mono<Void> applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+        return Mono.fromRunnable(() -> delegate.applyPost(clientRequest, clientResponse, requestInfo));
+    }
+
+    @Override
+    public Mono<Void> applyError(ClientRequest clientRequest, Throwable throwable, RequestInfo requestInfo) {
+        // 同步接口拿不到异常, 与原来一样出错时没有响应
+        return Mono.fromRunnable(() -> delegate.applyError(clientRequest, null, requestInfo));
+    }
+
+    @Override
+    public boolean offloadPost() {
+        return offloadPost;
+    }
+
+    @Override
+    public int getOrder() {
+        if (delegate instanceof Ordered) {
+            return ((Ordered) delegate).getOrder();
+        }
+        return OrderUtils.getOrder(delegate.getClass(), Ordered.LOWEST_PRECEDENCE);
+    }
+}
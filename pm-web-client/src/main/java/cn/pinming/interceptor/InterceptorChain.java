@@ -1,47 +1,108 @@
 package cn.pinming.interceptor;
 
 import cn.pinming.http.handler.RequestInfo;
-import org.springframework.util.CollectionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 /**
+ * 按顺序组合所有拦截器, 整个过程不阻塞 event loop
+ * <p>
+ * {@link ReactiveInterceptor#offloadPost()} 为 true 的拦截器的后置处理在 offloadScheduler 上执行,
+ * 响应不等待它们完成
+ *
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
  * @since 2020/10/26 17:47
  */
-public class InterceptorChain {
+@Slf4j
+public class InterceptorChain implements DisposableBean {
 
-    private final List<Interceptor> interceptors;
+    private final List<ReactiveInterceptor> interceptors;
+
+    private final Scheduler offloadScheduler;
 
     public InterceptorChain(List<Interceptor> interceptors){
-        this.interceptors = interceptors;
+        this(interceptors, Collections.emptyList(), false, Schedulers.immediate());
     }
 
-    public boolean applyPre(ClientRequest clientRequest){
-        if (CollectionUtils.isEmpty(interceptors)){
-            return true;
+    /**
+     * @param offloadBlockingPost 同步拦截器的后置处理是否放到 offloadScheduler 上执行
+     */
+    public InterceptorChain(List<Interceptor> interceptors, List<ReactiveInterceptor> reactiveInterceptors,
+                            boolean offloadBlockingPost, Scheduler offloadScheduler){
+        List<ReactiveInterceptor> all = new ArrayList<>();
+        if (interceptors != null) {
+            interceptors.forEach(interceptor -> all.add(new BlockingInterceptorAdapter(interceptor, offloadBlockingPost)));
         }
-        for(Interceptor interceptor: interceptors){
-            if (!interceptor.applyPre(clientRequest)){
-                return false;
-            }
+        if (reactiveInterceptors != null) {
+            all.addAll(reactiveInterceptors);
         }
-        return true;
+        AnnotationAwareOrderComparator.sort(all);
+        this.interceptors = all;
+        this.offloadScheduler = offloadScheduler;
     }
 
-    public void applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo){
-        if (CollectionUtils.isEmpty(interceptors)){
-            return;
+    /**
+     * 依次执行前置处理, 每个拦截器拿到的是上一个拦截器返回的请求
+     *
+     * @return 最终发出的请求, 为空表示请求被拦截
+     */
+    public Mono<ClientRequest> applyPre(ClientRequest clientRequest){
+        Mono<ClientRequest> result = Mono.just(clientRequest);
+        for (ReactiveInterceptor interceptor : interceptors) {
+            result = result.flatMap(interceptor::applyPre);
         }
-        interceptors.forEach(interceptor -> interceptor.applyPost(clientRequest, clientResponse, requestInfo));
+        return result;
     }
 
-    public void applyError(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo){
-        if (CollectionUtils.isEmpty(interceptors)){
-            return;
+    public Mono<Void> applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo){
+        return apply(interceptor -> interceptor.applyPost(clientRequest, clientResponse, requestInfo));
+    }
+
+    public Mono<Void> applyError(ClientRequest clientRequest, Throwable throwable, RequestInfo requestInfo){
+        return apply(interceptor -> interceptor.applyError(clientRequest, throwable, requestInfo));
+    }
+
+    /**
+     * 后置处理出错只记录日志, 不影响请求结果
+     */
+    private Mono<Void> apply(Function<ReactiveInterceptor, Mono<Void>> hook) {
+        if (interceptors.isEmpty()) {
+            return Mono.empty();
         }
-        interceptors.forEach(interceptor -> interceptor.applyError(clientRequest, clientResponse, requestInfo));
+        return Mono.defer(() -> {
+            List<Mono<Void>> inline = new ArrayList<>();
+            for (ReactiveInterceptor interceptor : interceptors) {
+                Mono<Void> applied = Mono.defer(() -> hook.apply(interceptor))
+                        .onErrorResume(e -> {
+                            log.warn("拦截器 {} 后置处理失败", interceptor.getClass().getName(), e);
+                            return Mono.empty();
+                        });
+                if (interceptor.offloadPost()) {
+                    // 线程池队列满时直接丢弃, 不能反过来拖慢请求
+                    applied.subscribeOn(offloadScheduler)
+                            .subscribe(null, e -> log.warn("拦截器 {} 后置处理被丢弃: {}", interceptor.getClass().getName(), e.toString()));
+                } else {
+                    inline.add(applied);
+                }
+            }
+            return Flux.concat(inline).then();
+        });
+    }
+
+    @Override
+    public void destroy() {
+        offloadScheduler.dispose();
     }
 }
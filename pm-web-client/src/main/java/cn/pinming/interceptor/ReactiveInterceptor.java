@@ -0,0 +1,48 @@
+package cn.pinming.interceptor;
+
+import cn.pinming.http.handler.RequestInfo;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * 非阻塞的拦截器, 各个方法都运行在 netty 的 event loop 上, 需要 I/O 时返回对应的 {@link Mono}, 不能 block
+ * <p>
+ * 与 {@link Interceptor} 一起按 {@link org.springframework.core.annotation.Order} 排序执行
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/20 10:10
+ */
+public interface ReactiveInterceptor {
+
+    /**
+     * 请求发出前执行, 可以返回修改过的请求(比如加上刷新后的 token)
+     *
+     * @return 继续执行的请求, 返回空表示拦截本次请求
+     */
+    default Mono<ClientRequest> applyPre(ClientRequest clientRequest) {
+        return Mono.just(clientRequest);
+    }
+
+    /**
+     * 收到响应后执行, 完成后响应才会交给调用方, 除非 {@link #offloadPost()} 返回 true
+     */
+    default Mono<Void> applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+        return Mono.empty();
+    }
+
+    /**
+     * 请求出错时执行, 执行顺序与 {@link #applyPost} 相同
+     */
+    default Mono<Void> applyError(ClientRequest clientRequest, Throwable throwable, RequestInfo requestInfo) {
+        return Mono.empty();
+    }
+
+    /**
+     * 是否把 {@link #applyPost} 和 {@link #applyError} 放到单独的有界线程池中执行, 不等待它们完成就返回响应,
+     * 适合上报、审计等不影响结果的慢操作
+     */
+    default boolean offloadPost() {
+        return false;
+    }
+}
@@ -0,0 +1,20 @@
+package cn.pinming.interfaces;
+
+import cn.pinming.bean.MethodInfo;
+
+/**
+ * 方法参数绑定器, 在创建代理时根据参数上的注解预先生成, 调用时只负责把参数值放到 {@link MethodInfo} 中
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/11 10:02
+ */
+@FunctionalInterface
+public interface ArgumentBinder {
+
+	/**
+	 * 绑定参数值
+	 * @param arg 调用时传入的参数值
+	 * @param methodInfo {@link MethodInfo}
+	 */
+	void bind(Object arg, MethodInfo methodInfo);
+}
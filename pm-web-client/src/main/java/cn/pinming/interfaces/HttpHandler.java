@@ -3,7 +3,12 @@ package cn.pinming.interfaces;
 import cn.pinming.autoconfigure.PmWebClientProperties;
 import cn.pinming.bean.MethodInfo;
 import cn.pinming.bean.ServerInfo;
+import cn.pinming.http.resources.PmWebClientResources;
 import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.loadbalancer.LoadBalancer;
+import cn.pinming.metrics.PmWebClientMetrics;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
 
 /**
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
@@ -14,8 +19,12 @@ public interface HttpHandler {
 	/**
 	 * 初始化服务器信息
 	 * @param serverInfo {@link ServerInfo}
+	 * @param resources 共享的 event loop 和连接池
+	 * @param metrics 请求指标
+	 * @param loadBalancer 有多个服务地址时的负载均衡, 只有一个地址时为空
 	 */
-	void init(ServerInfo serverInfo, PmWebClientProperties properties, InterceptorChain interceptorChain);
+	void init(ServerInfo serverInfo, PmWebClientProperties properties, InterceptorChain interceptorChain, PmWebClientResources resources,
+			  PmWebClientMetrics metrics, LoadBalancer loadBalancer);
 
 	/**
 	 * 调用rest请求, 返回接口
@@ -24,6 +33,13 @@ public interface HttpHandler {
 	 */
 	Object invokeRest(MethodInfo methodInfo);
 
+	/**
+	 * 调用rest请求, 返回带响应头和状态码的结果, 304 不作为异常处理
+	 * @param methodInfo {@link MethodInfo}
+	 * @return 调用返回结果
+	 */
+	Mono<ResponseEntity<Object>> invokeRestForEntity(MethodInfo methodInfo);
+
 	/**
 	 * 调用普通的表单类型的 http 请求
 	 * @param methodInfo {@link MethodInfo}
@@ -38,4 +54,11 @@ public interface HttpHandler {
 	 */
 	Object invokePlain(MethodInfo methodInfo);
 
+	/**
+	 * 不经过解码器读取响应体, 返回 DataBuffer 或 byte[] 流, 或者写入 {@link cn.pinming.annotation.DownloadTo} 指定的目标
+	 * @param methodInfo {@link MethodInfo}
+	 * @return 调用返回结果
+	 */
+	Object invokeDownload(MethodInfo methodInfo);
+
 }
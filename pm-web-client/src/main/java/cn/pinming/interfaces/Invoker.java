@@ -0,0 +1,21 @@
+package cn.pinming.interfaces;
+
+import cn.pinming.bean.MethodInfo;
+
+/**
+ * 代理层对一次接口方法调用的处理, 缓存、合并请求等能力都以装饰器的形式包在 {@link HttpHandler} 外面,
+ * 创建代理时按方法上的注解组装好
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+@FunctionalInterface
+public interface Invoker {
+
+	/**
+	 * 执行调用
+	 * @param methodInfo {@link MethodInfo}
+	 * @return 调用返回结果, Mono 或 Flux
+	 */
+	Object invoke(MethodInfo methodInfo);
+}
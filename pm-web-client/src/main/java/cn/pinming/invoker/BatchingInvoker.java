@@ -0,0 +1,184 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.Batchable;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.interfaces.Invoker;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 把并发的单个查询合并成批量查询, 见 {@link Batchable}
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/19 14:40
+ */
+@Slf4j
+public class BatchingInvoker implements Invoker {
+
+    private final String keyName;
+    private final int maxBatchSize;
+    private final long window;
+    private final Function<List<Object>, Mono<Map<String, Object>>> bulk;
+    private final DistributionSummary batchSize;
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private Disposable scheduledFlush;
+
+    /**
+     * @param keyName 作为 key 的 @PathVariable 名称
+     * @param bulk    用一组 key 发起批量查询, 返回 key(字符串形式) 到结果对象的映射
+     */
+    public BatchingInvoker(Batchable config, String keyName, Function<List<Object>, Mono<Map<String, Object>>> bulk,
+                           MeterRegistry registry, String clientName, String methodName) {
+        this.keyName = keyName;
+        this.maxBatchSize = config.maxBatchSize();
+        this.window = config.window();
+        this.bulk = bulk;
+        this.batchSize = DistributionSummary.builder("pm.webclient.batch.size")
+                .description("number of keys sent in one bulk request")
+                .tags("client", clientName, "method", methodName)
+                .register(registry);
+    }
+
+    @Override
+    public Object invoke(MethodInfo methodInfo) {
+        Object key = methodInfo.getParams().get(keyName);
+        return Mono.<Object>create(sink -> {
+            Pending call = new Pending(key, sink);
+            sink.onCancel(() -> cancel(call));
+            add(call);
+        });
+    }
+
+    private void add(Pending call) {
+        Batch batch = null;
+        synchronized (lock) {
+            pending.add(call);
+            if (pending.size() >= maxBatchSize) {
+                batch = take();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flushScheduled, window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) {
+            flush(batch);
+        }
+    }
+
+    private void flushScheduled() {
+        Batch batch;
+        synchronized (lock) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = take();
+        }
+        flush(batch);
+    }
+
+    /**
+     * 取出等待中的调用组成一批, 调用时需要持有 lock
+     */
+    private Batch take() {
+        Batch batch = new Batch(pending);
+        pending.forEach(call -> call.batch = batch);
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    /**
+     * 还在等待的调用直接移出队列; 已经发出的批量请求在同一批的调用都取消后取消
+     */
+    private void cancel(Pending call) {
+        Batch batch;
+        synchronized (lock) {
+            if (pending.remove(call)) {
+                if (pending.isEmpty() && scheduledFlush != null) {
+                    scheduledFlush.dispose();
+                    scheduledFlush = null;
+                }
+                return;
+            }
+            batch = call.batch;
+        }
+        if (batch != null && batch.remaining.decrementAndGet() == 0) {
+            batch.request.dispose();
+        }
+    }
+
+    private void flush(Batch batch) {
+        Set<Object> keys = new LinkedHashSet<>();
+        batch.calls.forEach(call -> keys.add(call.key));
+        batchSize.record(keys.size());
+        batch.request.update(bulk.apply(new ArrayList<>(keys)).subscribe(results -> {
+            for (Pending call : batch.calls) {
+                Object value = results.get(String.valueOf(call.key));
+                if (value == null) {
+                    call.sink.success();
+                } else {
+                    call.sink.success(value);
+                }
+            }
+        }, e -> {
+            log.warn("批量请求失败, keys:{}", keys, e);
+            batch.calls.forEach(call -> call.sink.error(e));
+        }, () -> batch.calls.forEach(call -> call.sink.success())));
+    }
+
+    private static class Pending {
+        private final Object key;
+        private final MonoSink<Object> sink;
+
+        /**
+         * 所在的批次, 发出前为空, 由 lock 保护
+         */
+        private Batch batch;
+
+        Pending(Object key, MonoSink<Object> sink) {
+            this.key = key;
+            this.sink = sink;
+        }
+    }
+
+    private static class Batch {
+        private final List<Pending> calls;
+
+        /**
+         * 还没有取消的调用数
+         */
+        private final AtomicInteger remaining;
+
+        /**
+         * 批量请求的订阅, 在订阅之前取消时会在订阅后立即取消
+         */
+        private final Disposable.Swap request = Disposables.swap();
+
+        Batch(List<Pending> calls) {
+            this.calls = calls;
+            this.remaining = new AtomicInteger(calls.size());
+        }
+    }
+}
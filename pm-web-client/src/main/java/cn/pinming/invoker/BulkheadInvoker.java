@@ -0,0 +1,37 @@
+package cn.pinming.invoker;
+
+import cn.pinming.exception.CallNotPermittedException;
+import cn.pinming.interfaces.Invoker;
+import cn.pinming.resilience.Bulkhead;
+
+/**
+ * 并发数超过 {@link Bulkhead} 的限制时直接失败
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+public class BulkheadInvoker extends GuardedInvoker<Boolean> {
+
+    private final Bulkhead bulkhead;
+
+    public BulkheadInvoker(Invoker delegate, boolean returnFlux, Bulkhead bulkhead) {
+        super(delegate, returnFlux);
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    protected Boolean tryAcquire() {
+        return bulkhead.tryAcquire() ? Boolean.TRUE : null;
+    }
+
+    @Override
+    protected RuntimeException rejected() {
+        return new CallNotPermittedException(String.format("bulkhead %s 已满, 最大并发数 %d",
+                bulkhead.getName(), bulkhead.getMaxConcurrentCalls()));
+    }
+
+    @Override
+    protected void onFinish(Boolean permit, long nanos, Throwable error, boolean cancelled) {
+        bulkhead.release();
+    }
+}
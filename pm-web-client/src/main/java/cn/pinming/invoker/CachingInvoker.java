@@ -0,0 +1,135 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.ResponseCache;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.cache.CachedResponse;
+import cn.pinming.cache.ResponseCacheStore;
+import cn.pinming.interfaces.Invoker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存 GET 方法的响应结果, 见 {@link ResponseCache}
+ * <p>
+ * 内层的 invoker 需要返回 {@code Mono<ResponseEntity<Object>>}, 以便读取 Cache-Control 和 ETag
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+public class CachingInvoker implements Invoker {
+
+    public static final String CACHE = "pm.webclient.cache";
+
+    private static final String MAX_AGE = "max-age=";
+
+    private final Invoker entityInvoker;
+    private final ResponseCache config;
+    private final ResponseCacheStore store;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidated;
+
+    public CachingInvoker(Invoker entityInvoker, ResponseCache config, MeterRegistry registry, String clientName, String methodName) {
+        this.entityInvoker = entityInvoker;
+        this.config = config;
+        Tags tags = Tags.of("client", clientName, "method", methodName);
+        this.hits = Counter.builder(CACHE + ".requests").tags(tags).tag("result", "hit").register(registry);
+        this.misses = Counter.builder(CACHE + ".requests").tags(tags).tag("result", "miss").register(registry);
+        this.revalidated = Counter.builder(CACHE + ".requests").tags(tags).tag("result", "revalidated").register(registry);
+        this.store = new ResponseCacheStore(config.maxEntries(), Counter.builder(CACHE + ".evictions").tags(tags).register(registry));
+        Gauge.builder(CACHE + ".size", store, ResponseCacheStore::size).tags(tags).register(registry);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodInfo methodInfo) {
+        return Mono.defer(() -> {
+            RequestKey key = RequestKey.of(methodInfo, config.keyHeaders());
+            long now = System.nanoTime();
+            CachedResponse cached = store.get(key);
+            if (cached != null && cached.isFresh(now)) {
+                hits.increment();
+                return Mono.justOrEmpty(cached.getValue());
+            }
+            MethodInfo request = methodInfo;
+            if (cached != null && cached.getEtag() != null) {
+                // 过期但是有 ETag, 让服务端判断是否需要重新返回
+                request = withHeader(methodInfo, HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+            }
+            Mono<ResponseEntity<Object>> response = (Mono<ResponseEntity<Object>>) entityInvoker.invoke(request);
+            return response.flatMap(entity -> {
+                if (entity.getStatusCode() == HttpStatus.NOT_MODIFIED && cached != null) {
+                    revalidated.increment();
+                    Long freshUntil = freshUntil(entity.getHeaders(), System.nanoTime());
+                    if (freshUntil != null) {
+                        store.put(key, cached.refresh(freshUntil));
+                    }
+                    return Mono.justOrEmpty(cached.getValue());
+                }
+                misses.increment();
+                Long freshUntil = freshUntil(entity.getHeaders(), System.nanoTime());
+                if (freshUntil == null) {
+                    store.remove(key);
+                } else {
+                    store.put(key, new CachedResponse(entity.getBody(), entity.getHeaders().getETag(), freshUntil));
+                }
+                return Mono.justOrEmpty(entity.getBody());
+            });
+        });
+    }
+
+    /**
+     * 根据 Cache-Control 计算有效期, 返回 null 表示不能缓存
+     */
+    private Long freshUntil(HttpHeaders headers, long now) {
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl == null) {
+            return now + TimeUnit.MILLISECONDS.toNanos(config.ttl());
+        }
+        // no-store 不论出现在什么位置都优先
+        boolean noCache = false;
+        Long maxAge = null;
+        for (String directive : cacheControl.split(",")) {
+            String value = directive.trim().toLowerCase();
+            if ("no-store".equals(value)) {
+                return null;
+            }
+            if ("no-cache".equals(value)) {
+                noCache = true;
+            } else if (value.startsWith(MAX_AGE) && maxAge == null) {
+                try {
+                    maxAge = Long.parseLong(value.substring(MAX_AGE.length()));
+                } catch (NumberFormatException e) {
+                    // 无法解析时按配置的有效期
+                }
+            }
+        }
+        if (noCache) {
+            // 每次都需要向服务端验证
+            return now;
+        }
+        if (maxAge != null) {
+            return now + TimeUnit.SECONDS.toNanos(maxAge);
+        }
+        return now + TimeUnit.MILLISECONDS.toNanos(config.ttl());
+    }
+
+    private static MethodInfo withHeader(MethodInfo methodInfo, String name, String value) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (methodInfo.getRequestHeaders() != null) {
+            headers.putAll(methodInfo.getRequestHeaders());
+        }
+        headers.put(name, value);
+        return methodInfo.toBuilder().requestHeaders(headers).build();
+    }
+}
@@ -0,0 +1,47 @@
+package cn.pinming.invoker;
+
+import cn.pinming.exception.CallNotPermittedException;
+import cn.pinming.exception.PmWebClientResponseException;
+import cn.pinming.interfaces.Invoker;
+import cn.pinming.resilience.CircuitBreaker;
+
+/**
+ * 熔断器打开时直接失败, 其余调用的结果交给 {@link CircuitBreaker} 统计
+ * <p>
+ * 4xx 响应是调用方的问题, 算作成功; 被 bulkhead 拒绝的调用不统计
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+public class CircuitBreakerInvoker extends GuardedInvoker<Long> {
+
+    private final CircuitBreaker breaker;
+
+    public CircuitBreakerInvoker(Invoker delegate, boolean returnFlux, CircuitBreaker breaker) {
+        super(delegate, returnFlux);
+        this.breaker = breaker;
+    }
+
+    @Override
+    protected Long tryAcquire() {
+        long permit = breaker.tryAcquire();
+        return permit == CircuitBreaker.REJECTED ? null : permit;
+    }
+
+    @Override
+    protected RuntimeException rejected() {
+        return new CallNotPermittedException(String.format("熔断器 %s 已打开, %d ms 后重试",
+                breaker.getName(), breaker.remainingOpenMillis()));
+    }
+
+    @Override
+    protected void onFinish(Long permit, long nanos, Throwable error, boolean cancelled) {
+        if (cancelled || error instanceof CallNotPermittedException) {
+            breaker.release(permit);
+            return;
+        }
+        boolean failed = error != null
+                && !(error instanceof PmWebClientResponseException && ((PmWebClientResponseException) error).isClientError());
+        breaker.onResult(permit, nanos, failed);
+    }
+}
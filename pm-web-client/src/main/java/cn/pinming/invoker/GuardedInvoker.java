@@ -0,0 +1,108 @@
+package cn.pinming.invoker;
+
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.interfaces.Invoker;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 订阅时先申请许可, 请求结束(完成、出错或取消)时归还, 许可申请失败时直接返回错误而不发出请求
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+abstract class GuardedInvoker<P> implements Invoker {
+
+    private final Invoker delegate;
+
+    private final boolean returnFlux;
+
+    GuardedInvoker(Invoker delegate, boolean returnFlux) {
+        this.delegate = delegate;
+        this.returnFlux = returnFlux;
+    }
+
+    /**
+     * @return 许可, 为空表示拒绝
+     */
+    protected abstract P tryAcquire();
+
+    protected abstract RuntimeException rejected();
+
+    /**
+     * 请求结束
+     *
+     * @param error     请求失败时的异常, 取消时为空
+     * @param cancelled 是否被取消
+     */
+    protected abstract void onFinish(P permit, long nanos, Throwable error, boolean cancelled);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodInfo methodInfo) {
+        if (returnFlux) {
+            return Flux.defer(() -> {
+                P permit = tryAcquire();
+                if (permit == null) {
+                    return Flux.error(rejected());
+                }
+                return guard((Flux<Object>) start(permit, methodInfo), permit);
+            });
+        }
+        return Mono.defer(() -> {
+            P permit = tryAcquire();
+            if (permit == null) {
+                return Mono.error(rejected());
+            }
+            return guard((Mono<Object>) start(permit, methodInfo), permit);
+        });
+    }
+
+    private Object start(P permit, MethodInfo methodInfo) {
+        try {
+            return delegate.invoke(methodInfo);
+        } catch (RuntimeException e) {
+            onFinish(permit, 0, e, false);
+            throw e;
+        }
+    }
+
+    private Flux<Object> guard(Flux<Object> flux, P permit) {
+        Finisher finisher = new Finisher(permit);
+        return flux.doOnComplete(() -> finisher.finish(null, false))
+                .doOnError(e -> finisher.finish(e, false))
+                .doOnCancel(() -> finisher.finish(null, true));
+    }
+
+    private Mono<Object> guard(Mono<Object> mono, P permit) {
+        Finisher finisher = new Finisher(permit);
+        // Mono 收到结果时就算完成, 之后下游的取消不影响统计
+        return mono.doOnSuccess(value -> finisher.finish(null, false))
+                .doOnError(e -> finisher.finish(e, false))
+                .doOnCancel(() -> finisher.finish(null, true));
+    }
+
+    /**
+     * 保证每个许可只归还一次
+     */
+    private class Finisher {
+
+        private final P permit;
+
+        private final long start = System.nanoTime();
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        Finisher(P permit) {
+            this.permit = permit;
+        }
+
+        void finish(Throwable error, boolean cancelled) {
+            if (finished.compareAndSet(false, true)) {
+                onFinish(permit, System.nanoTime() - start, error, cancelled);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package cn.pinming.invoker;
+
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.interfaces.HttpHandler;
+import cn.pinming.interfaces.Invoker;
+
+/**
+ * 最内层的调用, 按调用方式交给 {@link HttpHandler} 发出请求
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+public class HandlerInvoker implements Invoker {
+
+    private final HttpHandler handler;
+
+    private final InvocationPlan.InvokeType invokeType;
+
+    public HandlerInvoker(HttpHandler handler, InvocationPlan.InvokeType invokeType) {
+        this.handler = handler;
+        this.invokeType = invokeType;
+    }
+
+    @Override
+    public Object invoke(MethodInfo methodInfo) {
+        switch (invokeType) {
+            case FORM:
+                return handler.invokeForm(methodInfo);
+            case PLAIN:
+                return handler.invokePlain(methodInfo);
+            case DOWNLOAD:
+                return handler.invokeDownload(methodInfo);
+            default:
+                // 调用rest
+                return handler.invokeRest(methodInfo);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.Hedge;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.interfaces.Invoker;
+import cn.pinming.resilience.RetryBudget;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.Signal;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 对冲请求, 见 {@link Hedge}
+ * <p>
+ * 第一个请求在等待时间内失败时直接返回错误, 不再发出对冲请求; 对冲请求发出后, 两个请求都失败才返回第一个错误
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/26 10:00
+ */
+public class HedgingInvoker implements Invoker {
+
+    private static final String HEDGE = "pm.webclient.hedge";
+
+    /**
+     * 按分位值计算等待时间前至少需要的样本数
+     */
+    private static final long MIN_SAMPLES = 100;
+
+    /**
+     * 分位值的刷新间隔
+     */
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Invoker delegate;
+    private final long fixedDelayNanos;
+    private final double percentile;
+    private final RetryBudget budget;
+    private final Timer latency;
+    private final Counter hedges;
+    private final Counter wins;
+
+    private volatile long delayNanos;
+    private volatile long refreshedAt;
+
+    public HedgingInvoker(Invoker delegate, Hedge hedge, MeterRegistry registry, String clientName, String methodName) {
+        this.delegate = delegate;
+        this.fixedDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedge.delay());
+        this.delayNanos = fixedDelayNanos;
+        this.percentile = hedge.percentile();
+        this.budget = new RetryBudget(hedge.budget(), 0, Duration.ofSeconds(10));
+        Timer.Builder latencyBuilder = Timer.builder(HEDGE + ".latency")
+                .description("latency of the winning request, used to compute the hedge delay")
+                .tags("client", clientName, "method", methodName)
+                .distributionStatisticExpiry(Duration.ofMinutes(1));
+        if (percentile > 0) {
+            latencyBuilder.publishPercentiles(percentile);
+        }
+        this.latency = latencyBuilder.register(registry);
+        this.hedges = Counter.builder(HEDGE + ".requests")
+                .description("hedged requests sent")
+                .tags("client", clientName, "method", methodName)
+                .register(registry);
+        this.wins = Counter.builder(HEDGE + ".wins")
+                .description("hedged requests that completed before the original one")
+                .tags("client", clientName, "method", methodName)
+                .register(registry);
+    }
+
+    @Override
+    public Object invoke(MethodInfo methodInfo) {
+        return Mono.defer(() -> {
+            budget.onRequest();
+            long start = System.nanoTime();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            MonoProcessor<Void> primaryFailed = MonoProcessor.create();
+
+            Mono<Tuple2<Signal<Object>, Boolean>> primary = attempt(methodInfo)
+                    .doOnError(e -> primaryFailed.onComplete())
+                    .materialize()
+                    .map(signal -> Tuples.of(signal, false));
+            Mono<Tuple2<Signal<Object>, Boolean>> hedged = Mono.delay(Duration.ofNanos(currentDelay()))
+                    .takeUntilOther(primaryFailed)
+                    .filter(tick -> budget.tryRetry())
+                    .flatMap(tick -> {
+                        hedges.increment();
+                        return attempt(methodInfo).materialize();
+                    })
+                    .map(signal -> Tuples.of(signal, true));
+
+            // 先到的成功结果胜出, next() 会取消另一个请求
+            return Flux.merge(primary, hedged)
+                    .filter(result -> {
+                        if (result.getT1().isOnError()) {
+                            error.compareAndSet(null, result.getT1().getThrowable());
+                            return false;
+                        }
+                        return true;
+                    })
+                    .next()
+                    .flatMap(result -> {
+                        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        if (result.getT2()) {
+                            wins.increment();
+                        }
+                        return result.getT1().isOnNext() ? Mono.just(result.getT1().get()) : Mono.<Object>empty();
+                    })
+                    .switchIfEmpty(Mono.defer(() -> error.get() != null ? Mono.<Object>error(error.get()) : Mono.<Object>empty()));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Object> attempt(MethodInfo methodInfo) {
+        return Mono.defer(() -> (Mono<Object>) delegate.invoke(methodInfo));
+    }
+
+    /**
+     * 最近响应时间的分位值, 每秒刷新一次, 样本不足时使用固定的等待时间
+     */
+    private long currentDelay() {
+        if (percentile <= 0) {
+            return fixedDelayNanos;
+        }
+        long now = System.nanoTime();
+        if (now - refreshedAt > REFRESH_NANOS) {
+            refreshedAt = now;
+            ValueAtPercentile[] values = latency.takeSnapshot().percentileValues();
+            if (latency.count() >= MIN_SAMPLES && values.length > 0 && values[0].value() > 0) {
+                delayNanos = (long) values[0].value(TimeUnit.NANOSECONDS);
+            } else {
+                delayNanos = fixedDelayNanos;
+            }
+        }
+        return delayNanos;
+    }
+}
@@ -0,0 +1,279 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.Batchable;
+import cn.pinming.annotation.Hedge;
+import cn.pinming.annotation.ResponseCache;
+import cn.pinming.annotation.SingleFlight;
+import cn.pinming.autoconfigure.ClientSettings;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.bean.ServerInfo;
+import cn.pinming.exception.PmWebClientException;
+import cn.pinming.interfaces.HttpHandler;
+import cn.pinming.interfaces.Invoker;
+import cn.pinming.metrics.PmWebClientMetrics;
+import cn.pinming.resilience.Bulkhead;
+import cn.pinming.resilience.CircuitBreaker;
+import cn.pinming.resilience.RateLimitPolicy;
+import cn.pinming.resilience.RateLimiter;
+import cn.pinming.resilience.RetryBudget;
+import cn.pinming.resilience.RetryPolicy;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.bind.annotation.PathVariable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 根据方法上的注解组装 {@link Invoker}, 创建代理时每个方法执行一次
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+@Slf4j
+public class InvokerFactory {
+
+    /**
+     * 接口级别熔断器、bulkhead 和限流在指标中的 scope 标签
+     */
+    private static final String INTERFACE_SCOPE = "interface";
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS,
+            HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.TRACE);
+
+    private final PmWebClientMetrics metrics;
+
+    /**
+     * 接口级别的熔断器和 bulkhead 由接口的所有方法共用, 按接口的全限定名保存
+     */
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * 接口级别的限流由接口的所有方法共用, 按接口的全限定名保存
+     */
+    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * 所有客户端共用的重试预算
+     */
+    private final RetryBudget retryBudget;
+
+    public InvokerFactory(PmWebClientMetrics metrics, RetryBudget retryBudget) {
+        this.metrics = metrics;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * 由内到外组装: 发出请求 -> bulkhead -> 熔断器 -> 限流 -> 对冲请求 -> 重试 -> 合并相同请求 -> 响应缓存
+     * <p>
+     * {@link Batchable} 方法不经过这里, 由 {@link #createBatching} 在批量方法组装好之后创建
+     */
+    public Invoker create(ServerInfo serverInfo, ClientSettings settings, InvocationPlan plan, HttpHandler handler) {
+        Method method = plan.getMethod();
+        String clientName = serverInfo.getClientInterfaceName();
+        ResponseCache cache = method.getAnnotation(ResponseCache.class);
+        if (cache != null && !isIdempotentMono(plan)) {
+            throw new PmWebClientException(String.format("@ResponseCache 只支持返回 Mono 的 GET 方法 %s", method));
+        }
+        // 需要缓存时内层返回带响应头的结果
+        Invoker invoker = cache != null ? handler::invokeRestForEntity : new HandlerInvoker(handler, plan.getInvokeType());
+        boolean returnFlux = cache == null && plan.isReturnFlux();
+
+        // 不同包里可能有同名的接口, 接口共用的熔断器、bulkhead 和限流按全限定名区分
+        String clientKey = plan.getClientType().getName();
+        Bulkhead bulkhead = bulkhead(settings, clientKey, clientName, method.getName());
+        if (bulkhead != null) {
+            invoker = new BulkheadInvoker(invoker, returnFlux, bulkhead);
+        }
+        CircuitBreaker breaker = circuitBreaker(settings, clientKey, clientName, method.getName());
+        if (breaker != null) {
+            invoker = new CircuitBreakerInvoker(invoker, returnFlux, breaker);
+        }
+        // 重试和对冲发出的请求同样占用对方的配额, 所以限流在它们里面
+        RateLimiter rateLimiter = rateLimiter(settings.rateLimitPolicy(method), clientKey, clientName, method.getName());
+        if (rateLimiter != null) {
+            invoker = new RateLimitInvoker(invoker, returnFlux, rateLimiter);
+        }
+        Hedge hedge = method.getAnnotation(Hedge.class);
+        if (hedge != null) {
+            if (!isIdempotentMono(plan)) {
+                throw new PmWebClientException(String.format("@Hedge 只支持返回 Mono 的 GET 方法 %s", method));
+            }
+            invoker = new HedgingInvoker(invoker, hedge, metrics.getRegistry(), clientName, method.getName());
+        }
+        RetryPolicy retryPolicy = settings.retryPolicy(method);
+        if (retryPolicy != null) {
+            if (plan.isOneShot()) {
+                log.warn("{} 的请求只能发出一次, 不会重试", method);
+            } else if (retryPolicy.isNonIdempotent() || IDEMPOTENT_METHODS.contains(plan.getHttpMethod())) {
+                invoker = new RetryInvoker(invoker, returnFlux, retryPolicy, retryBudget, metrics.getRegistry(), clientName, method.getName());
+            } else {
+                log.warn("{} 不是幂等方法, 不会重试, 需要重试时请指定 nonIdempotent", method);
+            }
+        }
+
+        if (method.isAnnotationPresent(SingleFlight.class)) {
+            if (!isIdempotentMono(plan)) {
+                throw new PmWebClientException(String.format("@SingleFlight 只支持返回 Mono 的 GET 方法 %s", method));
+            }
+            invoker = new SingleFlightInvoker(invoker, metrics.getRegistry(), clientName, method.getName());
+        } else if (method.getDeclaringClass().isAnnotationPresent(SingleFlight.class) && isIdempotentMono(plan)) {
+            invoker = new SingleFlightInvoker(invoker, metrics.getRegistry(), clientName, method.getName());
+        }
+
+        if (cache != null) {
+            invoker = new CachingInvoker(invoker, cache, metrics.getRegistry(), clientName, method.getName());
+        }
+        return invoker;
+    }
+
+    /**
+     * 方法单独配置时创建方法自己的熔断器, 否则使用接口共用的熔断器
+     */
+    private CircuitBreaker circuitBreaker(ClientSettings settings, String clientKey, String clientName, String methodName) {
+        PmWebClientProperties.CircuitBreakerProperties config = settings.methodCircuitBreaker(methodName);
+        if (config != null) {
+            return config.isEnabled() ? newCircuitBreaker(config, clientName, methodName) : null;
+        }
+        if (!settings.getCircuitBreaker().isEnabled()) {
+            return null;
+        }
+        return circuitBreakers.computeIfAbsent(clientKey, key -> newCircuitBreaker(settings.getCircuitBreaker(), clientName, INTERFACE_SCOPE));
+    }
+
+    private CircuitBreaker newCircuitBreaker(PmWebClientProperties.CircuitBreakerProperties config, String clientName, String scope) {
+        return new CircuitBreaker(clientName + "." + scope, config, metrics.getRegistry(), Tags.of("client", clientName, "scope", scope));
+    }
+
+    private Bulkhead bulkhead(ClientSettings settings, String clientKey, String clientName, String methodName) {
+        PmWebClientProperties.BulkheadProperties config = settings.methodBulkhead(methodName);
+        if (config != null) {
+            return config.isEnabled() ? newBulkhead(config, clientName, methodName) : null;
+        }
+        if (!settings.getBulkhead().isEnabled()) {
+            return null;
+        }
+        return bulkheads.computeIfAbsent(clientKey, key -> newBulkhead(settings.getBulkhead(), clientName, INTERFACE_SCOPE));
+    }
+
+    private Bulkhead newBulkhead(PmWebClientProperties.BulkheadProperties config, String clientName, String scope) {
+        return new Bulkhead(clientName + "." + scope, config.getMaxConcurrentCalls(), metrics.getRegistry(), Tags.of("client", clientName, "scope", scope));
+    }
+
+    private RateLimiter rateLimiter(RateLimitPolicy policy, String clientKey, String clientName, String methodName) {
+        if (policy == null) {
+            return null;
+        }
+        if (policy.isShared()) {
+            return rateLimiters.computeIfAbsent(clientKey, key -> newRateLimiter(policy, clientName, INTERFACE_SCOPE));
+        }
+        return newRateLimiter(policy, clientName, methodName);
+    }
+
+    private RateLimiter newRateLimiter(RateLimitPolicy policy, String clientName, String scope) {
+        return new RateLimiter(clientName + "." + scope, policy, metrics.getRegistry(), Tags.of("client", clientName, "scope", scope));
+    }
+
+    /**
+     * 单个查询直接转换成批量方法的调用, 复用批量方法自己组装好的 invoker, 批量请求和直接调用批量方法共用熔断、限流等配额
+     *
+     * @param plans    接口所有方法的调用计划
+     * @param invokers 已经组装好的非 {@link Batchable} 方法的 invoker
+     */
+    public Invoker createBatching(ServerInfo serverInfo, InvocationPlan plan, Map<Method, InvocationPlan> plans, Map<Method, Invoker> invokers) {
+        Method method = plan.getMethod();
+        Batchable batchable = method.getAnnotation(Batchable.class);
+        if (plan.isReturnFlux()) {
+            throw new PmWebClientException(String.format("@Batchable 只支持返回 Mono 的方法 %s", method));
+        }
+        String keyName = batchable.key();
+        if (keyName.isEmpty()) {
+            List<String> pathVariables = new ArrayList<>();
+            for (Parameter parameter : method.getParameters()) {
+                PathVariable pathVariable = parameter.getAnnotation(PathVariable.class);
+                if (pathVariable != null) {
+                    pathVariables.add(pathVariable.value());
+                }
+            }
+            if (pathVariables.size() != 1) {
+                throw new PmWebClientException(String.format("@Batchable 需要通过 key 指定作为 key 的 @PathVariable %s", method));
+            }
+            keyName = pathVariables.get(0);
+        }
+
+        Method bulkMethod = invokers.keySet().stream()
+                .filter(m -> m.getName().equals(batchable.bulkMethod()) && m.getParameterCount() == 1)
+                .findFirst()
+                .orElseThrow(() -> new PmWebClientException(String.format("找不到只有一个参数的批量方法 %s", batchable.bulkMethod())));
+        InvocationPlan bulkPlan = plans.get(bulkMethod);
+        Invoker bulkInvoker = invokers.get(bulkMethod);
+        boolean monoArgument = Mono.class.isAssignableFrom(bulkMethod.getParameterTypes()[0]);
+        Function<Object, Object> keyReader = keyReader(bulkPlan, batchable.keyProperty());
+
+        Function<List<Object>, Mono<Map<String, Object>>> bulk = keys -> {
+            MethodInfo bulkInfo = bulkPlan.bind(new Object[]{monoArgument ? Mono.just(keys) : keys});
+            Object result = bulkInvoker.invoke(bulkInfo);
+            Mono<Collection<?>> elements;
+            if (result instanceof Flux) {
+                elements = ((Flux<?>) result).collectList().map(list -> (Collection<?>) list);
+            } else {
+                elements = ((Mono<?>) result).map(value -> (Collection<?>) value);
+            }
+            return elements.map(values -> {
+                Map<String, Object> byKey = new HashMap<>(values.size() * 2);
+                values.forEach(value -> byKey.put(String.valueOf(keyReader.apply(value)), value));
+                return byKey;
+            });
+        };
+        return new BatchingInvoker(batchable, keyName, bulk, metrics.getRegistry(), serverInfo.getClientInterfaceName(), method.getName());
+    }
+
+    /**
+     * 读取结果对象中 key 属性的方法, 结果是 Map 时直接按属性名取值
+     */
+    private static Function<Object, Object> keyReader(InvocationPlan bulkPlan, String keyProperty) {
+        Class<?> elementType = ResolvableType.forType(bulkPlan.getReturnElementType().getType()).resolve(Object.class);
+        // Mono<List<User>> 的元素类型是 User
+        if (!bulkPlan.isReturnFlux() && Collection.class.isAssignableFrom(elementType)) {
+            elementType = ResolvableType.forType(bulkPlan.getReturnElementType().getType()).getGeneric(0).resolve(Object.class);
+        }
+        if (Map.class.isAssignableFrom(elementType)) {
+            return value -> ((Map<?, ?>) value).get(keyProperty);
+        }
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(elementType, keyProperty);
+        if (descriptor == null || descriptor.getReadMethod() == null) {
+            throw new PmWebClientException(String.format("%s 中没有属性 %s", elementType.getName(), keyProperty));
+        }
+        Method readMethod = descriptor.getReadMethod();
+        return value -> {
+            try {
+                return readMethod.invoke(value);
+            } catch (ReflectiveOperationException e) {
+                throw new PmWebClientException(String.format("读取属性 %s 失败: %s", keyProperty, e.getMessage()));
+            }
+        };
+    }
+
+    private static boolean isIdempotentMono(InvocationPlan plan) {
+        return plan.getHttpMethod() == HttpMethod.GET && plan.getInvokeType() == InvocationPlan.InvokeType.REST && !plan.isReturnFlux();
+    }
+}
@@ -0,0 +1,86 @@
+package cn.pinming.invoker;
+
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.exception.CallNotPermittedException;
+import cn.pinming.interfaces.Invoker;
+import cn.pinming.resilience.RateLimitPolicy;
+import cn.pinming.resilience.RateLimiter;
+import cn.pinming.resilience.TokenBucket;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 发出请求前先从 {@link RateLimiter} 预订令牌, 需要等待时用定时器延后订阅, 不阻塞线程也不占用连接;
+ * 等待期间被取消时归还令牌
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 15:20
+ */
+public class RateLimitInvoker implements Invoker {
+
+    private final Invoker delegate;
+
+    private final boolean returnFlux;
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitInvoker(Invoker delegate, boolean returnFlux, RateLimiter rateLimiter) {
+        this.delegate = delegate;
+        this.returnFlux = returnFlux;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodInfo methodInfo) {
+        if (returnFlux) {
+            return Flux.defer(() -> {
+                String key = key(methodInfo);
+                long wait = rateLimiter.reserve(key);
+                if (wait == TokenBucket.REJECTED) {
+                    return Flux.error(rejected());
+                }
+                Flux<Object> call = Flux.defer(() -> (Flux<Object>) delegate.invoke(methodInfo));
+                return wait == 0 ? call : delay(key, wait).thenMany(call);
+            });
+        }
+        return Mono.defer(() -> {
+            String key = key(methodInfo);
+            long wait = rateLimiter.reserve(key);
+            if (wait == TokenBucket.REJECTED) {
+                return Mono.error(rejected());
+            }
+            Mono<Object> call = Mono.defer(() -> (Mono<Object>) delegate.invoke(methodInfo));
+            return wait == 0 ? call : delay(key, wait).then(call);
+        });
+    }
+
+    /**
+     * 等待结束后再取消时请求已经发出, 令牌不再归还
+     */
+    private Mono<Long> delay(String key, long wait) {
+        return Mono.delay(Duration.ofNanos(wait)).doOnCancel(() -> rateLimiter.release(key));
+    }
+
+    private String key(MethodInfo methodInfo) {
+        RateLimitPolicy policy = rateLimiter.getPolicy();
+        if (policy.getKeyHeader() != null) {
+            Map<String, String> headers = methodInfo.getRequestHeaders();
+            return headers == null ? null : headers.get(policy.getKeyHeader());
+        }
+        if (policy.getKeyPathVariable() != null) {
+            Map<String, Object> params = methodInfo.getParams();
+            Object value = params == null ? null : params.get(policy.getKeyPathVariable());
+            return value == null ? null : value.toString();
+        }
+        return null;
+    }
+
+    private RuntimeException rejected() {
+        return new CallNotPermittedException(String.format("%s 超过限流 %s 次/秒", rateLimiter.getName(),
+                rateLimiter.getPolicy().getPermitsPerSecond()));
+    }
+}
@@ -0,0 +1,77 @@
+package cn.pinming.invoker;
+
+import cn.pinming.bean.MethodInfo;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 同一个方法下区分请求的 key: url 参数(即展开后的 url) 加上参与区分的请求头
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+public final class RequestKey {
+
+    private final Map<String, Object> params;
+
+    private final Map<String, String> headers;
+
+    private final int hash;
+
+    private RequestKey(Map<String, Object> params, Map<String, String> headers) {
+        this.params = params;
+        this.headers = headers;
+        this.hash = Objects.hash(params, headers);
+    }
+
+    /**
+     * 使用全部请求头生成 key
+     */
+    public static RequestKey of(MethodInfo methodInfo) {
+        Map<String, String> headers = methodInfo.getRequestHeaders();
+        return new RequestKey(methodInfo.getParams(), headers == null ? Collections.<String, String>emptyMap() : headers);
+    }
+
+    /**
+     * 只使用指定的请求头生成 key
+     */
+    public static RequestKey of(MethodInfo methodInfo, String[] keyHeaders) {
+        Map<String, String> requestHeaders = methodInfo.getRequestHeaders();
+        if (keyHeaders.length == 0 || requestHeaders == null) {
+            return new RequestKey(methodInfo.getParams(), Collections.<String, String>emptyMap());
+        }
+        Map<String, String> headers = new LinkedHashMap<>(keyHeaders.length * 2);
+        for (String name : keyHeaders) {
+            String value = requestHeaders.get(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        return new RequestKey(methodInfo.getParams(), headers);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey that = (RequestKey) o;
+        return hash == that.hash && params.equals(that.params) && headers.equals(that.headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestKey{params=" + params + ", headers=" + headers + '}';
+    }
+}
@@ -0,0 +1,100 @@
+package cn.pinming.invoker;
+
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.interfaces.Invoker;
+import cn.pinming.resilience.RetryBudget;
+import cn.pinming.resilience.RetryPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 按 {@link RetryPolicy} 重试失败的请求, 每次重试都要先从 {@link RetryBudget} 申请预算
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/25 9:40
+ */
+@Slf4j
+public class RetryInvoker implements Invoker {
+
+    private static final String RETRY = "pm.webclient.retry";
+
+    private final Invoker delegate;
+    private final boolean returnFlux;
+    private final RetryPolicy policy;
+    private final RetryBudget budget;
+    private final String methodName;
+    private final Counter attempts;
+    private final Counter exhausted;
+    private final Counter budgetExhausted;
+
+    public RetryInvoker(Invoker delegate, boolean returnFlux, RetryPolicy policy, RetryBudget budget,
+                        MeterRegistry registry, String clientName, String methodName) {
+        this.delegate = delegate;
+        this.returnFlux = returnFlux;
+        this.policy = policy;
+        this.budget = budget;
+        this.methodName = methodName;
+        this.attempts = Counter.builder(RETRY + ".attempts")
+                .description("retried requests")
+                .tags("client", clientName, "method", methodName)
+                .register(registry);
+        this.exhausted = giveUps(registry, clientName, methodName, "max_attempts");
+        this.budgetExhausted = giveUps(registry, clientName, methodName, "budget");
+    }
+
+    private static Counter giveUps(MeterRegistry registry, String clientName, String methodName, String reason) {
+        return Counter.builder(RETRY + ".exhausted")
+                .description("retryable failures returned to the caller without another retry")
+                .tags("client", clientName, "method", methodName, "reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodInfo methodInfo) {
+        if (returnFlux) {
+            return Flux.defer(() -> {
+                budget.onRequest();
+                // 已经把元素交给调用方后再重试会导致重复数据
+                AtomicBoolean emitted = new AtomicBoolean();
+                return Flux.defer(() -> (Flux<Object>) delegate.invoke(methodInfo))
+                        .doOnNext(value -> emitted.set(true))
+                        .retryWhen(companion(emitted));
+            });
+        }
+        return Mono.defer(() -> {
+            budget.onRequest();
+            return Mono.defer(() -> (Mono<Object>) delegate.invoke(methodInfo))
+                    .retryWhen(companion(null));
+        });
+    }
+
+    private Function<Flux<Throwable>, Publisher<?>> companion(AtomicBoolean emitted) {
+        return errors -> errors.index().concatMap(indexed -> {
+            Throwable error = indexed.getT2();
+            int retry = (int) (indexed.getT1() + 1);
+            if ((emitted != null && emitted.get()) || !policy.isRetryable(error)) {
+                return Mono.<Long>error(error);
+            }
+            if (retry >= policy.getMaxAttempts()) {
+                exhausted.increment();
+                return Mono.<Long>error(error);
+            }
+            if (!budget.tryRetry()) {
+                budgetExhausted.increment();
+                log.warn("{} 重试预算不足, 放弃重试: {}", methodName, error.toString());
+                return Mono.<Long>error(error);
+            }
+            attempts.increment();
+            log.info("{} 第 {} 次重试: {}", methodName, retry, error.toString());
+            return Mono.delay(policy.backoff(retry));
+        });
+    }
+}
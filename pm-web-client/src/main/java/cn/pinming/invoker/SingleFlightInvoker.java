@@ -0,0 +1,112 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.SingleFlight;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.interfaces.Invoker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 合并并发的相同请求, 见 {@link SingleFlight}
+ * <p>
+ * 正在进行的请求按 {@link RequestKey} 登记, 请求结束后立即移除, 因此不会缓存结果;
+ * 共用请求的调用方全部取消时取消请求并移除登记
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/18 10:12
+ */
+public class SingleFlightInvoker implements Invoker {
+
+    private final Invoker delegate;
+
+    private final Map<RequestKey, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+
+    public SingleFlightInvoker(Invoker delegate, MeterRegistry registry, String clientName, String methodName) {
+        this.delegate = delegate;
+        this.coalesced = Counter.builder("pm.webclient.singleflight.coalesced")
+                .description("calls served by an identical request already in flight")
+                .tags("client", clientName, "method", methodName)
+                .register(registry);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodInfo methodInfo) {
+        return Mono.defer(() -> {
+            RequestKey key = RequestKey.of(methodInfo);
+            while (true) {
+                Flight flight = inFlight.get(key);
+                boolean created = false;
+                if (flight == null) {
+                    Flight candidate = new Flight(key, (Mono<Object>) delegate.invoke(methodInfo));
+                    flight = inFlight.putIfAbsent(key, candidate);
+                    if (flight == null) {
+                        flight = candidate;
+                        created = true;
+                    }
+                }
+                if (flight.join()) {
+                    if (!created) {
+                        coalesced.increment();
+                    }
+                    return flight.result();
+                }
+                // 刚被全部取消的请求, 移除后重新发起
+                inFlight.remove(key, flight);
+            }
+        });
+    }
+
+    /**
+     * 一个正在进行的请求, 结果由所有调用方共用
+     */
+    private final class Flight {
+
+        private final RequestKey key;
+
+        private final MonoProcessor<Object> processor;
+
+        /**
+         * 订阅过且没有取消的调用方个数, 由 this 保护
+         */
+        private int subscribers;
+
+        private boolean cancelled;
+
+        Flight(RequestKey key, Mono<Object> source) {
+            this.key = key;
+            // 第一个调用方订阅时才发出请求
+            this.processor = source.doFinally(signal -> inFlight.remove(key, this)).toProcessor();
+        }
+
+        synchronized boolean join() {
+            if (cancelled) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        Mono<Object> result() {
+            return processor.doOnCancel(this::leave);
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--subscribers > 0 || processor.isTerminated()) {
+                    return;
+                }
+                cancelled = true;
+            }
+            inFlight.remove(key, this);
+            processor.dispose();
+        }
+    }
+}
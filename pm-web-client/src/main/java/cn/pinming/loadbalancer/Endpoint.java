@@ -0,0 +1,105 @@
+package cn.pinming.loadbalancer;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个服务地址以及负载均衡需要的状态: 正在进行的请求数、连续失败次数和摘除截止时间
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/27 9:50
+ */
+public class Endpoint {
+
+    private final String url;
+
+    private final URI uri;
+
+    private final String basePath;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 摘除截止时间, System.currentTimeMillis
+     */
+    private volatile long ejectedUntil;
+
+    Endpoint(String url) {
+        this.url = url;
+        this.uri = URI.create(url);
+        this.basePath = basePath(uri);
+    }
+
+    static String basePath(URI uri) {
+        String path = uri.getRawPath();
+        if (path == null) {
+            return "";
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * 把按第一个地址生成的请求 url 换成当前地址
+     *
+     * @param original     按 baseUrl 生成的 url
+     * @param baseBasePath baseUrl 的路径部分
+     */
+    URI rewrite(URI original, String baseBasePath) {
+        String path = original.getRawPath() == null ? "" : original.getRawPath();
+        if (path.startsWith(baseBasePath)) {
+            path = path.substring(baseBasePath.length());
+        }
+        return UriComponentsBuilder.fromUri(original)
+                .scheme(uri.getScheme())
+                .host(uri.getHost())
+                .port(uri.getPort())
+                .replacePath(basePath + path)
+                .build(true)
+                .toUri();
+    }
+
+    boolean isAvailable(long now) {
+        return now >= ejectedUntil;
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    void start() {
+        outstanding.incrementAndGet();
+    }
+
+    void finish() {
+        outstanding.decrementAndGet();
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * @return 是否因为这次失败被摘除
+     */
+    boolean onFailure(int maxFailures, long ejectionMillis, long now) {
+        if (consecutiveFailures.incrementAndGet() < maxFailures) {
+            return false;
+        }
+        consecutiveFailures.set(0);
+        ejectedUntil = now + ejectionMillis;
+        return true;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
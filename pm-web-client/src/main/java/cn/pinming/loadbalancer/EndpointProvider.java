@@ -0,0 +1,19 @@
+package cn.pinming.loadbalancer;
+
+import java.util.List;
+
+/**
+ * 提供一个客户端可用的服务地址, 地址变化时返回新的列表即可
+ * <p>
+ * 每次选择地址时都会调用, 实现中不能有阻塞操作; 列表没有变化时应返回同一个对象
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/27 9:50
+ */
+public interface EndpointProvider {
+
+    /**
+     * @return 服务地址, 比如 http://10.0.0.1:8080/api
+     */
+    List<String> getEndpoints();
+}
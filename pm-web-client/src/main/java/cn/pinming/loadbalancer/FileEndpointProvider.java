@@ -0,0 +1,86 @@
+package cn.pinming.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从本地文件读取服务地址, 每行一个, # 开头的行是注释; 在单独的线程上定时检查文件修改时间, 变化后重新读取
+ * <p>
+ * 读取失败时保留上一次的地址
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/27 9:50
+ */
+@Slf4j
+public class FileEndpointProvider implements EndpointProvider, Disposable {
+
+    private final Path file;
+
+    private final Scheduler scheduler;
+
+    private final Disposable task;
+
+    private volatile List<String> endpoints = Collections.emptyList();
+
+    private long lastModified = -1;
+
+    public FileEndpointProvider(String file, Duration refreshInterval) {
+        this.file = Paths.get(file);
+        reload();
+        this.scheduler = Schedulers.newSingle("pm-endpoints-" + this.file.getFileName(), true);
+        long interval = refreshInterval.toMillis();
+        this.task = scheduler.schedulePeriodically(this::reload, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    private void reload() {
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                return;
+            }
+            List<String> loaded = new ArrayList<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String endpoint = line.trim();
+                if (!endpoint.isEmpty() && !endpoint.startsWith("#")) {
+                    loaded.add(endpoint);
+                }
+            }
+            lastModified = modified;
+            if (!loaded.equals(endpoints)) {
+                log.info("服务地址变化 {}: {}", file, loaded);
+                endpoints = Collections.unmodifiableList(loaded);
+            }
+        } catch (IOException e) {
+            log.warn("读取服务地址失败 {}: {}", file, e.toString());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        task.dispose();
+        scheduler.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return scheduler.isDisposed();
+    }
+}
@@ -0,0 +1,203 @@
+package cn.pinming.loadbalancer;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.exception.PmWebClientException;
+import cn.pinming.exception.PmWebClientResponseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在一个客户端的多个服务地址之间做负载均衡, 以 {@link ExchangeFilterFunction} 的方式改写请求的目标地址
+ * <p>
+ * 连续失败(连接异常、超时或 5xx)达到次数的地址会被摘除一段时间, 所有地址都被摘除时忽略摘除状态。
+ * reactor netty 的连接池按目标地址分别维护连接, 每个地址自然有自己的连接池
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/27 9:50
+ */
+@Slf4j
+public class LoadBalancer {
+
+    private final String clientName;
+    private final EndpointProvider provider;
+    private final LoadBalancerStrategy strategy;
+    private final int maxFailures;
+    private final long ejectionMillis;
+    private final String baseBasePath;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final MeterRegistry registry;
+
+    /**
+     * provider 上一次返回的列表, 列表对象变化时才重新生成 endpoints
+     */
+    private volatile List<String> lastUrls;
+    private volatile List<Endpoint> endpoints;
+
+    public LoadBalancer(String clientName, String baseUrl, EndpointProvider provider,
+                        PmWebClientProperties.LoadBalancerProperties properties, MeterRegistry registry) {
+        this.clientName = clientName;
+        this.provider = provider;
+        this.strategy = properties.getStrategy();
+        this.maxFailures = properties.getConsecutiveFailures();
+        this.ejectionMillis = properties.getEjectionTime().toMillis();
+        this.baseBasePath = Endpoint.basePath(URI.create(baseUrl));
+        this.registry = registry;
+        refresh(provider.getEndpoints());
+    }
+
+    /**
+     * 选择本次请求使用的地址
+     */
+    public Endpoint choose() {
+        List<String> urls = provider.getEndpoints();
+        if (urls != lastUrls) {
+            refresh(urls);
+        }
+        List<Endpoint> all = endpoints;
+        if (all.isEmpty()) {
+            throw new PmWebClientException(String.format("%s 没有可用的服务地址", clientName));
+        }
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = all;
+        for (Endpoint endpoint : all) {
+            if (!endpoint.isAvailable(now)) {
+                candidates = available(all, now);
+                break;
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates = all;
+        }
+        return choose(candidates);
+    }
+
+    private Endpoint choose(List<Endpoint> candidates) {
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        switch (strategy) {
+            case LEAST_OUTSTANDING: {
+                // 从随机位置开始, 避免请求数相同时总是选第一个
+                int offset = ThreadLocalRandom.current().nextInt(size);
+                Endpoint best = null;
+                for (int i = 0; i < size; i++) {
+                    Endpoint endpoint = candidates.get((offset + i) % size);
+                    if (best == null || endpoint.getOutstanding() < best.getOutstanding()) {
+                        best = endpoint;
+                    }
+                }
+                return best;
+            }
+            case POWER_OF_TWO_CHOICES: {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(size);
+                int second = random.nextInt(size - 1);
+                if (second >= first) {
+                    second++;
+                }
+                Endpoint a = candidates.get(first);
+                Endpoint b = candidates.get(second);
+                return a.getOutstanding() <= b.getOutstanding() ? a : b;
+            }
+            default:
+                return candidates.get((roundRobin.getAndIncrement() & Integer.MAX_VALUE) % size);
+        }
+    }
+
+    private static List<Endpoint> available(List<Endpoint> all, long now) {
+        List<Endpoint> available = new ArrayList<>(all.size());
+        for (Endpoint endpoint : all) {
+            if (endpoint.isAvailable(now)) {
+                available.add(endpoint);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * 地址列表变化时保留仍然存在的地址的状态
+     */
+    private synchronized void refresh(List<String> urls) {
+        if (urls == lastUrls) {
+            return;
+        }
+        Map<String, Endpoint> existing = new HashMap<>();
+        if (endpoints != null) {
+            endpoints.forEach(endpoint -> existing.put(endpoint.getUrl(), endpoint));
+        }
+        List<Endpoint> refreshed = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            Endpoint endpoint = existing.get(url);
+            refreshed.add(endpoint != null ? endpoint : new Endpoint(url));
+        }
+        endpoints = refreshed;
+        lastUrls = urls;
+    }
+
+    /**
+     * 改写请求地址, 并根据结果更新地址的状态
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> Mono.defer(() -> {
+            Endpoint endpoint = choose();
+            ClientRequest routed = ClientRequest.from(request)
+                    .url(endpoint.rewrite(request.url(), baseBasePath))
+                    .build();
+            endpoint.start();
+            AtomicBoolean finished = new AtomicBoolean();
+            return next.exchange(routed)
+                    .doOnSuccess(response -> {
+                        if (finished.compareAndSet(false, true)) {
+                            endpoint.finish();
+                            if (response != null && response.rawStatusCode() >= 500) {
+                                onFailure(endpoint);
+                            } else {
+                                endpoint.onSuccess();
+                            }
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (finished.compareAndSet(false, true)) {
+                            endpoint.finish();
+                            if (!(e instanceof PmWebClientResponseException && ((PmWebClientResponseException) e).isClientError())) {
+                                onFailure(endpoint);
+                            }
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (finished.compareAndSet(false, true)) {
+                            endpoint.finish();
+                        }
+                    });
+        });
+    }
+
+    private void onFailure(Endpoint endpoint) {
+        if (endpoint.onFailure(maxFailures, ejectionMillis, System.currentTimeMillis())) {
+            log.warn("{} 连续失败 {} 次, 摘除 {} ms: {}", clientName, maxFailures, ejectionMillis, endpoint);
+            Counter.builder("pm.webclient.lb.ejections")
+                    .description("endpoints ejected after consecutive failures")
+                    .tags("client", clientName, "endpoint", endpoint.getUrl())
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+}
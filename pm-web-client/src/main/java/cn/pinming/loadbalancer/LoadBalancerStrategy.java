@@ -0,0 +1,22 @@
+package cn.pinming.loadbalancer;
+
+/**
+ * 负载均衡策略
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/27 9:50
+ */
+public enum LoadBalancerStrategy {
+    /**
+     * 轮询
+     */
+    ROUND_ROBIN,
+    /**
+     * 选择正在进行的请求最少的地址
+     */
+    LEAST_OUTSTANDING,
+    /**
+     * 随机选两个地址, 使用正在进行的请求较少的一个
+     */
+    POWER_OF_TWO_CHOICES
+}
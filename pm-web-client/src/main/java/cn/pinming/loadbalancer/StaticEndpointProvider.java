@@ -0,0 +1,25 @@
+package cn.pinming.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 固定的服务地址, 来自 {@code @ApiServer} 或配置
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/27 9:50
+ */
+public class StaticEndpointProvider implements EndpointProvider {
+
+    private final List<String> endpoints;
+
+    public StaticEndpointProvider(List<String> endpoints) {
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+    }
+
+    @Override
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+}
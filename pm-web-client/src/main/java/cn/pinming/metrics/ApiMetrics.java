@@ -0,0 +1,104 @@
+package cn.pinming.metrics;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个接口方法的请求指标: 耗时分布、吞吐量、错误数和正在进行的请求数
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/13 10:30
+ */
+public class ApiMetrics {
+
+    private final String clientName;
+    private final String methodName;
+    private final String uri;
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Timer timer;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * 按错误原因(状态码或异常类名)缓存的错误计数器, 失败时不用每次查找注册表
+     */
+    private final Map<String, Counter> errorCounters = new ConcurrentHashMap<>();
+
+    ApiMetrics(MeterRegistry registry, PmWebClientProperties.MetricsProperties settings, String clientName, String methodName, String uri) {
+        this.registry = registry;
+        this.clientName = clientName;
+        this.methodName = methodName;
+        this.uri = uri;
+        this.tags = Tags.of("client", clientName, "method", methodName, "uri", uri);
+        this.timer = Timer.builder(PmWebClientMetrics.REQUESTS)
+                .description("pm web client request latency")
+                .tags(tags)
+                .publishPercentiles(settings.getPercentiles())
+                .publishPercentileHistogram(settings.isPercentileHistogram())
+                .register(registry);
+        Gauge.builder(PmWebClientMetrics.REQUESTS + ".active", inFlight, AtomicInteger::get)
+                .description("pm web client requests in flight")
+                .tags(tags)
+                .register(registry);
+    }
+
+    void start() {
+        inFlight.incrementAndGet();
+    }
+
+    void finish() {
+        inFlight.decrementAndGet();
+    }
+
+    void record(long nanos, int status) {
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        if (status >= 400) {
+            error(String.valueOf(status));
+        }
+    }
+
+    void recordError(long nanos, Throwable throwable) {
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        error(throwable.getClass().getSimpleName());
+    }
+
+    private void error(String reason) {
+        errors.increment();
+        Counter counter = errorCounters.get(reason);
+        if (counter == null) {
+            counter = errorCounters.computeIfAbsent(reason, r -> Counter.builder(PmWebClientMetrics.REQUESTS + ".errors")
+                    .description("pm web client failed requests")
+                    .tags(tags)
+                    .tag("error", r)
+                    .register(registry));
+        }
+        counter.increment();
+    }
+
+    /**
+     * 当前的指标快照
+     */
+    public ApiMetricsSnapshot snapshot() {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            percentiles.put(String.valueOf(value.percentile()), value.value(TimeUnit.MILLISECONDS));
+        }
+        return new ApiMetricsSnapshot(clientName, methodName, uri, snapshot.count(), errors.sum(), inFlight.get(),
+                snapshot.mean(TimeUnit.MILLISECONDS), snapshot.max(TimeUnit.MILLISECONDS), percentiles);
+    }
+}
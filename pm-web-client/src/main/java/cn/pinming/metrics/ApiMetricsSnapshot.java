@@ -0,0 +1,31 @@
+package cn.pinming.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * 单个接口方法的指标快照, 通过 JMX 暴露
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/13 10:30
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ApiMetricsSnapshot {
+    private final String client;
+    private final String method;
+    private final String uri;
+    private final long count;
+    private final long errorCount;
+    private final int inFlight;
+    private final double meanMillis;
+    private final double maxMillis;
+    /**
+     * percentile -> 耗时(毫秒)
+     */
+    private final Map<String, Double> percentilesMillis;
+}
@@ -0,0 +1,69 @@
+package cn.pinming.metrics;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.http.handler.RequestAttributes;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个 {@code @ApiServer} 客户端的请求指标, 按方法名和 url 模板区分, 同名的重载方法请求不同 url 时分开统计
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/13 10:30
+ */
+public class ClientMetrics {
+
+    private static final String UNKNOWN = "unknown";
+
+    private final String clientName;
+    private final MeterRegistry registry;
+    private final PmWebClientProperties.MetricsProperties settings;
+    private final Map<String, ApiMetrics> apis = new ConcurrentHashMap<>();
+
+    ClientMetrics(String clientName, MeterRegistry registry, PmWebClientProperties.MetricsProperties settings) {
+        this.clientName = clientName;
+        this.registry = registry;
+        this.settings = settings;
+    }
+
+    /**
+     * 记录每次请求耗时和结果的过滤器
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> {
+            ApiMetrics api = api(request);
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                api.start();
+                return next.exchange(request)
+                        .doOnSuccess(response -> api.record(System.nanoTime() - start, response == null ? 0 : response.rawStatusCode()))
+                        .doOnError(e -> api.recordError(System.nanoTime() - start, e))
+                        .doFinally(signal -> api.finish());
+            });
+        };
+    }
+
+    private ApiMetrics api(ClientRequest request) {
+        Object methodName = request.attributes().get(RequestAttributes.METHOD_NAME);
+        Object uriTemplate = request.attributes().get(RequestAttributes.URI_TEMPLATE);
+        String method = methodName == null ? UNKNOWN : (String) methodName;
+        String uri = uriTemplate == null ? UNKNOWN : (String) uriTemplate;
+        // 方法名中不会有空格
+        String key = method + ' ' + uri;
+        ApiMetrics api = apis.get(key);
+        if (api == null) {
+            api = apis.computeIfAbsent(key, k -> new ApiMetrics(registry, settings, clientName, method, uri));
+        }
+        return api;
+    }
+
+    Collection<ApiMetrics> apis() {
+        return apis.values();
+    }
+}
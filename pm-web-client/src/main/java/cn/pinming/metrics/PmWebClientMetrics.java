@@ -0,0 +1,111 @@
+package cn.pinming.metrics;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 客户端内置的指标, 通过 Micrometer 和 JMX 暴露
+ * <p>
+ * 每个接口方法(按 url 模板区分)记录: 耗时分布 {@value #REQUESTS}, 错误数 {@value #REQUESTS}.errors,
+ * 正在进行的请求数 {@value #REQUESTS}.active; 每个连接池记录 {@value PoolMetrics#POOL}.* 指标
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/13 10:30
+ */
+@Slf4j
+public class PmWebClientMetrics implements PmWebClientMetricsMXBean, DisposableBean {
+
+    public static final String REQUESTS = "pm.webclient.requests";
+
+    private static final String OBJECT_NAME = "cn.pinming:type=PmWebClientMetrics";
+
+    private final MeterRegistry registry;
+    private final PmWebClientProperties.MetricsProperties settings;
+    private final Map<String, ClientMetrics> clients = new ConcurrentHashMap<>();
+    private final Map<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+    private ObjectName objectName;
+
+    public PmWebClientMetrics(MeterRegistry registry, PmWebClientProperties.MetricsProperties settings) {
+        this.registry = registry;
+        this.settings = settings;
+        if (settings.isEnabled() && settings.isJmxEnabled()) {
+            registerMBean();
+        }
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * 获取某个客户端的指标
+     *
+     * @param clientName {@code @ApiServer} 接口名
+     */
+    public ClientMetrics client(String clientName) {
+        return clients.computeIfAbsent(clientName, name -> new ClientMetrics(name, registry, settings));
+    }
+
+    /**
+     * 获取某个连接池的指标
+     *
+     * @param poolName       连接池名称
+     * @param maxConnections 连接池的最大连接数
+     */
+    public PoolMetrics pool(String poolName, int maxConnections) {
+        return pools.computeIfAbsent(poolName, name -> new PoolMetrics(registry, settings, name, maxConnections));
+    }
+
+    @Override
+    public List<PoolMetricsSnapshot> getPools() {
+        List<PoolMetricsSnapshot> snapshots = new ArrayList<>();
+        pools.values().forEach(pool -> snapshots.add(pool.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public List<ApiMetricsSnapshot> getApis() {
+        List<ApiMetricsSnapshot> snapshots = new ArrayList<>();
+        clients.values().forEach(client -> client.apis().forEach(api -> snapshots.add(api.snapshot())));
+        return snapshots;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                this.objectName = name;
+            }
+        } catch (Exception e) {
+            log.warn("注册 JMX MBean 失败 {}", OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            log.warn("注销 JMX MBean 失败 {}", OBJECT_NAME, e);
+        }
+    }
+}
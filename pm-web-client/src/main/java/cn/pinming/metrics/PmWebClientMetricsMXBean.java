@@ -0,0 +1,22 @@
+package cn.pinming.metrics;
+
+import java.util.List;
+
+/**
+ * 通过 JMX 查看客户端请求指标
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/13 10:30
+ */
+public interface PmWebClientMetricsMXBean {
+
+    /**
+     * @return 所有接口方法的指标快照
+     */
+    List<ApiMetricsSnapshot> getApis();
+
+    /**
+     * @return 所有连接池的指标快照
+     */
+    List<PoolMetricsSnapshot> getPools();
+}
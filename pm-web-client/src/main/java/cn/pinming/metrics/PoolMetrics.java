@@ -0,0 +1,127 @@
+package cn.pinming.metrics;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个连接池的指标: 活跃/空闲/等待中的连接数, 获取连接的等待时间, 连接的创建/关闭以及获取超时次数
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/14 11:05
+ */
+public class PoolMetrics {
+
+    public static final String POOL = "pm.webclient.pool";
+
+    private final String name;
+    private final int maxConnections;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final Timer acquireTimer;
+    private final Counter acquired;
+    private final Counter released;
+    private final Counter created;
+    private final Counter closed;
+    private final Counter timeouts;
+    private final Counter acquireErrors;
+
+    PoolMetrics(MeterRegistry registry, PmWebClientProperties.MetricsProperties settings, String name, int maxConnections) {
+        this.name = name;
+        this.maxConnections = maxConnections;
+        Tags tags = Tags.of("pool", name);
+        this.acquireTimer = Timer.builder(POOL + ".acquire")
+                .description("time spent waiting for a connection from the pool")
+                .tags(tags)
+                .publishPercentiles(settings.getPercentiles())
+                .publishPercentileHistogram(settings.isPercentileHistogram())
+                .register(registry);
+        this.acquired = counter(registry, "acquired", tags);
+        this.released = counter(registry, "released", tags);
+        this.created = counter(registry, "created", tags);
+        this.closed = counter(registry, "closed", tags);
+        this.timeouts = counter(registry, "acquire.timeouts", tags);
+        this.acquireErrors = counter(registry, "acquire.errors", tags);
+        Gauge.builder(POOL + ".active", active, AtomicInteger::get).tags(tags).register(registry);
+        Gauge.builder(POOL + ".pending", pending, AtomicInteger::get).tags(tags).register(registry);
+        Gauge.builder(POOL + ".idle", this, PoolMetrics::idle).tags(tags).register(registry);
+        Gauge.builder(POOL + ".total", open, AtomicInteger::get).tags(tags).register(registry);
+        Gauge.builder(POOL + ".max", this, m -> m.maxConnections).tags(tags).register(registry);
+    }
+
+    private static Counter counter(MeterRegistry registry, String name, Tags tags) {
+        return Counter.builder(POOL + "." + name).tags(tags).register(registry);
+    }
+
+    public void acquireStarted() {
+        pending.incrementAndGet();
+    }
+
+    public void acquireSucceeded(long waitNanos) {
+        pending.decrementAndGet();
+        active.incrementAndGet();
+        acquired.increment();
+        acquireTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void acquireFailed(long waitNanos, boolean timeout) {
+        pending.decrementAndGet();
+        acquireTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+        if (timeout) {
+            timeouts.increment();
+        } else {
+            acquireErrors.increment();
+        }
+    }
+
+    public void acquireCancelled() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * 连接归还到连接池
+     */
+    public void connectionReleased() {
+        active.decrementAndGet();
+        released.increment();
+    }
+
+    /**
+     * 连接在使用中被关闭, 没有归还到连接池
+     */
+    public void activeConnectionClosed() {
+        active.decrementAndGet();
+    }
+
+    public void connectionCreated() {
+        open.incrementAndGet();
+        created.increment();
+    }
+
+    public void connectionClosed() {
+        open.decrementAndGet();
+        closed.increment();
+    }
+
+    private double idle() {
+        return Math.max(0, open.get() - active.get());
+    }
+
+    /**
+     * 当前的指标快照
+     */
+    public PoolMetricsSnapshot snapshot() {
+        HistogramSnapshot snapshot = acquireTimer.takeSnapshot();
+        return new PoolMetricsSnapshot(name, maxConnections, active.get(), (int) idle(), pending.get(),
+                (long) created.count(), (long) closed.count(), (long) timeouts.count(),
+                snapshot.mean(TimeUnit.MILLISECONDS), snapshot.max(TimeUnit.MILLISECONDS));
+    }
+}
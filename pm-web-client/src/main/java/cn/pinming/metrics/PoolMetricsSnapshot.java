@@ -0,0 +1,27 @@
+package cn.pinming.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 连接池的指标快照, 通过 JMX 暴露
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/14 11:05
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PoolMetricsSnapshot {
+    private final String pool;
+    private final int maxConnections;
+    private final int active;
+    private final int idle;
+    private final int pending;
+    private final long created;
+    private final long closed;
+    private final long acquireTimeouts;
+    private final double meanAcquireMillis;
+    private final double maxAcquireMillis;
+}
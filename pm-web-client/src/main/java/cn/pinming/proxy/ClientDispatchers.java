@@ -0,0 +1,44 @@
+package cn.pinming.proxy;
+
+import cn.pinming.exception.PmWebClientException;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * 传给编译时生成的实现类, 实现类在构造时取出每个方法的 {@link MethodDispatcher}
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/08 10:00
+ */
+public final class ClientDispatchers {
+
+	private final Class<?> type;
+
+	private final Map<Method, MethodDispatcher> dispatchers;
+
+	ClientDispatchers(Class<?> type, Map<Method, MethodDispatcher> dispatchers) {
+		this.type = type;
+		this.dispatchers = dispatchers;
+	}
+
+	/**
+	 * 获取接口方法的调用入口
+	 *
+	 * @param name           方法名
+	 * @param parameterTypes 参数类型
+	 * @return {@link MethodDispatcher}
+	 */
+	public MethodDispatcher get(String name, Class<?>... parameterTypes) {
+		MethodDispatcher dispatcher;
+		try {
+			dispatcher = dispatchers.get(type.getMethod(name, parameterTypes));
+		} catch (NoSuchMethodException e) {
+			dispatcher = null;
+		}
+		if (dispatcher == null) {
+			throw new PmWebClientException(String.format("%s 中没有方法 %s, 生成的实现类和接口不一致, 请重新编译", type.getName(), name));
+		}
+		return dispatcher;
+	}
+}
@@ -0,0 +1,75 @@
+package cn.pinming.proxy;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.exception.PmWebClientException;
+import cn.pinming.http.resources.PmWebClientResources;
+import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.metrics.PmWebClientMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * 优先使用 pm-web-client-processor 在编译时生成的实现类, 没有生成时退回 jdk 动态代理
+ * <p>
+ * 生成的实现类直接调用每个方法的 {@link MethodDispatcher}, 参数绑定也是普通代码,
+ * 调用时没有 {@link java.lang.reflect.Proxy} 分发和参数数组的反射处理
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/08 10:00
+ */
+@Slf4j
+public class GeneratedProxyCreator extends JDKProxyCreator {
+
+	/**
+	 * 生成的实现类名: 接口所在包 + 接口名(内部接口用 _ 连接外部类名) + 后缀
+	 */
+	public static final String GENERATED_SUFFIX = "_PmWebClient";
+
+	public GeneratedProxyCreator(PmWebClientProperties properties, DefaultListableBeanFactory beanFactory, InterceptorChain interceptorChain,
+								 PmWebClientResources resources, PmWebClientMetrics metrics) {
+		super(properties, beanFactory, interceptorChain, resources, metrics);
+	}
+
+	@Override
+	public Object createProxy(Class<?> type) {
+		Class<?> generated = findGenerated(type);
+		if (generated == null) {
+			return super.createProxy(type);
+		}
+		log.info("createProxy:" + type + ", generated: " + generated.getName());
+		ClientDispatchers dispatchers = new ClientDispatchers(type, createDispatchers(type));
+		try {
+			return generated.getConstructor(ClientDispatchers.class).newInstance(dispatchers);
+		} catch (InvocationTargetException e) {
+			if (e.getTargetException() instanceof RuntimeException) {
+				throw (RuntimeException) e.getTargetException();
+			}
+			throw new PmWebClientException(String.format("创建 %s 失败: %s", generated.getName(), e.getTargetException()));
+		} catch (ReflectiveOperationException e) {
+			throw new PmWebClientException(String.format("创建 %s 失败: %s", generated.getName(), e));
+		}
+	}
+
+	private static Class<?> findGenerated(Class<?> type) {
+		String name = generatedClassName(type);
+		if (!ClassUtils.isPresent(name, type.getClassLoader())) {
+			log.debug("{} 没有生成的实现类, 使用动态代理", type.getName());
+			return null;
+		}
+		Class<?> generated = ClassUtils.resolveClassName(name, type.getClassLoader());
+		if (!type.isAssignableFrom(generated)) {
+			log.warn("{} 没有实现 {}, 使用动态代理", name, type.getName());
+			return null;
+		}
+		return generated;
+	}
+
+	static String generatedClassName(Class<?> type) {
+		String packageName = ClassUtils.getPackageName(type);
+		String simpleName = packageName.isEmpty() ? type.getName() : type.getName().substring(packageName.length() + 1);
+		return (packageName.isEmpty() ? "" : packageName + ".") + simpleName.replace('$', '_') + GENERATED_SUFFIX;
+	}
+}
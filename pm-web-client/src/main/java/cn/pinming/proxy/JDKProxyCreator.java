@@ -1,19 +1,36 @@
 package cn.pinming.proxy;
 
 
+import cn.pinming.annotation.Batchable;
+import cn.pinming.annotation.Fallback;
+import cn.pinming.autoconfigure.ClientSettings;
 import cn.pinming.autoconfigure.PmWebClientProperties;
-import cn.pinming.bean.MethodInfo;
+import cn.pinming.bean.InvocationPlan;
 import cn.pinming.bean.ServerInfo;
+import cn.pinming.exception.PmWebClientException;
 import cn.pinming.http.handler.WebClientHttpHandler;
+import cn.pinming.http.resources.PmWebClientResources;
 import cn.pinming.interceptor.InterceptorChain;
 import cn.pinming.interfaces.HttpHandler;
+import cn.pinming.interfaces.Invoker;
 import cn.pinming.interfaces.ProxyCreator;
+import cn.pinming.invoker.InvokerFactory;
+import cn.pinming.loadbalancer.EndpointProvider;
+import cn.pinming.loadbalancer.FileEndpointProvider;
+import cn.pinming.loadbalancer.LoadBalancer;
+import cn.pinming.loadbalancer.StaticEndpointProvider;
+import cn.pinming.metrics.PmWebClientMetrics;
+import cn.pinming.resilience.RetryBudget;
 import cn.pinming.util.MetaInfoUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
-import org.springframework.http.MediaType;
 
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 使用jdk动态代理实现代理类
@@ -26,38 +43,140 @@ public class JDKProxyCreator implements ProxyCreator {
 	private PmWebClientProperties properties;
 	private DefaultListableBeanFactory beanFactory;
 	private InterceptorChain interceptorChain;
+	private PmWebClientResources resources;
+	private PmWebClientMetrics metrics;
+	private InvokerFactory invokerFactory;
 
-	public JDKProxyCreator(PmWebClientProperties properties, DefaultListableBeanFactory beanFactory, InterceptorChain interceptorChain){
+	public JDKProxyCreator(PmWebClientProperties properties, DefaultListableBeanFactory beanFactory, InterceptorChain interceptorChain,
+						   PmWebClientResources resources, PmWebClientMetrics metrics){
 		this.properties = properties;
 		this.beanFactory = beanFactory;
 		this.interceptorChain = interceptorChain;
+		this.resources = resources;
+		this.metrics = metrics;
+		this.invokerFactory = new InvokerFactory(metrics, new RetryBudget(properties.getRetryBudget()));
 	}
 
 	@Override
 	public Object createProxy(Class<?> type) {
 		log.info("createProxy:" + type);
+		Map<Method, MethodDispatcher> dispatchers = createDispatchers(type);
+		return Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[] { type },
+				(proxy, method, args) -> {
+					MethodDispatcher dispatcher = dispatchers.get(method);
+					if (dispatcher == null) {
+						return invokeObjectMethod(type, proxy, method, args);
+					}
+					return dispatcher.dispatch(args);
+		});
+	}
+
+	/**
+	 * 创建客户端并一次性解析所有方法, 组装好每个方法的 invoker
+	 *
+	 * @param type 用户定义的请求接口
+	 * @return 方法和调用入口的对应关系
+	 */
+	protected Map<Method, MethodDispatcher> createDispatchers(Class<?> type) {
 		// 根据接口得到API服务器信息
 		ServerInfo serverInfo = MetaInfoUtil.extractServerInfo(type, beanFactory);
 		log.info("serverInfo:" + serverInfo);
+		LoadBalancer loadBalancer = createLoadBalancer(serverInfo);
 		// 给每一个代理类一个实现
 		HttpHandler handler = new WebClientHttpHandler();
 		// 初始化服务器信息(初始化webclient)
-		handler.init(serverInfo, properties, interceptorChain);
-		return Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[] { type },
-				(proxy, method, args) -> {
-					// 根据方法和参数得到调用信息
-					MethodInfo methodInfo = MetaInfoUtil.extractMethodInfo(method, args);
-					log.info("methodInfo:" + methodInfo);
-					if(MediaType.APPLICATION_FORM_URLENCODED_VALUE.equals(methodInfo.getReqeustContentType())){
-						return handler.invokeForm(methodInfo);
-					}else{
-						if (methodInfo.isRawRequest()){
-							return handler.invokePlain(methodInfo);
-						}else{
-							// 调用rest
-							return handler.invokeRest(methodInfo);
-						}
-					}
+		handler.init(serverInfo, properties, interceptorChain, resources, metrics, loadBalancer);
+		// 创建代理时一次性解析所有方法并组装好 invoker, 调用时只绑定参数
+		ClientSettings settings = ClientSettings.of(properties, serverInfo.getClientInterfaceName());
+		Map<Method, InvocationPlan> plans = new HashMap<>();
+		Map<Method, InvocationPlan> compiledPlans = MetaInfoUtil.compileInvocationPlans(type);
+		settings.checkMethodNames(compiledPlans.keySet());
+		compiledPlans.forEach((method, compiled) -> {
+			// 按 全局 -> 接口 -> 方法 的配置确定每个方法的响应超时
+			InvocationPlan plan = compiled.toBuilder().responseTimeout(settings.responseTimeout(method)).build();
+			// 检查声明的数据格式, 提前解析请求体和返回值的(反)序列化器
+			resources.getCodecs().prepare(plan);
+			plans.put(method, plan);
 		});
+		Map<Method, Invoker> invokers = new HashMap<>();
+		plans.forEach((method, plan) -> {
+			if (!method.isAnnotationPresent(Batchable.class)) {
+				invokers.put(method, invokerFactory.create(serverInfo, settings, plan, handler));
+			}
+		});
+		// 合并后的批量请求复用批量方法组装好的 invoker
+		Map<Method, Invoker> batchingInvokers = new HashMap<>();
+		plans.forEach((method, plan) -> {
+			if (method.isAnnotationPresent(Batchable.class)) {
+				batchingInvokers.put(method, invokerFactory.createBatching(serverInfo, plan, plans, invokers));
+			}
+		});
+		invokers.putAll(batchingInvokers);
+		Object fallback = createFallback(type);
+		Map<Method, MethodDispatcher> dispatchers = new HashMap<>();
+		plans.forEach((method, plan) -> dispatchers.put(method, new MethodDispatcher(plan, invokers.get(method), fallback)));
+		return dispatchers;
+	}
+
+	/**
+	 * 有多个服务地址或配置了地址来源时创建负载均衡, 否则返回空
+	 */
+	private LoadBalancer createLoadBalancer(ServerInfo serverInfo) {
+		PmWebClientProperties.ClientProperties client = properties.getClients().get(serverInfo.getClientInterfaceName());
+		PmWebClientProperties.LoadBalancerProperties config = client != null && client.getLoadBalancer() != null
+				? client.getLoadBalancer() : new PmWebClientProperties.LoadBalancerProperties();
+		EndpointProvider provider;
+		if (config.getProviderBean() != null) {
+			provider = beanFactory.getBean(config.getProviderBean(), EndpointProvider.class);
+		} else if (config.getEndpointsFile() != null) {
+			FileEndpointProvider fileProvider = new FileEndpointProvider(config.getEndpointsFile(), config.getRefreshInterval());
+			resources.register(fileProvider);
+			provider = fileProvider;
+		} else if (!config.getEndpoints().isEmpty()) {
+			provider = new StaticEndpointProvider(config.getEndpoints());
+		} else if (serverInfo.getUrls() != null && serverInfo.getUrls().size() > 1) {
+			provider = new StaticEndpointProvider(serverInfo.getUrls());
+		} else {
+			return null;
+		}
+		// 请求先按第一个地址生成 url, 再由负载均衡替换成选中的地址
+		if (serverInfo.getUrl() == null || serverInfo.getUrl().isEmpty()) {
+			List<String> endpoints = provider.getEndpoints();
+			if (endpoints.isEmpty()) {
+				throw new PmWebClientException(String.format("%s 没有配置服务地址", serverInfo.getClientInterfaceName()));
+			}
+			serverInfo.setUrl(endpoints.get(0));
+		}
+		log.info("{} load balancer: {}, endpoints: {}", serverInfo.getClientInterfaceName(), config.getStrategy(), provider.getEndpoints());
+		return new LoadBalancer(serverInfo.getClientInterfaceName(), serverInfo.getUrl(), provider, config, metrics.getRegistry());
+	}
+
+	/**
+	 * 创建 {@link Fallback} 指定的降级实现
+	 */
+	private Object createFallback(Class<?> type) {
+		Fallback annotation = type.getAnnotation(Fallback.class);
+		if (annotation == null) {
+			return null;
+		}
+		Class<?> fallbackType = annotation.value();
+		if (!type.isAssignableFrom(fallbackType)) {
+			throw new PmWebClientException(String.format("降级实现 %s 没有实现接口 %s", fallbackType.getName(), type.getName()));
+		}
+		Object bean = beanFactory.getBeanProvider(fallbackType).getIfAvailable();
+		return bean != null ? bean : BeanUtils.instantiateClass(fallbackType);
+	}
+
+	private Object invokeObjectMethod(Class<?> type, Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "PmWebClient proxy for " + type.getName();
+			default:
+				throw new PmWebClientException(String.format("不支持的方法调用 %s", method));
+		}
 	}
 }
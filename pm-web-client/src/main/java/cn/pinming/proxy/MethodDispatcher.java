@@ -0,0 +1,103 @@
+package cn.pinming.proxy;
+
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.exception.CallNotPermittedException;
+import cn.pinming.exception.PmWebClientException;
+import cn.pinming.interfaces.Invoker;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * 一个接口方法的调用计划和组装好的 {@link Invoker}
+ * <p>
+ * 动态代理通过 {@link #dispatch(Object[])} 调用; 编译时生成的实现类直接绑定参数,
+ * 再通过 {@link #dispatch(MethodInfo, Object[])} 调用
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/15 9:30
+ */
+@Slf4j
+public class MethodDispatcher {
+
+	private final InvocationPlan plan;
+
+	private final Invoker invoker;
+
+	/**
+	 * 降级实现, 没有时为空
+	 */
+	private final Object fallback;
+
+	MethodDispatcher(InvocationPlan plan, Invoker invoker, Object fallback) {
+		this.plan = plan;
+		this.invoker = invoker;
+		this.fallback = fallback;
+	}
+
+	Object dispatch(Object[] args) {
+		// 根据调用参数得到调用信息
+		return dispatch(plan.bind(args), args);
+	}
+
+	/**
+	 * @return 还没有绑定参数的 {@link MethodInfo}
+	 */
+	public MethodInfo newMethodInfo() {
+		return plan.newMethodInfo();
+	}
+
+	/**
+	 * 用创建代理时生成的绑定器绑定单个参数
+	 */
+	public void bind(int index, Object arg, MethodInfo methodInfo) {
+		plan.bind(index, arg, methodInfo);
+	}
+
+	/**
+	 * @return 是否有降级实现, 没有时调用 {@link #dispatch(MethodInfo, Object[])} 不需要传入参数
+	 */
+	public boolean hasFallback() {
+		return fallback != null;
+	}
+
+	/**
+	 * 发出已经绑定好参数的调用
+	 *
+	 * @param methodInfo 绑定好参数的 {@link MethodInfo}
+	 * @param args       方法的参数, 只在调用降级实现时使用, 没有降级实现时可以为 null
+	 */
+	@SuppressWarnings("unchecked")
+	public Object dispatch(MethodInfo methodInfo, Object[] args) {
+		if (log.isDebugEnabled()) {
+			log.debug("methodInfo:{}", methodInfo);
+		}
+		Object result = invoker.invoke(methodInfo);
+		if (fallback == null) {
+			return result;
+		}
+		// 快速失败时改为调用降级实现
+		if (result instanceof Flux) {
+			return ((Flux<Object>) result).onErrorResume(CallNotPermittedException.class,
+					e -> (Publisher<Object>) invokeFallback(args, e));
+		}
+		return ((Mono<Object>) result).onErrorResume(CallNotPermittedException.class,
+				e -> (Mono<Object>) invokeFallback(args, e));
+	}
+
+	private Object invokeFallback(Object[] args, CallNotPermittedException cause) {
+		log.debug("{} 调用降级实现: {}", plan.getMethod().getName(), cause.getMessage());
+		try {
+			return plan.getMethod().invoke(fallback, args);
+		} catch (InvocationTargetException e) {
+			throw Exceptions.propagate(e.getTargetException());
+		} catch (IllegalAccessException e) {
+			throw new PmWebClientException(String.format("调用降级实现失败 %s", plan.getMethod()));
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package cn.pinming.resilience;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.exception.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 根据请求耗时自动调整的并发上限, 超过上限的请求直接失败, 不在连接池上排队
+ * <p>
+ * 以 {@link ExchangeFilterFunction} 的方式按客户端生效, 每次请求的耗时从发出请求到收到响应头,
+ * 与请求指标的统计范围相同。上限只在 minLimit 和 maxLimit 之间变化
+ * <p>
+ * 每次响应只用原子操作把耗时计入当前的样本窗口, 窗口攒满 windowSize 个响应后才按窗口的平均耗时调整一次上限,
+ * 调整时的锁每个窗口只进入一次, 响应多时不会在每次响应上竞争
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 10:10
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public static final String LIMITER = "pm.webclient.limiter";
+
+    /**
+     * GRADIENT 算法中最近耗时和长期耗时的平滑系数, 分别约等于最近 10 个和 600 个窗口的平均
+     */
+    private static final double SHORT_ALPHA = 2.0 / 11;
+    private static final double LONG_ALPHA = 2.0 / 601;
+
+    private final String name;
+    private final LimitAlgorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final double tolerance;
+    private final double smoothing;
+    private final int windowSize;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+
+    /**
+     * 正在收集的样本窗口, 攒满后整体替换
+     */
+    private final AtomicReference<SampleWindow> window = new AtomicReference<>(new SampleWindow());
+
+    /**
+     * 调整时使用的精确值, 只在 synchronized 中修改
+     */
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+
+    /**
+     * 当前生效的上限, 申请许可时不加锁读取
+     */
+    private volatile int limit;
+
+    public AdaptiveConcurrencyLimiter(String name, PmWebClientProperties.AdaptiveLimitProperties config,
+                                      MeterRegistry registry, Tags tags) {
+        this.name = name;
+        this.algorithm = config.getAlgorithm();
+        this.minLimit = Math.max(1, config.getMinLimit());
+        this.maxLimit = Math.max(minLimit, config.getMaxLimit());
+        this.backoffRatio = config.getBackoffRatio();
+        this.latencyThresholdNanos = config.getLatencyThreshold().toNanos();
+        this.tolerance = config.getTolerance();
+        this.smoothing = config.getSmoothing();
+        this.windowSize = Math.max(1, config.getWindowSize());
+        this.estimatedLimit = Math.min(maxLimit, Math.max(minLimit, config.getInitialLimit()));
+        this.limit = (int) estimatedLimit;
+        Gauge.builder(LIMITER + ".limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("current concurrency limit of the client")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder(LIMITER + ".inflight", inFlight, AtomicInteger::get)
+                .description("requests in flight counted by the limiter")
+                .tags(tags)
+                .register(registry);
+        this.rejected = Counter.builder(LIMITER + ".rejected")
+                .description("requests rejected because the concurrency limit was reached")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 申请许可, 成功后必须调用 {@link #onResult(long, boolean)} 或 {@link #release()}
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求结束, 归还许可并把本次耗时计入样本窗口, 窗口攒满时调整上限
+     *
+     * @param nanos   本次请求耗时
+     * @param dropped 是否表示对方已经过载: 超时、连接异常、429 或 503
+     */
+    public void onResult(long nanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        SampleWindow sample = window.get();
+        // 只有攒满窗口并成功替换的线程调整上限; 替换前后刚好计入旧窗口的少量样本会被丢弃, 不影响估算
+        if (sample.add(nanos, dropped, current) == windowSize && window.compareAndSet(sample, new SampleWindow())) {
+            update(sample);
+        }
+    }
+
+    private synchronized void update(SampleWindow sample) {
+        long nanos = sample.rttSum.get() / windowSize;
+        if (algorithm == LimitAlgorithm.AIMD) {
+            aimd(nanos, sample.dropped, sample.maxInFlight.get());
+        } else {
+            gradient(nanos, sample.dropped, sample.maxInFlight.get());
+        }
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 请求被取消, 只归还许可, 不参与调整
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    private void aimd(long nanos, boolean dropped, int current) {
+        if (dropped || nanos > latencyThresholdNanos) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+        } else if (current * 2 >= estimatedLimit) {
+            // 并发数远低于上限时说明上限不是瓶颈, 不再继续增大
+            estimatedLimit = Math.min(maxLimit, estimatedLimit + 1);
+        }
+    }
+
+    private void gradient(long nanos, boolean dropped, int current) {
+        if (dropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+            return;
+        }
+        if (longRtt == 0) {
+            shortRtt = nanos;
+            longRtt = nanos;
+            return;
+        }
+        shortRtt += (nanos - shortRtt) * SHORT_ALPHA;
+        longRtt += (nanos - longRtt) * LONG_ALPHA;
+        // 耗时明显下降后让长期耗时尽快跟上, 否则上限会长时间偏大
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        if (current < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        // 额外留出 sqrt(limit) 的排队空间, 让上限在耗时稳定时还能慢慢增大
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * 超过上限时以 {@link CallNotPermittedException} 失败的过滤器, 4xx 之外的其他状态码都按正常耗时统计
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return Mono.error(new CallNotPermittedException(String.format("%s 并发数已达到自适应上限 %d", name, limit)));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean finished = new AtomicBoolean();
+            return next.exchange(request)
+                    .doOnSuccess(response -> {
+                        if (finished.compareAndSet(false, true)) {
+                            if (response == null) {
+                                release();
+                                return;
+                            }
+                            int status = response.rawStatusCode();
+                            onResult(System.nanoTime() - start, status == 429 || status == 503);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (finished.compareAndSet(false, true)) {
+                            onResult(System.nanoTime() - start, isDropped(e));
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (finished.compareAndSet(false, true)) {
+                            release();
+                        }
+                    });
+        });
+    }
+
+    private static boolean isDropped(Throwable e) {
+        return e instanceof IOException || e instanceof TimeoutException || e instanceof io.netty.handler.timeout.TimeoutException;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 一个窗口内的样本: 耗时总和、窗口内最大的并发数和是否出现过载
+     */
+    private static final class SampleWindow {
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong rttSum = new AtomicLong();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile boolean dropped;
+
+        /**
+         * @return 计入后窗口内的样本数
+         */
+        int add(long nanos, boolean dropped, int inFlight) {
+            rttSum.addAndGet(nanos);
+            if (maxInFlight.get() < inFlight) {
+                maxInFlight.accumulateAndGet(inFlight, Math::max);
+            }
+            if (dropped) {
+                this.dropped = true;
+            }
+            return count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cn.pinming.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 限制同时进行的调用数, 超过后直接拒绝而不是在连接池上排队
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+public class Bulkhead {
+
+    public static final String BULKHEAD = "pm.webclient.bulkhead";
+
+    private final String name;
+
+    private final int maxConcurrentCalls;
+
+    private final AtomicInteger available;
+
+    private final Counter rejected;
+
+    public Bulkhead(String name, int maxConcurrentCalls, MeterRegistry registry, Tags tags) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.available = new AtomicInteger(maxConcurrentCalls);
+        Gauge.builder(BULKHEAD + ".available", available, AtomicInteger::get)
+                .description("remaining concurrent calls allowed by the bulkhead")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder(BULKHEAD + ".max", this, bulkhead -> bulkhead.maxConcurrentCalls)
+                .description("max concurrent calls allowed by the bulkhead")
+                .tags(tags)
+                .register(registry);
+        this.rejected = Counter.builder(BULKHEAD + ".rejected")
+                .description("calls rejected because the bulkhead is full")
+                .tags(tags)
+                .register(registry);
+    }
+
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = available.get();
+            if (current <= 0) {
+                rejected.increment();
+                return false;
+            }
+            if (available.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        available.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+}
@@ -0,0 +1,262 @@
+package cn.pinming.resilience;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于最近 N 次调用的熔断器
+ * <p>
+ * CLOSED 状态下统计最近 slidingWindowSize 次调用的失败率和慢调用率, 超过阈值后进入 OPEN, 直接拒绝调用;
+ * 等待 waitDurationInOpenState 后进入 HALF_OPEN, 放行 permittedCallsInHalfOpenState 次试探调用,
+ * 试探结果仍超过阈值则重新 OPEN, 否则回到 CLOSED
+ * <p>
+ * 每次请求都会经过熔断器, 因此不加锁: 每个状态是一个不可变的 {@link Phase}, 状态变化通过 CAS 替换,
+ * CLOSED 下申请调用只读一次当前状态; 调用结果用原子操作写入环形窗口, 并发写入时窗口内的顺序不严格,
+ * 但失败数和慢调用数始终与窗口内容一致
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public static final String CIRCUIT_BREAKER = "pm.webclient.circuitbreaker";
+
+    /**
+     * 拒绝调用时 {@link #tryAcquire()} 的返回值
+     */
+    public static final long REJECTED = -1;
+
+    /**
+     * 窗口元素: 0 表示还没有调用, 否则是 RECORDED | FAILED | SLOW
+     */
+    private static final int RECORDED = 1;
+    private static final int FAILED = 2;
+    private static final int SLOW = 4;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final float slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long waitNanos;
+    private final int halfOpenCalls;
+
+    private final AtomicReference<Phase> phase;
+
+    private final Counter successCalls;
+    private final Counter failedCalls;
+    private final Counter slowCalls;
+    private final Counter rejectedCalls;
+
+    public CircuitBreaker(String name, PmWebClientProperties.CircuitBreakerProperties config, MeterRegistry registry, Tags tags) {
+        this.name = name;
+        this.windowSize = Math.max(1, config.getSlidingWindowSize());
+        this.minimumCalls = Math.max(1, Math.min(config.getMinimumNumberOfCalls(), windowSize));
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.slowCallRateThreshold = config.getSlowCallRateThreshold();
+        this.slowCallNanos = config.getSlowCallDurationThreshold().toNanos();
+        this.waitNanos = config.getWaitDurationInOpenState().toNanos();
+        this.halfOpenCalls = Math.max(1, config.getPermittedCallsInHalfOpenState());
+        this.phase = new AtomicReference<>(new Phase(State.CLOSED, 0));
+
+        Gauge.builder(CIRCUIT_BREAKER + ".state", this, breaker -> breaker.getState().ordinal())
+                .description("circuit breaker state, 0 closed, 1 open, 2 half open")
+                .tags(tags)
+                .register(registry);
+        this.successCalls = calls(registry, tags, "success");
+        this.failedCalls = calls(registry, tags, "failure");
+        this.rejectedCalls = calls(registry, tags, "rejected");
+        this.slowCalls = Counter.builder(CIRCUIT_BREAKER + ".slow.calls")
+                .description("calls slower than the slow call threshold")
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static Counter calls(MeterRegistry registry, Tags tags, String result) {
+        return Counter.builder(CIRCUIT_BREAKER + ".calls")
+                .description("calls seen by the circuit breaker")
+                .tags(tags)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * 申请一次调用
+     *
+     * @return 调用结束后传给 {@link #onResult} 的凭证, 被拒绝时返回 {@link #REJECTED}
+     */
+    public long tryAcquire() {
+        for (;;) {
+            Phase current = phase.get();
+            if (current.state == State.CLOSED) {
+                return current.generation;
+            }
+            if (current.state == State.OPEN && System.nanoTime() - current.openedAt >= waitNanos) {
+                transition(current, State.HALF_OPEN);
+                continue;
+            }
+            if (current.state == State.HALF_OPEN && current.tryTakePermit()) {
+                return current.generation;
+            }
+            rejectedCalls.increment();
+            return REJECTED;
+        }
+    }
+
+    /**
+     * 记录调用结果
+     *
+     * @param permit {@link #tryAcquire()} 的返回值
+     * @param nanos  调用耗时
+     * @param failed 是否算作失败
+     */
+    public void onResult(long permit, long nanos, boolean failed) {
+        boolean slow = nanos >= slowCallNanos;
+        (failed ? failedCalls : successCalls).increment();
+        if (slow) {
+            slowCalls.increment();
+        }
+        Phase current = phase.get();
+        if (permit != current.generation) {
+            return;
+        }
+        if (current.state == State.CLOSED) {
+            recordInWindow(current, failed, slow);
+        } else if (current.state == State.HALF_OPEN) {
+            recordHalfOpen(current, failed, slow);
+        }
+    }
+
+    /**
+     * 调用被取消或结果不计入统计, 归还试探名额
+     */
+    public void release(long permit) {
+        Phase current = phase.get();
+        if (permit == current.generation && current.state == State.HALF_OPEN) {
+            current.permits.incrementAndGet();
+        }
+    }
+
+    public State getState() {
+        return phase.get().state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void recordInWindow(Phase current, boolean failed, boolean slow) {
+        int outcome = RECORDED | (failed ? FAILED : 0) | (slow ? SLOW : 0);
+        long index = current.calls.getAndIncrement();
+        int evicted = current.window.getAndSet((int) (index % windowSize), outcome);
+        // 按替换掉的旧结果修正计数, 计数始终与窗口内容一致; 新旧结果相同时不写共享的计数
+        int failureDelta = ((outcome & FAILED) - (evicted & FAILED)) / FAILED;
+        int slowDelta = ((outcome & SLOW) - (evicted & SLOW)) / SLOW;
+        int failures = failureDelta == 0 ? current.failures.get() : current.failures.addAndGet(failureDelta);
+        int slows = slowDelta == 0 ? current.slows.get() : current.slows.addAndGet(slowDelta);
+        int count = (int) Math.min(index + 1, windowSize);
+        if (count >= minimumCalls && exceedsThreshold(failures, slows, count)) {
+            transition(current, State.OPEN);
+        }
+    }
+
+    private void recordHalfOpen(Phase current, boolean failed, boolean slow) {
+        if (failed) {
+            current.failures.incrementAndGet();
+        }
+        if (slow) {
+            current.slows.incrementAndGet();
+        }
+        // 只有完成最后一次试探的线程做判断, 此时所有试探的结果都已经计入
+        if (current.calls.incrementAndGet() == halfOpenCalls) {
+            boolean exceeds = exceedsThreshold(current.failures.get(), current.slows.get(), halfOpenCalls);
+            transition(current, exceeds ? State.OPEN : State.CLOSED);
+        }
+    }
+
+    private boolean exceedsThreshold(int failures, int slows, int calls) {
+        return failures * 100f / calls >= failureRateThreshold || slows * 100f / calls >= slowCallRateThreshold;
+    }
+
+    /**
+     * 只有替换成功的线程记录状态变化, 其他线程看到的是新状态或者更新的状态
+     */
+    private void transition(Phase from, State newState) {
+        if (phase.compareAndSet(from, new Phase(newState, from.generation + 1))) {
+            log.warn("circuit breaker {} {} -> {}", name, from.state, newState);
+        }
+    }
+
+    /**
+     * 剩余的打开时间, 供错误信息使用
+     */
+    public long remainingOpenMillis() {
+        Phase current = phase.get();
+        if (current.state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(waitNanos - (System.nanoTime() - current.openedAt)));
+    }
+
+    /**
+     * 一次状态及其统计数据, 状态变化时整体替换, 旧状态下发出的调用结果通过 generation 识别后丢弃
+     */
+    private final class Phase {
+        private final State state;
+        /**
+         * 每次状态变化加一
+         */
+        private final long generation;
+        private final long openedAt;
+        /**
+         * CLOSED 下的环形窗口, 每个元素是一次调用的结果
+         */
+        private final AtomicIntegerArray window;
+        /**
+         * CLOSED 下是写入窗口的次数, HALF_OPEN 下是完成的试探次数
+         */
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slows = new AtomicInteger();
+        /**
+         * HALF_OPEN 下剩余的试探名额
+         */
+        private final AtomicInteger permits;
+
+        Phase(State state, long generation) {
+            this.state = state;
+            this.generation = generation;
+            this.openedAt = state == State.OPEN ? System.nanoTime() : 0;
+            this.window = state == State.CLOSED ? new AtomicIntegerArray(windowSize) : null;
+            this.permits = new AtomicInteger(state == State.HALF_OPEN ? halfOpenCalls : 0);
+        }
+
+        boolean tryTakePermit() {
+            for (;;) {
+                int remaining = permits.get();
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (permits.compareAndSet(remaining, remaining - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package cn.pinming.resilience;
+
+/**
+ * 自适应并发限制调整上限的算法
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 10:10
+ */
+public enum LimitAlgorithm {
+    /**
+     * 没有过载时加一, 超时、连接异常、429/503 或耗时超过阈值时按比例减小
+     */
+    AIMD,
+    /**
+     * 按长期平均耗时和最近耗时的比值调整, 耗时变长就降低上限, 不需要等到出错
+     */
+    GRADIENT
+}
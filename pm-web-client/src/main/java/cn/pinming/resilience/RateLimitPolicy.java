@@ -0,0 +1,54 @@
+package cn.pinming.resilience;
+
+import cn.pinming.annotation.RateLimit;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.util.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个方法最终生效的限流配置, 来自 {@link RateLimit} 或配置
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 15:20
+ */
+@Getter
+@ToString
+public class RateLimitPolicy {
+
+    private final double permitsPerSecond;
+    private final int burst;
+    private final long maxWaitNanos;
+    private final String keyHeader;
+    private final String keyPathVariable;
+    /**
+     * 来自接口级别的配置时接口的所有方法共用令牌桶
+     */
+    private final boolean shared;
+
+    private RateLimitPolicy(double permitsPerSecond, int burst, long maxWaitNanos, String keyHeader, String keyPathVariable,
+                            boolean shared) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst > 0 ? burst : (int) Math.max(1, Math.ceil(permitsPerSecond));
+        this.maxWaitNanos = maxWaitNanos;
+        this.keyHeader = StringUtils.hasText(keyHeader) ? keyHeader : null;
+        this.keyPathVariable = StringUtils.hasText(keyPathVariable) ? keyPathVariable : null;
+        this.shared = shared;
+    }
+
+    public static RateLimitPolicy of(RateLimit rateLimit, boolean shared) {
+        return new RateLimitPolicy(rateLimit.permitsPerSecond(), rateLimit.burst(), TimeUnit.MILLISECONDS.toNanos(rateLimit.maxWait()),
+                rateLimit.keyHeader(), rateLimit.keyPathVariable(), shared);
+    }
+
+    public static RateLimitPolicy of(PmWebClientProperties.RateLimitProperties rateLimit, boolean shared) {
+        return new RateLimitPolicy(rateLimit.getPermitsPerSecond(), rateLimit.getBurst(), rateLimit.getMaxWait().toNanos(),
+                rateLimit.getKeyHeader(), rateLimit.getKeyPathVariable(), shared);
+    }
+
+    public boolean isKeyed() {
+        return keyHeader != null || keyPathVariable != null;
+    }
+}
@@ -0,0 +1,115 @@
+package cn.pinming.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 {@link RateLimitPolicy} 限流, 没有指定 key 时只有一个令牌桶, 否则每个 key 一个令牌桶
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 15:20
+ */
+public class RateLimiter {
+
+    public static final String RATE_LIMITER = "pm.webclient.ratelimiter";
+
+    /**
+     * key 的数量超过这个值时清理已经补满的令牌桶
+     */
+    private static final int MAX_IDLE_KEYS = 10_000;
+
+    /**
+     * 两次清理的最短间隔, 活跃的 key 超过 MAX_IDLE_KEYS 时不会每个新 key 都遍历一遍
+     */
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final RateLimitPolicy policy;
+    private final TokenBucket bucket;
+    private final Map<String, TokenBucket> buckets;
+    private final Counter delayed;
+    private final Counter rejected;
+    private final AtomicLong lastCleanup = new AtomicLong(System.nanoTime() - CLEANUP_INTERVAL_NANOS);
+
+    public RateLimiter(String name, RateLimitPolicy policy, MeterRegistry registry, Tags tags) {
+        this.name = name;
+        this.policy = policy;
+        this.bucket = policy.isKeyed() ? null : newBucket();
+        this.buckets = policy.isKeyed() ? new ConcurrentHashMap<>() : null;
+        this.delayed = Counter.builder(RATE_LIMITER + ".delayed")
+                .description("requests delayed to stay within the rate limit")
+                .tags(tags)
+                .register(registry);
+        this.rejected = Counter.builder(RATE_LIMITER + ".rejected")
+                .description("requests rejected because the rate limit would need a longer wait")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 预订一次请求
+     *
+     * @param key 限流的 key, 没有指定 key 时忽略
+     * @return 发出请求前需要等待的纳秒数, 被拒绝时为 {@link TokenBucket#REJECTED}
+     */
+    public long reserve(String key) {
+        long wait = bucket(key).reserve(policy.getMaxWaitNanos());
+        if (wait == TokenBucket.REJECTED) {
+            rejected.increment();
+        } else if (wait > 0) {
+            delayed.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * 归还 {@link #reserve(String)} 预订后没有使用的令牌
+     */
+    public void release(String key) {
+        TokenBucket reserved = bucket != null ? bucket : buckets.get(key == null ? "" : key);
+        if (reserved != null) {
+            reserved.release();
+        }
+    }
+
+    private TokenBucket bucket(String key) {
+        if (bucket != null) {
+            return bucket;
+        }
+        String bucketKey = key == null ? "" : key;
+        TokenBucket existing = buckets.get(bucketKey);
+        if (existing != null) {
+            return existing;
+        }
+        if (buckets.size() >= MAX_IDLE_KEYS) {
+            cleanUp();
+        }
+        return buckets.computeIfAbsent(bucketKey, k -> newBucket());
+    }
+
+    private void cleanUp() {
+        long now = System.nanoTime();
+        long last = lastCleanup.get();
+        if (now - last >= CLEANUP_INTERVAL_NANOS && lastCleanup.compareAndSet(last, now)) {
+            buckets.values().removeIf(b -> b.isFull(now));
+        }
+    }
+
+    private TokenBucket newBucket() {
+        return new TokenBucket(policy.getPermitsPerSecond(), policy.getBurst());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RateLimitPolicy getPolicy() {
+        return policy;
+    }
+}
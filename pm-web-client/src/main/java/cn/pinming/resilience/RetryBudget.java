@@ -0,0 +1,100 @@
+package cn.pinming.resilience;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 重试预算: 最近 window 秒内的重试次数不超过请求数的 ratio 倍, 请求很少时至少允许 minRetriesPerSecond 次/秒,
+ * 下游整体故障时避免重试把流量放大成重试风暴; 对冲请求也用它限制额外的请求量
+ * <p>
+ * 按秒分桶计数, 只在桶过期时重置, 计数是近似的
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/25 9:40
+ */
+public class RetryBudget {
+
+    private final double ratio;
+
+    private final long minRetries;
+
+    private final int window;
+
+    private final AtomicLongArray seconds;
+
+    private final AtomicLongArray requests;
+
+    private final AtomicLongArray retries;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RetryBudget(PmWebClientProperties.RetryBudgetProperties properties) {
+        this(properties.getRatio(), properties.getMinRetriesPerSecond(), properties.getWindow());
+    }
+
+    public RetryBudget(double ratio, int minRetriesPerSecond, Duration window) {
+        this.ratio = ratio;
+        this.window = Math.max(1, (int) window.getSeconds());
+        this.minRetries = (long) minRetriesPerSecond * this.window;
+        this.seconds = new AtomicLongArray(this.window);
+        this.requests = new AtomicLongArray(this.window);
+        this.retries = new AtomicLongArray(this.window);
+    }
+
+    /**
+     * 记录一次请求(不包括重试)
+     */
+    public void onRequest() {
+        requests.incrementAndGet(bucket(currentSecond()));
+    }
+
+    /**
+     * 申请一次重试
+     *
+     * @return 预算不足时返回 false
+     */
+    public boolean tryRetry() {
+        long now = currentSecond();
+        long totalRequests = 0;
+        long totalRetries = 0;
+        for (int i = 0; i < window; i++) {
+            if (now - seconds.get(i) < window) {
+                totalRequests += requests.get(i);
+                totalRetries += retries.get(i);
+            }
+        }
+        if (totalRetries >= Math.max(minRetries, (long) (totalRequests * ratio))) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        retries.incrementAndGet(bucket(now));
+        return true;
+    }
+
+    /**
+     * @return 因为预算不足而放弃的重试次数
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 找到当前秒对应的桶, 桶里是过期的数据时先清零
+     */
+    private int bucket(long second) {
+        int index = (int) (second % window);
+        long bucketSecond = seconds.get(index);
+        if (bucketSecond != second && seconds.compareAndSet(index, bucketSecond, second)) {
+            requests.set(index, 0);
+            retries.set(index, 0);
+        }
+        return index;
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,87 @@
+package cn.pinming.resilience;
+
+import cn.pinming.annotation.Retry;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.exception.PmWebClientResponseException;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一个方法最终生效的重试策略, 来自 {@link Retry} 或配置
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/25 9:40
+ */
+@Getter
+@ToString
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final Set<Integer> retryOnStatus;
+    private final List<Class<? extends Throwable>> retryOn;
+    private final boolean nonIdempotent;
+
+    private RetryPolicy(int maxAttempts, long backoffMillis, long maxBackoffMillis, double multiplier, double jitter,
+                        Set<Integer> retryOnStatus, List<Class<? extends Throwable>> retryOn, boolean nonIdempotent) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.multiplier = multiplier;
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        this.retryOnStatus = retryOnStatus;
+        this.retryOn = retryOn;
+        this.nonIdempotent = nonIdempotent;
+    }
+
+    public static RetryPolicy of(Retry retry) {
+        Set<Integer> statuses = new HashSet<>();
+        for (int status : retry.retryOnStatus()) {
+            statuses.add(status);
+        }
+        return new RetryPolicy(retry.maxAttempts(), retry.backoff(), retry.maxBackoff(), retry.multiplier(), retry.jitter(),
+                statuses, Arrays.asList(retry.retryOn()), retry.nonIdempotent());
+    }
+
+    public static RetryPolicy of(PmWebClientProperties.RetryProperties retry) {
+        return new RetryPolicy(retry.getMaxAttempts(), retry.getBackoff().toMillis(), retry.getMaxBackoff().toMillis(),
+                retry.getMultiplier(), retry.getJitter(), new HashSet<>(retry.getRetryOnStatus()), retry.getRetryOn(),
+                retry.isNonIdempotent());
+    }
+
+    /**
+     * 失败的请求是否值得重试
+     */
+    public boolean isRetryable(Throwable throwable) {
+        if (throwable instanceof PmWebClientResponseException) {
+            return retryOnStatus.contains(((PmWebClientResponseException) throwable).getStatusCode());
+        }
+        for (Throwable t = throwable; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            for (Class<? extends Throwable> type : retryOn) {
+                if (type.isInstance(t)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第 retry 次重试(从 1 开始)前的等待时间
+     */
+    public Duration backoff(int retry) {
+        double base = Math.min(maxBackoffMillis, backoffMillis * Math.pow(multiplier, retry - 1));
+        double jittered = base * (1 - jitter + ThreadLocalRandom.current().nextDouble() * 2 * jitter);
+        return Duration.ofMillis((long) Math.min(maxBackoffMillis, jittered));
+    }
+}
@@ -0,0 +1,77 @@
+package cn.pinming.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的令牌桶
+ * <p>
+ * 只用一个 {@code AtomicLong} 记录下一个令牌可用的时间(GCRA), 申请令牌时 CAS 推进这个时间,
+ * 不需要定时补充令牌, 也不需要加锁
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 15:20
+ */
+public class TokenBucket {
+
+    /**
+     * 等待时间超过上限时 {@link #reserve(long)} 的返回值
+     */
+    public static final long REJECTED = -1;
+
+    /**
+     * 两个令牌之间的间隔
+     */
+    private final long intervalNanos;
+
+    /**
+     * 允许提前使用的时间, 即 burst - 1 个间隔
+     */
+    private final long toleranceNanos;
+
+    private final AtomicLong nextFree;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond 必须大于 0");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = (Math.max(1, burst) - 1) * intervalNanos;
+        this.nextFree = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 预订一个令牌
+     *
+     * @param maxWaitNanos 最多愿意等待的时间
+     * @return 拿到令牌前需要等待的时间, 超过 maxWaitNanos 时返回 {@link #REJECTED} 且不消耗令牌
+     */
+    public long reserve(long maxWaitNanos) {
+        for (;;) {
+            long now = System.nanoTime();
+            long current = nextFree.get();
+            // 桶已满时从现在开始算, 空闲期间攒下的令牌不会超过 burst
+            long start = current - now > 0 ? current : now;
+            long wait = Math.max(0, start - now - toleranceNanos);
+            if (wait > maxWaitNanos) {
+                return REJECTED;
+            }
+            if (nextFree.compareAndSet(current, start + intervalNanos)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * 归还一个预订后没有使用的令牌, 比如等待期间请求被取消
+     */
+    public void release() {
+        nextFree.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * 令牌已经补满, 丢弃后重新创建没有区别
+     */
+    public boolean isFull(long now) {
+        return nextFree.get() - now <= 0;
+    }
+}
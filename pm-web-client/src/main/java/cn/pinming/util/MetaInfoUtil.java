@@ -1,23 +1,35 @@
 package cn.pinming.util;
 
 import cn.pinming.annotation.ApiServer;
+import cn.pinming.annotation.DownloadTo;
 import cn.pinming.annotation.PlainRequestBody;
 import cn.pinming.annotation.RequestForm;
+import cn.pinming.bean.InvocationPlan;
 import cn.pinming.bean.MethodInfo;
 import cn.pinming.bean.ServerInfo;
+import cn.pinming.interfaces.ArgumentBinder;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -43,7 +55,21 @@ public class MetaInfoUtil {
     public static ServerInfo extractServerInfo(Class<?> type, DefaultListableBeanFactory beanFactory) {
         ServerInfo serverInfo = new ServerInfo();
         ApiServer anno = type.getAnnotation(ApiServer.class);
-        serverInfo.setUrl(beanFactory.resolveEmbeddedValue(anno.value()));
+        List<String> urls = new ArrayList<>();
+        for (String value : anno.value()) {
+            String resolved = beanFactory.resolveEmbeddedValue(value);
+            if (resolved == null) {
+                continue;
+            }
+            // 占位符可以解析成逗号分隔的多个地址
+            for (String url : StringUtils.commaDelimitedListToStringArray(resolved)) {
+                if (!url.trim().isEmpty()) {
+                    urls.add(url.trim());
+                }
+            }
+        }
+        serverInfo.setUrls(urls);
+        serverInfo.setUrl(urls.isEmpty() ? null : urls.get(0));
         serverInfo.setClientInterfaceName(type.getSimpleName());
         return serverInfo;
     }
@@ -56,12 +82,126 @@ public class MetaInfoUtil {
      * @return {@link MethodInfo}
      */
     public static MethodInfo extractMethodInfo(Method method, Object[] args) {
-        MethodInfo methodInfo = new MethodInfo();
-        MetaInfoUtil.extractUrlAndMethod(method, methodInfo);
-        MetaInfoUtil.extractRequestParamAndBody(method, args, methodInfo);
+        return compileInvocationPlan(method).bind(args);
+    }
+
+    /**
+     * 解析接口中所有需要发出请求的方法, 生成对应的调用计划
+     *
+     * @param type 用户定义的接口类型
+     * @return 方法和调用计划的对应关系
+     */
+    public static Map<Method, InvocationPlan> compileInvocationPlans(Class<?> type) {
+        Map<Method, InvocationPlan> plans = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            plans.put(method, compileInvocationPlan(type, method));
+        }
+        return plans;
+    }
+
+    /**
+     * 根据方法定义生成调用计划, 以声明方法的接口作为被代理的接口
+     *
+     * @param method 接口中的方法
+     * @return {@link InvocationPlan}
+     */
+    public static InvocationPlan compileInvocationPlan(Method method) {
+        return compileInvocationPlan(method.getDeclaringClass(), method);
+    }
+
+    /**
+     * 根据方法定义生成调用计划, 只在创建代理时执行一次
+     *
+     * @param type   被代理的接口, 方法可能继承自它的父接口
+     * @param method 接口中的方法
+     * @return {@link InvocationPlan}
+     */
+    public static InvocationPlan compileInvocationPlan(Class<?> type, Method method) {
+        // 先用一个 MethodInfo 收集方法上与调用参数无关的信息
+        MethodInfo template = new MethodInfo();
+        MetaInfoUtil.extractUrlAndMethod(method, template);
         // 提取返回对象信息
-        MetaInfoUtil.extractReturnInfo(method, methodInfo);
-        return methodInfo;
+        MetaInfoUtil.extractReturnInfo(method, template);
+        ArgumentBinder[] binders = MetaInfoUtil.compileArgumentBinders(type, method, template);
+        if (template.getAccept() == null) {
+            template.setAccept(interfaceMediaType(type));
+        }
+
+        InvocationPlan.InvokeType invokeType;
+        if (isDownload(method, template)) {
+            invokeType = InvocationPlan.InvokeType.DOWNLOAD;
+        } else if (MediaType.APPLICATION_FORM_URLENCODED_VALUE.equals(template.getReqeustContentType())) {
+            invokeType = InvocationPlan.InvokeType.FORM;
+        } else if (template.isRawRequest()) {
+            invokeType = InvocationPlan.InvokeType.PLAIN;
+        } else {
+            invokeType = InvocationPlan.InvokeType.REST;
+        }
+        int pathVariableCount = 0;
+        for (Parameter parameter : method.getParameters()) {
+            if (parameter.isAnnotationPresent(PathVariable.class)) {
+                pathVariableCount++;
+            }
+        }
+        return InvocationPlan.builder()
+                .method(method)
+                .clientType(type)
+                .url(template.getUrl())
+                .httpMethod(template.getMethod())
+                .requestContentType(template.getReqeustContentType())
+                .accept(template.getAccept())
+                .bodyElementType(template.getBodyElementType())
+                .returnFlux(template.isReturnFlux())
+                .returnElementType(template.getReturnElementType())
+                .rawRequest(template.isRawRequest())
+                .invokeType(invokeType)
+                .oneShot(isOneShot(method))
+                .pathVariableCount(pathVariableCount)
+                .binders(binders)
+                .build();
+    }
+
+    /**
+     * 有 {@link DownloadTo} 参数, 或者返回 {@code Flux<DataBuffer>}、{@code Flux<byte[]>} 时按流读取响应体
+     */
+    private static boolean isDownload(Method method, MethodInfo template) {
+        for (Parameter parameter : method.getParameters()) {
+            if (parameter.isAnnotationPresent(DownloadTo.class)) {
+                return true;
+            }
+        }
+        if (!template.isReturnFlux()) {
+            return false;
+        }
+        Type elementType = template.getReturnElementType().getType();
+        return elementType == DataBuffer.class || elementType == byte[].class;
+    }
+
+    /**
+     * 写入 {@link WritableByteChannel} 的下载不能回到开头重新写, 重试会把两次响应拼在一起;
+     * 原始字节的 Mono/Flux 请求体(例如转发的 DataBuffer 流)一般只能订阅一次, 重试时已经没有内容可发
+     */
+    private static boolean isOneShot(Method method) {
+        for (Parameter parameter : method.getParameters()) {
+            if (parameter.isAnnotationPresent(DownloadTo.class) && WritableByteChannel.class.isAssignableFrom(parameter.getType())) {
+                return true;
+            }
+            if (parameter.isAnnotationPresent(PlainRequestBody.class) && isRawPublisher(parameter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 元素按原始字节发送的 Mono/Flux 参数, 见 {@link PlainBodies#fromPublisher}
+     */
+    private static boolean isRawPublisher(Parameter parameter) {
+        return Publisher.class.isAssignableFrom(parameter.getType())
+                && PlainBodies.isRawElement(extractElementType(parameter.getParameterizedType()).getType());
     }
 
     /**
@@ -102,66 +242,104 @@ public class MetaInfoUtil {
     }
 
     /**
-     * 得到请求的param和body
+     * 根据参数上的注解生成参数绑定器, 请求体的类型等与参数值无关的信息直接写入 methodInfo
      *
+     * @param type       被代理的接口, 没有声明 consumes 时使用它的 {@link ApiServer#mediaType()}
      * @param method     接口中定义的方法
-     * @param args       方法参数
      * @param methodInfo {@link MethodInfo}
+     * @return 每个参数对应的绑定器, 没有注解的参数对应 null
      */
     @SuppressWarnings("unchecked")
-    public static void extractRequestParamAndBody(Method method, Object[] args, MethodInfo methodInfo) {
-        // 得到调用的参数和body
+    public static ArgumentBinder[] compileArgumentBinders(Class<?> type, Method method, MethodInfo methodInfo) {
         Parameter[] parameters = method.getParameters();
-        // 参数和值对应的 map
-        Map<String, Object> params = new LinkedHashMap<>();
-        methodInfo.setParams(params);
+        ArgumentBinder[] binders = new ArgumentBinder[parameters.length];
 
         for (int i = 0; i < parameters.length; i++) {
+            List<ArgumentBinder> parameterBinders = new ArrayList<>(1);
             // RequestHeader 的支持
             RequestHeader annoHeader = parameters[i].getAnnotation(RequestHeader.class);
             if (Objects.nonNull(annoHeader)) {
-                if (Objects.isNull(methodInfo.getRequestHeaders())) {
-                    methodInfo.setRequestHeaders(new LinkedHashMap<>());
-                }
-                if (args[i] instanceof Map) {
-                    ((Map<String, String>) args[i]).forEach((k, v) -> {
-                        methodInfo.getRequestHeaders().put(k, v);
-                    });
-                } else if (args[i] instanceof String) {
-                    methodInfo.getRequestHeaders().put(annoHeader.value(), (String) args[i]);
-                }
+                String headerName = annoHeader.value();
+                parameterBinders.add((arg, info) -> {
+                    if (Objects.isNull(info.getRequestHeaders())) {
+                        info.setRequestHeaders(new LinkedHashMap<>());
+                    }
+                    if (arg instanceof Map) {
+                        info.getRequestHeaders().putAll((Map<String, String>) arg);
+                    } else if (arg instanceof String) {
+                        info.getRequestHeaders().put(headerName, (String) arg);
+                    }
+                });
             }
 
             // 是否带 @PathVariable
             PathVariable annoPath = parameters[i].getAnnotation(PathVariable.class);
             if (Objects.nonNull(annoPath)) {
-                params.put(annoPath.value(), args[i]);
+                String name = annoPath.value();
+                parameterBinders.add((arg, info) -> info.getParams().put(name, arg));
             }
             // 是否带了 RequestBody
             RequestBody annoBody = parameters[i].getAnnotation(RequestBody.class);
             if (Objects.nonNull(annoBody)) {
-                methodInfo.setBody((Mono<?>) args[i]);
                 // 请求对象的实际类型
                 methodInfo.setBodyElementType(extractElementType(parameters[i].getParameterizedType()));
-                methodInfo.setReqeustContentType(MediaType.APPLICATION_JSON_VALUE);
+                // 映射注解的 consumes 优先, 其次是接口的 mediaType, 默认 JSON
+                String consumes = firstValue(method, true);
+                if (consumes == null) {
+                    consumes = interfaceMediaType(type);
+                }
+                methodInfo.setReqeustContentType(consumes == null ? MediaType.APPLICATION_JSON_VALUE : consumes);
+                parameterBinders.add((arg, info) -> info.setBody((Mono<?>) arg));
             }
             RequestForm annoForm = parameters[i].getAnnotation(RequestForm.class);
             if (Objects.nonNull(annoForm)) {
-                //MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
-                //Mono<Map<String, String>> p = (Mono<Map<String, String>>)args[i];
-                //p.subscribe(m -> m.forEach(formData::add));
-                //methodInfo.setFormData(Mono.just(formData));
-                methodInfo.setFormData((Mono<MultiValueMap<String, ?>>) args[i]);
                 methodInfo.setReqeustContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+                parameterBinders.add((arg, info) -> info.setFormData((Mono<MultiValueMap<String, ?>>) arg));
             }
             PlainRequestBody annoPlainBody = parameters[i].getAnnotation(PlainRequestBody.class);
             if (Objects.nonNull(annoPlainBody)) {
-                methodInfo.setBody((Mono<?>) args[i]);
-                methodInfo.setBodyElementType(extractElementType(parameters[i].getParameterizedType()));
                 methodInfo.setReqeustContentType(annoPlainBody.contentType());
                 methodInfo.setRawRequest(true);
+                Class<?> bodyType = parameters[i].getType();
+                if (PlainBodies.isRawValue(bodyType)) {
+                    // byte[]、ByteBuffer、Resource、Path、File 不经过编码器
+                    parameterBinders.add((arg, info) -> {
+                        if (arg != null) {
+                            info.setBodyInserter(PlainBodies.fromValue(arg));
+                        }
+                    });
+                } else if (isRawPublisher(parameters[i])) {
+                    parameterBinders.add((arg, info) -> {
+                        if (arg != null) {
+                            info.setBodyInserter(PlainBodies.fromPublisher((Publisher<?>) arg));
+                        }
+                    });
+                } else {
+                    methodInfo.setBodyElementType(extractElementType(parameters[i].getParameterizedType()));
+                    parameterBinders.add((arg, info) -> info.setBody((Mono<?>) arg));
+                }
+            }
+
+            if (parameters[i].isAnnotationPresent(DownloadTo.class)) {
+                Class<?> targetType = parameters[i].getType();
+                if (!Path.class.isAssignableFrom(targetType) && !WritableByteChannel.class.isAssignableFrom(targetType)) {
+                    throw new IllegalArgumentException(String.format("@DownloadTo 只支持 Path 和 WritableByteChannel 类型的参数 %s", method));
+                }
+                parameterBinders.add((arg, info) -> info.setDownloadTarget(arg));
+            }
+
+            if (parameterBinders.size() == 1) {
+                binders[i] = parameterBinders.get(0);
+            } else if (parameterBinders.size() > 1) {
+                ArgumentBinder[] composite = parameterBinders.toArray(new ArgumentBinder[0]);
+                binders[i] = (arg, info) -> {
+                    for (ArgumentBinder binder : composite) {
+                        binder.bind(arg, info);
+                    }
+                };
             }
         }
+        return binders;
     }
 
     /**
@@ -205,26 +383,60 @@ public class MetaInfoUtil {
         }
     }
 
-    private static void extractRequestContentType(MethodInfo methodInfo, Object a) {
-        String[] produces = null;
+    /**
+     * consumes 是请求体的格式, produces 是期望的响应格式;
+     * 只声明 produces 时沿用以前的做法, 同时把它当作请求体的格式
+     */
+    private static void extractRequestContentType(MethodInfo methodInfo, Annotation a) {
+        String consumes = firstValue(a, true);
+        String produces = firstValue(a, false);
+        if (Objects.nonNull(consumes)) {
+            methodInfo.setReqeustContentType(consumes);
+        } else if (Objects.nonNull(produces)) {
+            methodInfo.setReqeustContentType(produces);
+        }
+        methodInfo.setAccept(produces);
+    }
+
+    private static String firstValue(Method method, boolean consumes) {
+        for (Annotation annotation : method.getAnnotations()) {
+            String value = firstValue(annotation, consumes);
+            if (Objects.nonNull(value)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 映射注解的第一个 consumes 或 produces, 没有时返回 null
+     */
+    private static String firstValue(Annotation a, boolean consumes) {
+        String[] values = null;
         if (a instanceof GetMapping) {
             GetMapping m = (GetMapping) a;
-            produces = m.produces();
+            values = consumes ? m.consumes() : m.produces();
         }
         if (a instanceof PutMapping) {
             PutMapping m = (PutMapping) a;
-            produces = m.produces();
+            values = consumes ? m.consumes() : m.produces();
         }
         if (a instanceof PostMapping) {
             PostMapping m = (PostMapping) a;
-            produces = m.produces();
+            values = consumes ? m.consumes() : m.produces();
         }
         if (a instanceof DeleteMapping) {
             DeleteMapping m = (DeleteMapping) a;
-            produces = m.produces();
-        }
-        if (Objects.nonNull(produces) && produces.length > 0) {
-            methodInfo.setReqeustContentType(produces[0]);
+            values = consumes ? m.consumes() : m.produces();
         }
+        return Objects.nonNull(values) && values.length > 0 ? values[0] : null;
+    }
+
+    /**
+     * @return 被代理的接口上 {@link ApiServer#mediaType()} 声明的格式, 没有时返回 null; 继承来的方法同样以被代理的接口为准
+     */
+    private static String interfaceMediaType(Class<?> type) {
+        ApiServer anno = type.getAnnotation(ApiServer.class);
+        return Objects.isNull(anno) || anno.mediaType().isEmpty() ? null : anno.mediaType();
     }
 }
@@ -0,0 +1,81 @@
+package cn.pinming.util;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * {@link cn.pinming.annotation.PlainRequestBody} 的原始字节请求体, 不经过编码器也不复制内容
+ * <p>
+ * byte[] 和 ByteBuffer 直接包装成 DataBuffer; 文件(Path、File 以及 isFile() 的 Resource)由
+ * ResourceHttpMessageWriter 通过 reactor netty 的 sendFile 发送, 即 netty 的 FileRegion, 内容不经过用户态
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/02 10:30
+ */
+public final class PlainBodies {
+
+    private static final DataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+    private PlainBodies() {
+    }
+
+    /**
+     * Mono/Flux 的元素是否按原始字节发送
+     */
+    public static boolean isRawElement(Type elementType) {
+        return elementType == DataBuffer.class || elementType == byte[].class || elementType == ByteBuffer.class;
+    }
+
+    /**
+     * 参数本身是否按原始字节发送
+     */
+    public static boolean isRawValue(Class<?> type) {
+        return type == byte[].class || ByteBuffer.class.isAssignableFrom(type) || Resource.class.isAssignableFrom(type)
+                || Path.class.isAssignableFrom(type) || File.class.isAssignableFrom(type);
+    }
+
+    public static BodyInserter<?, ReactiveHttpOutputMessage> fromValue(Object value) {
+        if (value instanceof Resource) {
+            return BodyInserters.fromResource((Resource) value);
+        }
+        if (value instanceof Path) {
+            return BodyInserters.fromResource(new FileSystemResource((Path) value));
+        }
+        if (value instanceof File) {
+            return BodyInserters.fromResource(new FileSystemResource((File) value));
+        }
+        // 每次订阅(包括重试)重新包装, 不受上一次写出时读位置变化的影响
+        return BodyInserters.fromDataBuffers(Mono.fromSupplier(() -> toDataBuffer(value)));
+    }
+
+    public static BodyInserter<?, ReactiveHttpOutputMessage> fromPublisher(Publisher<?> publisher) {
+        return BodyInserters.fromDataBuffers(Flux.from(publisher).map(PlainBodies::toDataBuffer));
+    }
+
+    private static DataBuffer toDataBuffer(Object element) {
+        if (element instanceof DataBuffer) {
+            return (DataBuffer) element;
+        }
+        if (element instanceof byte[]) {
+            return BUFFER_FACTORY.wrap((byte[]) element);
+        }
+        if (element instanceof ByteBuffer) {
+            return BUFFER_FACTORY.wrap(((ByteBuffer) element).duplicate());
+        }
+        throw new IllegalArgumentException("不支持的原始请求体类型 " + element.getClass().getName());
+    }
+}
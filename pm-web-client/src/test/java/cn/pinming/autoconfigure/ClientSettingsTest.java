@@ -0,0 +1,125 @@
+package cn.pinming.autoconfigure;
+
+import cn.pinming.annotation.Timeout;
+import cn.pinming.exception.PmWebClientException;
+import org.junit.Test;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/21 9:30
+ */
+public class ClientSettingsTest {
+
+    @Timeout(1000)
+    interface ReportApi {
+
+        Mono<String> list();
+
+        @Timeout(200)
+        Mono<String> get();
+
+        @Timeout(200)
+        Mono<String> export();
+
+        Mono<String> export(String format);
+    }
+
+    @Test
+    public void globalSettingsAreInherited() throws Exception {
+        PmWebClientProperties properties = new PmWebClientProperties();
+        properties.setReadTimeoutSeconds(3);
+
+        ClientSettings settings = ClientSettings.of(properties, "ReportApi");
+
+        assertThat(settings.getReadTimeout()).isEqualTo(Duration.ofSeconds(3));
+        assertThat(settings.getMaxConnections()).isEqualTo(properties.getMaxConnections());
+        assertThat(settings.isCustomPool()).isFalse();
+        assertThat(settings.responseTimeout(ReportApi.class.getMethod("get"))).isEqualTo(Duration.ofMillis(200));
+        assertThat(settings.responseTimeout(ReportApi.class.getMethod("list"))).isEqualTo(Duration.ofMillis(1000));
+    }
+
+    @Test
+    public void moreSpecificSettingsWin() throws Exception {
+        PmWebClientProperties properties = new PmWebClientProperties();
+        properties.setResponseTimeout(Duration.ofMillis(500));
+        PmWebClientProperties.ClientProperties client = new PmWebClientProperties.ClientProperties();
+        client.setReadTimeout(Duration.ofSeconds(60));
+        client.setResponseTimeout(Duration.ofSeconds(30));
+        client.setMaxConnections(10);
+        client.setMaxInMemorySize(DataSize.ofMegabytes(50));
+        PmWebClientProperties.MethodProperties export = new PmWebClientProperties.MethodProperties();
+        export.setResponseTimeout(Duration.ofSeconds(60));
+        client.getMethods().put("export", export);
+        properties.getClients().put("ReportApi", client);
+
+        ClientSettings settings = ClientSettings.of(properties, "ReportApi");
+
+        assertThat(settings.getReadTimeout()).isEqualTo(Duration.ofSeconds(60));
+        assertThat(settings.getMaxConnections()).isEqualTo(10);
+        assertThat(settings.isCustomPool()).isTrue();
+        assertThat(settings.getMaxInMemorySize()).isEqualTo(50 * 1024 * 1024);
+        assertThat(settings.responseTimeout(ReportApi.class.getMethod("export"))).isEqualTo(Duration.ofSeconds(60));
+        assertThat(settings.responseTimeout(ReportApi.class.getMethod("get"))).isEqualTo(Duration.ofMillis(200));
+        assertThat(settings.responseTimeout(ReportApi.class.getMethod("list"))).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void methodCompressionOverridesClient() {
+        PmWebClientProperties properties = new PmWebClientProperties();
+        PmWebClientProperties.ClientProperties client = new PmWebClientProperties.ClientProperties();
+        PmWebClientProperties.MethodProperties export = new PmWebClientProperties.MethodProperties();
+        PmWebClientProperties.CompressionProperties compression = new PmWebClientProperties.CompressionProperties();
+        compression.setRequest(true);
+        export.setCompression(compression);
+        client.getMethods().put("export", export);
+        properties.getClients().put("ReportApi", client);
+
+        ClientSettings settings = ClientSettings.of(properties, "ReportApi");
+
+        assertThat(settings.isCompressionUsed()).isTrue();
+        assertThat(settings.compression("export").isRequest()).isTrue();
+        assertThat(settings.compression("list").isRequest()).isFalse();
+        assertThat(ClientSettings.of(properties, "UserApi").isCompressionUsed()).isFalse();
+    }
+
+    @Test
+    public void clientAcquireTimeoutOverridesGlobalMillis() {
+        PmWebClientProperties properties = new PmWebClientProperties();
+        properties.setAcquireTimeout(3000);
+        assertThat(ClientSettings.of(properties, "ReportApi").getAcquireTimeout()).isEqualTo(Duration.ofSeconds(3));
+
+        PmWebClientProperties.ClientProperties client = new PmWebClientProperties.ClientProperties();
+        client.setAcquireTimeout(Duration.ofMillis(500));
+        properties.getClients().put("ReportApi", client);
+
+        ClientSettings settings = ClientSettings.of(properties, "ReportApi");
+
+        assertThat(settings.getAcquireTimeout()).isEqualTo(Duration.ofMillis(500));
+        assertThat(settings.isCustomPool()).isTrue();
+    }
+
+    @Test
+    public void methodSettingsForOverloadedNamesAreRejected() {
+        PmWebClientProperties properties = new PmWebClientProperties();
+        PmWebClientProperties.ClientProperties client = new PmWebClientProperties.ClientProperties();
+        client.getMethods().put("get", new PmWebClientProperties.MethodProperties());
+        properties.getClients().put("ReportApi", client);
+        ClientSettings settings = ClientSettings.of(properties, "ReportApi");
+        settings.checkMethodNames(Arrays.asList(ReportApi.class.getMethods()));
+
+        client.getMethods().put("export", new PmWebClientProperties.MethodProperties());
+        ClientSettings overloaded = ClientSettings.of(properties, "ReportApi");
+
+        assertThatThrownBy(() -> overloaded.checkMethodNames(Arrays.asList(ReportApi.class.getMethods())))
+                .isInstanceOf(PmWebClientException.class)
+                .hasMessageContaining("export");
+    }
+}
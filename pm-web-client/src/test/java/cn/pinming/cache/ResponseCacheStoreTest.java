@@ -0,0 +1,108 @@
+package cn.pinming.cache;
+
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.invoker.RequestKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 15:00
+ */
+public class ResponseCacheStoreTest {
+
+    private final Counter evictions = new SimpleMeterRegistry().counter("evictions");
+
+    private static RequestKey key(Object id) {
+        return RequestKey.of(MethodInfo.builder().params(Collections.singletonMap("id", id)).build());
+    }
+
+    private static CachedResponse response(Object value) {
+        return new CachedResponse(value, null, System.nanoTime() + TimeUnit.MINUTES.toNanos(1));
+    }
+
+    @Test
+    public void referencedEntriesGetASecondChance() {
+        ResponseCacheStore store = new ResponseCacheStore(3, evictions);
+        store.put(key(1), response(1));
+        store.put(key(2), response(2));
+        store.put(key(3), response(3));
+        store.get(key(1));
+        store.get(key(3));
+
+        store.put(key(4), response(4));
+
+        assertThat(store.get(key(2))).isNull();
+        assertThat(store.get(key(1)).getValue()).isEqualTo(1);
+        assertThat(store.get(key(3)).getValue()).isEqualTo(3);
+        assertThat(store.get(key(4)).getValue()).isEqualTo(4);
+        assertThat(evictions.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void replacingAnEntryKeepsOneSlot() {
+        ResponseCacheStore store = new ResponseCacheStore(2, evictions);
+        store.put(key(1), response("old"));
+        store.put(key(1), response("new"));
+        store.put(key(2), response(2));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.get(key(1)).getValue()).isEqualTo("new");
+        assertThat(evictions.count()).isZero();
+    }
+
+    @Test
+    public void removedEntriesAreSkippedWhenEvicting() {
+        ResponseCacheStore store = new ResponseCacheStore(2, evictions);
+        store.put(key(1), response(1));
+        store.put(key(2), response(2));
+        store.remove(key(1));
+        store.put(key(3), response(3));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.get(key(2)).getValue()).isEqualTo(2);
+        assertThat(evictions.count()).isZero();
+
+        store.put(key(4), response(4));
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(evictions.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void concurrentWritesStayWithinTheBound() throws Exception {
+        ResponseCacheStore store = new ResponseCacheStore(100, evictions);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        store.put(key(thread + "-" + i), response(i));
+                        // 一部分结果在淘汰前被访问过
+                        store.get(key(thread + "-" + (i - 50)));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(store.size()).isEqualTo(100);
+        assertThat(evictions.count()).isEqualTo(40_000 - 100);
+    }
+}
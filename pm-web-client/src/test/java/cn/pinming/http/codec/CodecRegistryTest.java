@@ -0,0 +1,55 @@
+package cn.pinming.http.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/03 10:00
+ */
+public class CodecRegistryTest {
+
+    private static final ResolvableType MAP_TYPE = ResolvableType.forClass(Map.class);
+
+    @Test
+    public void cborRoundTrip() {
+        CachedObjectMapper mapper = new CachedObjectMapper(Jackson2ObjectMapperBuilder.cbor().build());
+        CborEncoder encoder = new CborEncoder(mapper);
+        CborDecoder decoder = new CborDecoder(mapper, 256 * 1024);
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+        Flux<DataBuffer> single = encoder.encode(Mono.just(Collections.singletonMap("id", 1)), bufferFactory,
+                MAP_TYPE, CodecRegistry.APPLICATION_CBOR, Collections.emptyMap());
+        StepVerifier.create(decoder.decodeToMono(single, MAP_TYPE, CodecRegistry.APPLICATION_CBOR, Collections.emptyMap()))
+                .expectNext(Collections.singletonMap("id", 1))
+                .verifyComplete();
+
+        // Flux 编码成一个数组, 解码时再拆开
+        Flux<DataBuffer> array = encoder.encode(Flux.just(Collections.singletonMap("id", 1), Collections.singletonMap("id", 2)),
+                bufferFactory, MAP_TYPE, CodecRegistry.APPLICATION_CBOR, Collections.emptyMap());
+        StepVerifier.create(decoder.decode(array, MAP_TYPE, CodecRegistry.APPLICATION_CBOR, Collections.emptyMap()))
+                .expectNext(Collections.singletonMap("id", 1))
+                .expectNext(Collections.singletonMap("id", 2))
+                .verifyComplete();
+    }
+
+    @Test
+    public void cachesReadersPerType() {
+        CachedObjectMapper mapper = new CachedObjectMapper(new ObjectMapper());
+
+        assertThat(mapper.reader(Map.class)).isSameAs(mapper.reader(Map.class));
+        assertThat(mapper.writer(Map.class)).isSameAs(mapper.writer(Map.class));
+    }
+}
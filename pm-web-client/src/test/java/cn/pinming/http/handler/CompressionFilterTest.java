@@ -0,0 +1,166 @@
+package cn.pinming.http.handler;
+
+import cn.pinming.autoconfigure.ClientSettings;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 15:00
+ */
+public class CompressionFilterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static final int MIN_SIZE = 2048;
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private static CompressionFilter filter(boolean response, boolean request) {
+        PmWebClientProperties.CompressionProperties compression = new PmWebClientProperties.CompressionProperties();
+        compression.setResponse(response);
+        compression.setRequest(request);
+        PmWebClientProperties properties = new PmWebClientProperties();
+        properties.setCompression(compression);
+        return new CompressionFilter(ClientSettings.of(properties, "ReportApi"));
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+
+    private DataBuffer buffer(byte[] content) {
+        return bufferFactory.wrap(content);
+    }
+
+    private static ClientRequest.Builder request(Publisher<DataBuffer> body) {
+        return ClientRequest.create(HttpMethod.POST, URI.create("http://localhost/upload"))
+                .attribute(RequestAttributes.METHOD_NAME, "upload")
+                .body((outputMessage, context) -> outputMessage.writeWith(body));
+    }
+
+    /**
+     * 经过过滤器后把请求写到 mock 请求上, 返回实际发出的请求
+     */
+    private static MockClientHttpRequest send(CompressionFilter filter, ClientRequest request) {
+        MockClientHttpRequest sent = new MockClientHttpRequest(request.method(), request.url());
+        filter.filter(request, filtered -> filtered.writeTo(sent, ExchangeStrategies.withDefaults()).then(Mono.empty()))
+                .block(TIMEOUT);
+        return sent;
+    }
+
+    private static byte[] body(MockClientHttpRequest sent) {
+        DataBuffer joined = DataBufferUtils.join(sent.getBody()).block(TIMEOUT);
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    @Test
+    public void acceptEncodingFollowsTheResponseOption() {
+        MockClientHttpRequest decompressing = send(filter(true, false), request(Mono.empty()).build());
+        assertThat(decompressing.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING)).isEqualTo(CompressionFilter.ACCEPT_ENCODING);
+
+        MockClientHttpRequest plain = send(filter(false, false), request(Mono.empty()).build());
+        assertThat(plain.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING)).isEqualTo("identity");
+    }
+
+    @Test
+    public void callerSuppliedAcceptEncodingIsKept() {
+        ClientRequest request = request(Mono.empty()).header(HttpHeaders.ACCEPT_ENCODING, "br").build();
+
+        MockClientHttpRequest sent = send(filter(true, false), request);
+
+        assertThat(sent.getHeaders().get(HttpHeaders.ACCEPT_ENCODING)).containsExactly("br");
+    }
+
+    @Test
+    public void bodiesBelowTheThresholdAreSentAsIs() {
+        byte[] content = content(MIN_SIZE - 1);
+
+        MockClientHttpRequest sent = send(filter(false, true), request(Mono.just(buffer(content))).build());
+
+        assertThat(sent.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(body(sent)).isEqualTo(content);
+    }
+
+    @Test
+    public void largeBodiesAreGzippedWithMatchingHeaders() throws IOException {
+        byte[] content = content(MIN_SIZE * 4);
+
+        MockClientHttpRequest sent = send(filter(false, true), request(Mono.just(buffer(content))).build());
+
+        byte[] compressed = body(sent);
+        assertThat(sent.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(sent.getHeaders().getContentLength()).isEqualTo(compressed.length);
+        assertThat(compressed.length).isLessThan(content.length);
+        assertThat(gunzip(compressed)).isEqualTo(content);
+    }
+
+    @Test
+    public void alreadyEncodedBodiesAreNotCompressedAgain() {
+        byte[] content = content(MIN_SIZE * 4);
+        ClientRequest request = request(Mono.just(buffer(content))).header(HttpHeaders.CONTENT_ENCODING, "deflate").build();
+
+        MockClientHttpRequest sent = send(filter(false, true), request);
+
+        assertThat(sent.getHeaders().get(HttpHeaders.CONTENT_ENCODING)).containsExactly("deflate");
+        assertThat(body(sent)).isEqualTo(content);
+    }
+
+    @Test
+    public void rawBodiesAreNotCompressed() {
+        byte[] content = content(MIN_SIZE * 4);
+        ClientRequest request = request(Mono.just(buffer(content))).attribute(RequestAttributes.RAW_BODY, Boolean.TRUE).build();
+
+        MockClientHttpRequest sent = send(filter(false, true), request);
+
+        assertThat(sent.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(body(sent)).isEqualTo(content);
+    }
+
+    @Test
+    public void multiBufferBodiesPassThrough() {
+        byte[] first = content(MIN_SIZE * 2);
+        byte[] second = content(MIN_SIZE * 3);
+
+        MockClientHttpRequest sent = send(filter(false, true), request(Flux.just(buffer(first), buffer(second))).build());
+
+        byte[] expected = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, expected, first.length, second.length);
+        assertThat(sent.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(body(sent)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,52 @@
+package cn.pinming.http.handler;
+
+import cn.pinming.http.codec.CodecRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/01 15:10
+ */
+public class JsonDecoderTest {
+
+    private static final ResolvableType MAP_TYPE = ResolvableType.forClass(Map.class);
+
+    private static DataBuffer buffer(String content) {
+        return new DefaultDataBufferFactory().wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void decodesArrayElementsAsTheyArrive() {
+        // 数组还没有结束时已经能拿到第一个元素
+        Flux<DataBuffer> body = Flux.concat(Flux.just(buffer("[{\"id\":1},{\"i"), buffer("d\":2},")), Flux.never());
+
+        StepVerifier.create(CodecRegistry.jsonDecoder(new ObjectMapper())
+                .decode(body, MAP_TYPE, MediaType.APPLICATION_JSON, Collections.emptyMap()))
+                .expectNext(Collections.singletonMap("id", 1))
+                .expectNext(Collections.singletonMap("id", 2))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void decodesNdjson() {
+        Flux<DataBuffer> body = Flux.just(buffer("{\"id\":1}\n{\"id\""), buffer(":2}\n"));
+
+        StepVerifier.create(CodecRegistry.jsonDecoder(new ObjectMapper())
+                .decode(body, MAP_TYPE, CodecRegistry.APPLICATION_NDJSON, Collections.emptyMap()))
+                .expectNext(Collections.singletonMap("id", 1))
+                .expectNext(Collections.singletonMap("id", 2))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,92 @@
+package cn.pinming.interceptor;
+
+import cn.pinming.http.handler.RequestInfo;
+import org.junit.Test;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/20 10:10
+ */
+public class InterceptorChainTest {
+
+    private final ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users")).build();
+
+    @Order(1)
+    static class HeaderInterceptor implements ReactiveInterceptor {
+        @Override
+        public Mono<ClientRequest> applyPre(ClientRequest clientRequest) {
+            return Mono.just(ClientRequest.from(clientRequest).header("token", "t").build());
+        }
+    }
+
+    @Order(2)
+    static class RejectInterceptor implements Interceptor {
+        @Override
+        public boolean applyPre(ClientRequest clientRequest) {
+            return clientRequest.headers().containsKey("token");
+        }
+
+        @Override
+        public void applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+        }
+
+        @Override
+        public void applyError(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+        }
+    }
+
+    @Test
+    public void preHooksRunInOrderAndCanRewriteRequest() {
+        InterceptorChain chain = new InterceptorChain(Collections.singletonList(new RejectInterceptor()),
+                Collections.singletonList(new HeaderInterceptor()), false, Schedulers.immediate());
+
+        StepVerifier.create(chain.applyPre(request))
+                .assertNext(r -> assertThat(r.headers().getFirst("token")).isEqualTo("t"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void rejectedRequestIsEmpty() {
+        InterceptorChain chain = new InterceptorChain(Collections.singletonList(new RejectInterceptor()));
+
+        StepVerifier.create(chain.applyPre(request)).verifyComplete();
+    }
+
+    @Test
+    public void failingPostHookDoesNotFailRequest() {
+        List<String> called = new ArrayList<>();
+        ReactiveInterceptor failing = new ReactiveInterceptor() {
+            @Override
+            public Mono<Void> applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+                return Mono.error(new IllegalStateException("report failed"));
+            }
+        };
+        ReactiveInterceptor recording = new ReactiveInterceptor() {
+            @Override
+            public Mono<Void> applyPost(ClientRequest clientRequest, ClientResponse clientResponse, RequestInfo requestInfo) {
+                return Mono.fromRunnable(() -> called.add("post"));
+            }
+        };
+        InterceptorChain chain = new InterceptorChain(null, Arrays.asList(failing, recording), false, Schedulers.immediate());
+
+        StepVerifier.create(chain.applyPost(request, ClientResponse.create(HttpStatus.OK).build(), new RequestInfo()))
+                .verifyComplete();
+        assertThat(called).containsExactly("post");
+    }
+}
@@ -0,0 +1,133 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.Batchable;
+import cn.pinming.bean.MethodInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 10:00
+ */
+public class BatchingInvokerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    interface UserApi {
+
+        @Batchable(bulkMethod = "getUsersByIds", keyProperty = "id", window = 50)
+        Mono<String> getUserById(String id);
+
+        @Batchable(bulkMethod = "getUsersByIds", keyProperty = "id", maxBatchSize = 2, window = 60_000)
+        Mono<String> getUserByIdSmallBatch(String id);
+    }
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final List<List<Object>> bulkCalls = new CopyOnWriteArrayList<>();
+
+    private BatchingInvoker invoker(String methodName, Function<List<Object>, Mono<Map<String, Object>>> bulk) throws NoSuchMethodException {
+        Batchable batchable = UserApi.class.getMethod(methodName, String.class).getAnnotation(Batchable.class);
+        return new BatchingInvoker(batchable, "id", keys -> {
+            bulkCalls.add(keys);
+            return bulk.apply(keys);
+        }, registry, "UserApi", methodName);
+    }
+
+    /**
+     * 只返回 key 不是 missing 的结果
+     */
+    private static Mono<Map<String, Object>> lookup(List<Object> keys) {
+        Map<String, Object> results = new HashMap<>();
+        keys.stream().filter(key -> !"missing".equals(key)).forEach(key -> results.put((String) key, "user-" + key));
+        return Mono.just(results);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Mono<Object> call(BatchingInvoker invoker, String id) {
+        MethodInfo methodInfo = MethodInfo.builder().params(Collections.singletonMap("id", id)).build();
+        return (Mono<Object>) invoker.invoke(methodInfo);
+    }
+
+    @Test
+    public void callsInTheWindowAreMergedIntoOneBulkRequest() throws Exception {
+        BatchingInvoker invoker = invoker("getUserById", BatchingInvokerTest::lookup);
+        List<Mono<Object>> results = new ArrayList<>();
+        for (String id : new String[]{"1", "2", "1", "missing"}) {
+            results.add(call(invoker, id).cache());
+        }
+        results.forEach(Mono::subscribe);
+
+        assertThat(results.get(0).block(TIMEOUT)).isEqualTo("user-1");
+        assertThat(results.get(1).block(TIMEOUT)).isEqualTo("user-2");
+        assertThat(results.get(2).block(TIMEOUT)).isEqualTo("user-1");
+        assertThat(results.get(3).block(TIMEOUT)).isNull();
+        assertThat(bulkCalls).containsExactly(Arrays.asList("1", "2", "missing"));
+        assertThat(registry.get("pm.webclient.batch.size").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    public void reachingMaxBatchSizeFlushesWithoutWaitingForTheWindow() throws Exception {
+        BatchingInvoker invoker = invoker("getUserByIdSmallBatch", BatchingInvokerTest::lookup);
+        Mono<Object> first = call(invoker, "1").cache();
+        first.subscribe();
+
+        assertThat(call(invoker, "2").block(TIMEOUT)).isEqualTo("user-2");
+        assertThat(first.block(TIMEOUT)).isEqualTo("user-1");
+        assertThat(bulkCalls).hasSize(1);
+    }
+
+    @Test
+    public void bulkFailureIsPropagatedToEveryCaller() throws Exception {
+        BatchingInvoker invoker = invoker("getUserById", keys -> Mono.error(new IllegalStateException("boom")));
+        Mono<Object> first = call(invoker, "1").cache();
+        first.subscribe(value -> { }, e -> { });
+
+        assertThatThrownBy(() -> call(invoker, "2").block(TIMEOUT)).hasMessage("boom");
+        assertThatThrownBy(() -> first.block(TIMEOUT)).hasMessage("boom");
+        assertThat(bulkCalls).hasSize(1);
+    }
+
+    @Test
+    public void cancelledCallsAreRemovedBeforeTheFlush() throws Exception {
+        BatchingInvoker invoker = invoker("getUserById", BatchingInvokerTest::lookup);
+        Disposable cancelled = call(invoker, "1").subscribe();
+        cancelled.dispose();
+
+        assertThat(call(invoker, "2").block(TIMEOUT)).isEqualTo("user-2");
+        assertThat(bulkCalls).containsExactly(Collections.singletonList("2"));
+    }
+
+    @Test
+    public void cancellingEveryCallerCancelsTheBulkRequest() throws Exception {
+        AtomicBoolean bulkCancelled = new AtomicBoolean();
+        BatchingInvoker invoker = invoker("getUserByIdSmallBatch",
+                keys -> Mono.<Map<String, Object>>never().doOnCancel(() -> bulkCancelled.set(true)));
+        Disposable first = call(invoker, "1").subscribe();
+        Disposable second = call(invoker, "2").subscribe();
+        assertThat(bulkCalls).hasSize(1);
+
+        first.dispose();
+        assertThat(bulkCancelled).isFalse();
+        second.dispose();
+
+        assertThat(bulkCancelled).isTrue();
+    }
+}
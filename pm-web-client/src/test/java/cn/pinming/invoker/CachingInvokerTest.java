@@ -0,0 +1,138 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.ResponseCache;
+import cn.pinming.bean.MethodInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 15:00
+ */
+public class CachingInvokerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    interface UserApi {
+
+        @ResponseCache
+        Mono<String> cached(String id);
+
+        @ResponseCache(ttl = 50)
+        Mono<String> shortLived(String id);
+
+        @ResponseCache(maxEntries = 2)
+        Mono<String> bounded(String id);
+    }
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * 下游收到的请求, 按 id 记录
+     */
+    private final List<Object> requests = new ArrayList<>();
+
+    private String cacheControl;
+
+    private CachingInvoker invoker(String methodName) throws NoSuchMethodException {
+        ResponseCache config = UserApi.class.getMethod(methodName, String.class).getAnnotation(ResponseCache.class);
+        return new CachingInvoker(methodInfo -> Mono.fromCallable(() -> {
+            Object id = methodInfo.getParams().get("id");
+            requests.add(id);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (cacheControl != null) {
+                response.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+            }
+            return response.body((Object) ("user-" + id + "#" + requests.size()));
+        }), config, registry, "UserApi", methodName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object call(CachingInvoker invoker, String id) {
+        MethodInfo methodInfo = MethodInfo.builder().params(Collections.singletonMap("id", id)).build();
+        return ((Mono<Object>) invoker.invoke(methodInfo)).block(TIMEOUT);
+    }
+
+    private double count(String name, String result) {
+        return registry.get(name).tag("result", result).counter().count();
+    }
+
+    @Test
+    public void freshResponseIsServedFromTheCache() throws Exception {
+        CachingInvoker invoker = invoker("cached");
+
+        assertThat(call(invoker, "1")).isEqualTo("user-1#1");
+        assertThat(call(invoker, "1")).isEqualTo("user-1#1");
+        assertThat(call(invoker, "2")).isEqualTo("user-2#2");
+
+        assertThat(requests).containsExactly("1", "2");
+        assertThat(count(CachingInvoker.CACHE + ".requests", "hit")).isEqualTo(1);
+        assertThat(count(CachingInvoker.CACHE + ".requests", "miss")).isEqualTo(2);
+    }
+
+    @Test
+    public void expiredResponseIsFetchedAgain() throws Exception {
+        CachingInvoker invoker = invoker("shortLived");
+
+        assertThat(call(invoker, "1")).isEqualTo("user-1#1");
+        Thread.sleep(100);
+
+        assertThat(call(invoker, "1")).isEqualTo("user-1#2");
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    public void noStoreIsNotCached() throws Exception {
+        CachingInvoker invoker = invoker("cached");
+        cacheControl = "no-cache, no-store";
+
+        call(invoker, "1");
+        call(invoker, "1");
+
+        assertThat(requests).hasSize(2);
+        assertThat(registry.get(CachingInvoker.CACHE + ".size").gauge().value()).isZero();
+    }
+
+    @Test
+    public void maxAgeOverridesTheConfiguredTtl() throws Exception {
+        CachingInvoker invoker = invoker("shortLived");
+        cacheControl = "public, max-age=60";
+
+        call(invoker, "1");
+        Thread.sleep(100);
+        assertThat(call(invoker, "1")).isEqualTo("user-1#1");
+        assertThat(requests).hasSize(1);
+
+        cacheControl = "max-age=0";
+        call(invoker, "2");
+        assertThat(call(invoker, "2")).isEqualTo("user-2#3");
+        assertThat(requests).hasSize(3);
+    }
+
+    @Test
+    public void unusedEntryIsEvictedAtTheSizeBound() throws Exception {
+        CachingInvoker invoker = invoker("bounded");
+        call(invoker, "1");
+        call(invoker, "2");
+        // 访问 1 之后, 淘汰时跳过 1, 淘汰 2
+        call(invoker, "1");
+        call(invoker, "3");
+
+        assertThat(registry.get(CachingInvoker.CACHE + ".evictions").counter().count()).isEqualTo(1);
+        assertThat(registry.get(CachingInvoker.CACHE + ".size").gauge().value()).isEqualTo(2);
+        call(invoker, "1");
+        call(invoker, "2");
+        assertThat(requests).containsExactly("1", "2", "3", "2");
+    }
+}
@@ -0,0 +1,108 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.Hedge;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.interfaces.Invoker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 9:30
+ */
+public class HedgingInvokerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    interface HedgedApi {
+
+        @Hedge(delay = 50, budget = 1)
+        Mono<String> hedged();
+
+        @Hedge(delay = 20)
+        Mono<String> budgeted();
+    }
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final List<Mono<String>> responses = new ArrayList<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private HedgingInvoker invoker(String methodName) throws NoSuchMethodException {
+        Hedge hedge = HedgedApi.class.getMethod(methodName).getAnnotation(Hedge.class);
+        Invoker delegate = methodInfo -> responses.get(calls.getAndIncrement());
+        return new HedgingInvoker(delegate, hedge, registry, "test", methodName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object call(HedgingInvoker invoker) {
+        return ((Mono<Object>) invoker.invoke(new MethodInfo())).block(TIMEOUT);
+    }
+
+    private double count(String name) {
+        return registry.get(name).counter().count();
+    }
+
+    @Test
+    public void primarySucceedsBeforeTheDelay() throws Exception {
+        HedgingInvoker invoker = invoker("hedged");
+        responses.add(Mono.just("primary"));
+
+        assertThat(call(invoker)).isEqualTo("primary");
+
+        Thread.sleep(100);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(count("pm.webclient.hedge.requests")).isZero();
+    }
+
+    @Test
+    public void hedgeWinsAndTheLoserIsCancelled() throws Exception {
+        HedgingInvoker invoker = invoker("hedged");
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        responses.add(Mono.<String>never().doOnCancel(() -> primaryCancelled.set(true)));
+        responses.add(Mono.just("hedge"));
+
+        assertThat(call(invoker)).isEqualTo("hedge");
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(primaryCancelled).isTrue();
+        assertThat(count("pm.webclient.hedge.requests")).isEqualTo(1);
+        assertThat(count("pm.webclient.hedge.wins")).isEqualTo(1);
+    }
+
+    @Test
+    public void primaryFailingBeforeTheDelaySendsNoHedge() throws Exception {
+        HedgingInvoker invoker = invoker("hedged");
+        responses.add(Mono.error(new IllegalStateException("boom")));
+
+        assertThatThrownBy(() -> call(invoker)).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+
+        Thread.sleep(100);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(count("pm.webclient.hedge.requests")).isZero();
+    }
+
+    @Test
+    public void exhaustedBudgetSendsNoHedge() throws Exception {
+        HedgingInvoker invoker = invoker("budgeted");
+        // 预算是请求数的 0.1 倍, 第一个请求还没有可用的对冲额度
+        responses.add(Mono.delay(Duration.ofMillis(100)).thenReturn("slow"));
+
+        assertThat(call(invoker)).isEqualTo("slow");
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(count("pm.webclient.hedge.requests")).isZero();
+    }
+}
@@ -0,0 +1,153 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.DownloadTo;
+import cn.pinming.annotation.PlainRequestBody;
+import cn.pinming.annotation.Retry;
+import cn.pinming.autoconfigure.ClientSettings;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.bean.ServerInfo;
+import cn.pinming.http.resources.PmWebClientResources;
+import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.interfaces.HttpHandler;
+import cn.pinming.interfaces.Invoker;
+import cn.pinming.loadbalancer.LoadBalancer;
+import cn.pinming.metrics.PmWebClientMetrics;
+import cn.pinming.resilience.RetryBudget;
+import cn.pinming.util.MetaInfoUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 15:00
+ */
+public class InvokerFactoryTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    interface ExportApi {
+
+        @Retry(backoff = 1, maxBackoff = 1)
+        @GetMapping("/export")
+        Mono<Long> toFile(@DownloadTo Path target);
+
+        @Retry(backoff = 1, maxBackoff = 1)
+        @GetMapping("/export")
+        Mono<Long> toChannel(@DownloadTo WritableByteChannel target);
+    }
+
+    interface ForwardApi {
+
+        @Retry(backoff = 1, maxBackoff = 1, nonIdempotent = true)
+        @PostMapping("/forward")
+        Mono<Void> bytes(@PlainRequestBody(contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE) byte[] body);
+
+        @Retry(backoff = 1, maxBackoff = 1, nonIdempotent = true)
+        @PostMapping("/forward")
+        Mono<Void> stream(@PlainRequestBody(contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE) Flux<DataBuffer> body);
+    }
+
+    private final PmWebClientProperties properties = new PmWebClientProperties();
+
+    private final InvokerFactory factory = new InvokerFactory(new PmWebClientMetrics(new SimpleMeterRegistry(), properties.getMetrics()),
+            new RetryBudget(properties.getRetryBudget()));
+
+    private final FailingHandler handler = new FailingHandler();
+
+    private Object call(Class<?> type, String methodName, Class<?> parameterType, Object arg) throws NoSuchMethodException {
+        InvocationPlan plan = MetaInfoUtil.compileInvocationPlan(type, type.getMethod(methodName, parameterType));
+        ServerInfo serverInfo = ServerInfo.builder().url("http://localhost").clientInterfaceName(type.getSimpleName()).build();
+        Invoker invoker = factory.create(serverInfo, ClientSettings.of(properties, type.getSimpleName()), plan, handler);
+        return ((Mono<?>) invoker.invoke(plan.bind(new Object[]{arg}))).block(TIMEOUT);
+    }
+
+    @Test
+    public void downloadsToAFileAreRetried() {
+        assertThatThrownBy(() -> call(ExportApi.class, "toFile", Path.class, Paths.get("export.csv"))).hasStackTraceContaining("connection reset");
+        assertThat(handler.calls).hasValue(3);
+    }
+
+    @Test
+    public void downloadsToAChannelAreSentOnce() {
+        assertThatThrownBy(() -> call(ExportApi.class, "toChannel", WritableByteChannel.class, null)).hasStackTraceContaining("connection reset");
+        assertThat(handler.calls).hasValue(1);
+    }
+
+    @Test
+    public void byteArrayBodiesAreRetried() {
+        assertThatThrownBy(() -> call(ForwardApi.class, "bytes", byte[].class, new byte[]{1, 2, 3})).hasStackTraceContaining("connection reset");
+        assertThat(handler.calls).hasValue(3);
+    }
+
+    @Test
+    public void publisherBodiesAreSentOnce() {
+        Flux<DataBuffer> body = Flux.just(new DefaultDataBufferFactory().wrap(new byte[]{1, 2, 3}));
+        assertThatThrownBy(() -> call(ForwardApi.class, "stream", Flux.class, body)).hasStackTraceContaining("connection reset");
+        assertThat(handler.calls).hasValue(1);
+    }
+
+    /**
+     * 每次请求都以连接异常失败的 {@link HttpHandler}
+     */
+    private static class FailingHandler implements HttpHandler {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private <T> Mono<T> fail() {
+            return Mono.defer(() -> {
+                calls.incrementAndGet();
+                return Mono.error(new IOException("connection reset"));
+            });
+        }
+
+        @Override
+        public void init(ServerInfo serverInfo, PmWebClientProperties properties, InterceptorChain interceptorChain, PmWebClientResources resources,
+                         PmWebClientMetrics metrics, LoadBalancer loadBalancer) {
+        }
+
+        @Override
+        public Object invokeRest(MethodInfo methodInfo) {
+            return fail();
+        }
+
+        @Override
+        public Mono<ResponseEntity<Object>> invokeRestForEntity(MethodInfo methodInfo) {
+            return fail();
+        }
+
+        @Override
+        public Object invokeForm(MethodInfo methodInfo) {
+            return fail();
+        }
+
+        @Override
+        public Object invokePlain(MethodInfo methodInfo) {
+            return fail();
+        }
+
+        @Override
+        public Object invokeDownload(MethodInfo methodInfo) {
+            return fail();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cn.pinming.invoker;
+
+import cn.pinming.annotation.RateLimit;
+import cn.pinming.bean.MethodInfo;
+import cn.pinming.exception.CallNotPermittedException;
+import cn.pinming.resilience.RateLimitPolicy;
+import cn.pinming.resilience.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 15:00
+ */
+public class RateLimitInvokerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    interface LimitedApi {
+
+        @RateLimit(permitsPerSecond = 1, burst = 1, maxWait = 2000)
+        Mono<String> delayed();
+
+        @RateLimit(permitsPerSecond = 1, burst = 1)
+        Mono<String> rejected();
+
+        @RateLimit(permitsPerSecond = 1, burst = 1, keyPathVariable = "tenantId")
+        Mono<String> byPathVariable(String tenantId);
+
+        @RateLimit(permitsPerSecond = 1, burst = 1, keyHeader = "X-Tenant")
+        Mono<String> byHeader(String tenantId);
+    }
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private RateLimiter rateLimiter;
+
+    private RateLimitInvoker invoker(String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
+        RateLimit rateLimit = LimitedApi.class.getMethod(methodName, parameterTypes).getAnnotation(RateLimit.class);
+        rateLimiter = new RateLimiter("test", RateLimitPolicy.of(rateLimit, false), registry, Tags.empty());
+        return new RateLimitInvoker(methodInfo -> Mono.fromCallable(() -> "call-" + calls.incrementAndGet()), false, rateLimiter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Mono<Object> invoke(RateLimitInvoker invoker, MethodInfo methodInfo) {
+        return (Mono<Object>) invoker.invoke(methodInfo);
+    }
+
+    private static Object call(RateLimitInvoker invoker, MethodInfo methodInfo) {
+        return invoke(invoker, methodInfo).block(TIMEOUT);
+    }
+
+    private double count(String name) {
+        return registry.get(RateLimiter.RATE_LIMITER + "." + name).counter().count();
+    }
+
+    @Test
+    public void waitsForATokenWithoutBlocking() throws Exception {
+        RateLimitInvoker invoker = invoker("delayed");
+        assertThat(call(invoker, new MethodInfo())).isEqualTo("call-1");
+
+        StepVerifier.withVirtualTime(() -> invoke(invoker, new MethodInfo()))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(500))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("call-2")
+                .verifyComplete();
+        assertThat(count("delayed")).isEqualTo(1);
+    }
+
+    @Test
+    public void rejectsWithoutCallingTheDelegate() throws Exception {
+        RateLimitInvoker invoker = invoker("rejected");
+        assertThat(call(invoker, new MethodInfo())).isEqualTo("call-1");
+
+        assertThatThrownBy(() -> call(invoker, new MethodInfo())).isInstanceOf(CallNotPermittedException.class);
+        assertThat(calls).hasValue(1);
+        assertThat(count("rejected")).isEqualTo(1);
+    }
+
+    @Test
+    public void cancelWhileWaitingReturnsTheToken() throws Exception {
+        RateLimitInvoker invoker = invoker("delayed");
+        call(invoker, new MethodInfo());
+
+        StepVerifier.withVirtualTime(() -> invoke(invoker, new MethodInfo()))
+                .expectSubscription()
+                .thenAwait(Duration.ofMillis(100))
+                .thenCancel()
+                .verify();
+        assertThat(calls).hasValue(1);
+
+        // 被取消的请求没有占用第二个令牌, 下一个请求最多等一个间隔
+        long wait = rateLimiter.reserve(null);
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void eachPathVariableHasItsOwnBucket() throws Exception {
+        RateLimitInvoker invoker = invoker("byPathVariable", String.class);
+
+        assertThat(call(invoker, pathVariable("a"))).isEqualTo("call-1");
+        assertThat(call(invoker, pathVariable("b"))).isEqualTo("call-2");
+        assertThatThrownBy(() -> call(invoker, pathVariable("a"))).isInstanceOf(CallNotPermittedException.class);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    public void eachHeaderValueHasItsOwnBucket() throws Exception {
+        RateLimitInvoker invoker = invoker("byHeader", String.class);
+
+        assertThat(call(invoker, header("a"))).isEqualTo("call-1");
+        assertThat(call(invoker, header("b"))).isEqualTo("call-2");
+        assertThatThrownBy(() -> call(invoker, header("b"))).isInstanceOf(CallNotPermittedException.class);
+        // 没有带请求头的请求共用一个令牌桶
+        assertThat(call(invoker, new MethodInfo())).isEqualTo("call-3");
+        assertThat(calls).hasValue(3);
+    }
+
+    private static MethodInfo pathVariable(String tenantId) {
+        return MethodInfo.builder().params(Collections.singletonMap("tenantId", tenantId)).build();
+    }
+
+    private static MethodInfo header(String tenantId) {
+        return MethodInfo.builder().requestHeaders(Collections.singletonMap("X-Tenant", tenantId)).build();
+    }
+}
@@ -0,0 +1,97 @@
+package cn.pinming.invoker;
+
+import cn.pinming.bean.MethodInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 16:00
+ */
+public class SingleFlightInvokerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AtomicInteger downstreamCalls = new AtomicInteger();
+
+    private SingleFlightInvoker invoker(Supplier<Mono<Object>> response) {
+        return new SingleFlightInvoker(methodInfo -> Mono.defer(() -> {
+            downstreamCalls.incrementAndGet();
+            return response.get();
+        }), registry, "UserApi", "get");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Mono<Object> call(SingleFlightInvoker invoker) {
+        MethodInfo methodInfo = MethodInfo.builder().params(Collections.singletonMap("id", "1")).build();
+        return (Mono<Object>) invoker.invoke(methodInfo);
+    }
+
+    private double coalesced() {
+        return registry.get("pm.webclient.singleflight.coalesced").counter().count();
+    }
+
+    @Test
+    public void concurrentCallsShareOneDownstreamRequest() {
+        SingleFlightInvoker invoker = invoker(() -> Mono.delay(Duration.ofMillis(100)).thenReturn("user"));
+
+        List<Object> results = Flux.range(0, 10)
+                .flatMap(i -> call(invoker))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(results).hasSize(10).containsOnly("user");
+        assertThat(downstreamCalls.get()).isEqualTo(1);
+        assertThat(coalesced()).isEqualTo(9);
+
+        // 完成后移除登记, 下一次调用重新发出请求
+        assertThat(call(invoker).block(TIMEOUT)).isEqualTo("user");
+        assertThat(downstreamCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void failedRequestIsRemoved() {
+        SingleFlightInvoker invoker = invoker(() -> Mono.delay(Duration.ofMillis(50)).then(Mono.error(new IllegalStateException("boom"))));
+        Mono<Object> first = call(invoker);
+        Mono<Object> second = call(invoker);
+
+        assertThatThrownBy(() -> Flux.merge(first, second).blockLast(TIMEOUT)).hasMessage("boom");
+        assertThat(downstreamCalls.get()).isEqualTo(1);
+
+        assertThatThrownBy(() -> call(invoker).block(TIMEOUT)).hasMessage("boom");
+        assertThat(downstreamCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void requestIsCancelledAndRemovedWhenEveryCallerCancels() {
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        SingleFlightInvoker invoker = invoker(() -> Mono.never().doOnCancel(() -> upstreamCancelled.set(true)));
+        Disposable first = call(invoker).subscribe();
+        Disposable second = call(invoker).subscribe();
+        assertThat(downstreamCalls.get()).isEqualTo(1);
+
+        first.dispose();
+        assertThat(upstreamCancelled).isFalse();
+        second.dispose();
+        assertThat(upstreamCancelled).isTrue();
+
+        call(invoker).subscribe().dispose();
+        assertThat(downstreamCalls.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,73 @@
+package cn.pinming.loadbalancer;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/27 9:50
+ */
+public class LoadBalancerTest {
+
+    private static LoadBalancer loadBalancer(LoadBalancerStrategy strategy, String... urls) {
+        PmWebClientProperties.LoadBalancerProperties properties = new PmWebClientProperties.LoadBalancerProperties();
+        properties.setStrategy(strategy);
+        properties.setConsecutiveFailures(2);
+        properties.setEjectionTime(Duration.ofMinutes(1));
+        return new LoadBalancer("UserApi", urls[0], new StaticEndpointProvider(Arrays.asList(urls)), properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void roundRobinVisitsEveryEndpoint() {
+        LoadBalancer loadBalancer = loadBalancer(LoadBalancerStrategy.ROUND_ROBIN, "http://a:8080", "http://b:8080", "http://c:8080");
+
+        Set<String> chosen = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            chosen.add(loadBalancer.choose().getUrl());
+        }
+
+        assertThat(chosen).containsExactlyInAnyOrder("http://a:8080", "http://b:8080", "http://c:8080");
+    }
+
+    @Test
+    public void leastOutstandingAvoidsBusyEndpoint() {
+        LoadBalancer loadBalancer = loadBalancer(LoadBalancerStrategy.LEAST_OUTSTANDING, "http://a:8080", "http://b:8080");
+        Endpoint busy = loadBalancer.getEndpoints().get(0);
+        busy.start();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(loadBalancer.choose().getUrl()).isEqualTo("http://b:8080");
+        }
+    }
+
+    @Test
+    public void failingEndpointIsEjected() {
+        LoadBalancer loadBalancer = loadBalancer(LoadBalancerStrategy.POWER_OF_TWO_CHOICES, "http://a:8080", "http://b:8080");
+        Endpoint failing = loadBalancer.getEndpoints().get(0);
+        long now = System.currentTimeMillis();
+        failing.onFailure(2, 60000, now);
+        assertThat(failing.onFailure(2, 60000, now)).isTrue();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(loadBalancer.choose().getUrl()).isEqualTo("http://b:8080");
+        }
+    }
+
+    @Test
+    public void rewriteKeepsPathAndQuery() {
+        Endpoint endpoint = new Endpoint("http://b:9090/v2");
+
+        URI rewritten = endpoint.rewrite(URI.create("http://a:8080/api/users/1?name=x%20y"), "/api");
+
+        assertThat(rewritten.toString()).isEqualTo("http://b:9090/v2/users/1?name=x%20y");
+    }
+}
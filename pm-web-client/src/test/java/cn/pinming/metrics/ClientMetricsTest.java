@@ -0,0 +1,78 @@
+package cn.pinming.metrics;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.http.handler.RequestAttributes;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 14:00
+ */
+public class ClientMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final ExchangeFilterFunction filter;
+
+    public ClientMetricsTest() {
+        PmWebClientProperties.MetricsProperties settings = new PmWebClientProperties().getMetrics();
+        settings.setJmxEnabled(false);
+        filter = new PmWebClientMetrics(registry, settings).client("UserApi").filter();
+    }
+
+    private static ClientRequest request(String methodName, String uriTemplate) {
+        return ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/1"))
+                .attribute(RequestAttributes.METHOD_NAME, methodName)
+                .attribute(RequestAttributes.URI_TEMPLATE, uriTemplate)
+                .build();
+    }
+
+    private void exchange(ClientRequest request, HttpStatus status) {
+        StepVerifier.create(filter.filter(request, r -> Mono.just(ClientResponse.create(status).build())))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private double errors(String uri, String reason) {
+        return registry.get(PmWebClientMetrics.REQUESTS + ".errors").tag("uri", uri).tag("error", reason).counter().count();
+    }
+
+    @Test
+    public void recordsLatencyAndErrorsPerReason() {
+        ClientRequest request = request("get", "/users/{id}");
+        exchange(request, HttpStatus.OK);
+        exchange(request, HttpStatus.INTERNAL_SERVER_ERROR);
+        exchange(request, HttpStatus.INTERNAL_SERVER_ERROR);
+        StepVerifier.create(filter.filter(request, r -> Mono.error(new IOException("reset"))))
+                .verifyError(IOException.class);
+
+        assertThat(registry.get(PmWebClientMetrics.REQUESTS).tag("method", "get").timer().count()).isEqualTo(4);
+        assertThat(errors("/users/{id}", "500")).isEqualTo(2);
+        assertThat(errors("/users/{id}", "IOException")).isEqualTo(1);
+        assertThat(registry.get(PmWebClientMetrics.REQUESTS + ".active").gauge().value()).isZero();
+    }
+
+    @Test
+    public void overloadsWithDifferentUrisAreRecordedSeparately() {
+        exchange(request("get", "/users/{id}"), HttpStatus.OK);
+        exchange(request("get", "/users/by-name/{name}"), HttpStatus.NOT_FOUND);
+
+        assertThat(registry.get(PmWebClientMetrics.REQUESTS).tag("uri", "/users/{id}").timer().count()).isEqualTo(1);
+        assertThat(registry.get(PmWebClientMetrics.REQUESTS).tag("uri", "/users/by-name/{name}").timer().count()).isEqualTo(1);
+        assertThat(errors("/users/by-name/{name}", "404")).isEqualTo(1);
+    }
+}
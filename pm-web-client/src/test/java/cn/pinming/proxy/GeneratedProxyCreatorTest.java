@@ -0,0 +1,72 @@
+package cn.pinming.proxy;
+
+import cn.pinming.annotation.ApiServer;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.http.codec.CodecRegistry;
+import cn.pinming.http.resources.PmWebClientResources;
+import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.metrics.PmWebClientMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/08 10:00
+ */
+public class GeneratedProxyCreatorTest {
+
+    @ApiServer("http://127.0.0.1:1")
+    interface GeneratedApi {
+        @GetMapping("/users/{id}")
+        Mono<String> get(@PathVariable("id") String id);
+    }
+
+    @ApiServer("http://127.0.0.1:1")
+    interface DynamicApi {
+        @GetMapping("/users/{id}")
+        Mono<String> get(@PathVariable("id") String id);
+    }
+
+    private PmWebClientMetrics metrics;
+
+    private PmWebClientResources resources;
+
+    private GeneratedProxyCreator creator;
+
+    @Before
+    public void setUp() {
+        PmWebClientProperties properties = new PmWebClientProperties();
+        properties.getMetrics().setJmxEnabled(false);
+        metrics = new PmWebClientMetrics(new SimpleMeterRegistry(), properties.getMetrics());
+        resources = new PmWebClientResources(properties, metrics, new CodecRegistry());
+        creator = new GeneratedProxyCreator(properties, new DefaultListableBeanFactory(),
+                new InterceptorChain(Collections.emptyList()), resources, metrics);
+    }
+
+    @After
+    public void tearDown() {
+        resources.destroy();
+    }
+
+    @Test
+    public void generatedClassNameFlattensNestedInterfaces() {
+        assertThat(GeneratedProxyCreator.generatedClassName(GeneratedApi.class))
+                .isEqualTo("cn.pinming.proxy.GeneratedProxyCreatorTest_GeneratedApi_PmWebClient");
+    }
+
+    @Test
+    public void fallsBackToDynamicProxy() {
+        assertThat(Proxy.isProxyClass(creator.createProxy(DynamicApi.class).getClass())).isTrue();
+    }
+}
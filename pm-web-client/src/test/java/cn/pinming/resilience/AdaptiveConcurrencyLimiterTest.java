@@ -0,0 +1,128 @@
+package cn.pinming.resilience;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 10:10
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final int WINDOW_SIZE = 10;
+
+    private static AdaptiveConcurrencyLimiter limiter(LimitAlgorithm algorithm) {
+        PmWebClientProperties.AdaptiveLimitProperties config = new PmWebClientProperties.AdaptiveLimitProperties();
+        config.setAlgorithm(algorithm);
+        config.setInitialLimit(10);
+        config.setMaxLimit(50);
+        config.setWindowSize(WINDOW_SIZE);
+        return new AdaptiveConcurrencyLimiter("test", config, new SimpleMeterRegistry(), Tags.empty());
+    }
+
+    /**
+     * 每次都占满当前上限后完成一个请求, 直到攒满一个窗口
+     */
+    private static void saturate(AdaptiveConcurrencyLimiter limiter, long millis) {
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            while (limiter.tryAcquire()) {
+                // 占满
+            }
+            limiter.onResult(TimeUnit.MILLISECONDS.toNanos(millis), false);
+        }
+    }
+
+    @Test
+    public void rejectsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(LimitAlgorithm.AIMD);
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.release();
+        assertThat(limiter.getInFlight()).isEqualTo(9);
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void aimdIncreasesWhenSaturatedAndBacksOffOnDrop() {
+        AdaptiveConcurrencyLimiter limiter = limiter(LimitAlgorithm.AIMD);
+        saturate(limiter, 10);
+        assertThat(limiter.getLimit()).isEqualTo(11);
+
+        // 窗口内有一次过载就减小
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.onResult(TimeUnit.MILLISECONDS.toNanos(10), i == 0);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(9);
+    }
+
+    @Test
+    public void limitIsAdjustedOncePerWindow() {
+        AdaptiveConcurrencyLimiter limiter = limiter(LimitAlgorithm.AIMD);
+        for (int i = 0; i < WINDOW_SIZE - 1; i++) {
+            while (limiter.tryAcquire()) {
+                // 占满
+            }
+            limiter.onResult(TimeUnit.MILLISECONDS.toNanos(10), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+
+        limiter.onResult(TimeUnit.MILLISECONDS.toNanos(10), false);
+        assertThat(limiter.getLimit()).isEqualTo(11);
+    }
+
+    @Test
+    public void concurrentResultsReturnEveryPermit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(LimitAlgorithm.GRADIENT);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> callers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                callers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        if (limiter.tryAcquire()) {
+                            limiter.onResult(TimeUnit.MILLISECONDS.toNanos(1 + i % 5), false);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> caller : callers) {
+                caller.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.getLimit()).isBetween(1, 50);
+    }
+
+    @Test
+    public void gradientDecreasesWhenLatencyGrows() {
+        AdaptiveConcurrencyLimiter limiter = limiter(LimitAlgorithm.GRADIENT);
+        for (int i = 0; i < 200; i++) {
+            saturate(limiter, 10);
+        }
+        int steady = limiter.getLimit();
+        assertThat(steady).isGreaterThan(10);
+
+        for (int i = 0; i < 30; i++) {
+            saturate(limiter, 100);
+        }
+        assertThat(limiter.getLimit()).isLessThan(steady);
+    }
+}
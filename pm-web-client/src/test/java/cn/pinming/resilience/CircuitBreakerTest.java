@@ -0,0 +1,114 @@
+package cn.pinming.resilience;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/22 10:20
+ */
+public class CircuitBreakerTest {
+
+    private static CircuitBreaker breaker(Duration waitInOpenState) {
+        PmWebClientProperties.CircuitBreakerProperties config = new PmWebClientProperties.CircuitBreakerProperties();
+        config.setSlidingWindowSize(10);
+        config.setMinimumNumberOfCalls(4);
+        config.setFailureRateThreshold(50);
+        config.setWaitDurationInOpenState(waitInOpenState);
+        config.setPermittedCallsInHalfOpenState(2);
+        return new CircuitBreaker("test", config, new SimpleMeterRegistry(), Tags.empty());
+    }
+
+    private static void call(CircuitBreaker breaker, boolean failed) {
+        long permit = breaker.tryAcquire();
+        assertThat(permit).isNotEqualTo(CircuitBreaker.REJECTED);
+        breaker.onResult(permit, TimeUnit.MILLISECONDS.toNanos(1), failed);
+    }
+
+    @Test
+    public void opensWhenFailureRateExceedsThreshold() {
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        call(breaker, false);
+        call(breaker, true);
+        call(breaker, false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        call(breaker, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    public void halfOpenProbesCloseTheCircuit() {
+        CircuitBreaker breaker = breaker(Duration.ZERO);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        long first = breaker.tryAcquire();
+        long second = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+
+        breaker.onResult(first, 0, false);
+        breaker.onResult(second, 0, false);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void resultsFromBeforeTheStateChangeAreIgnored() {
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        long stale = breaker.tryAcquire();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true);
+        }
+
+        breaker.onResult(stale, 0, false);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void concurrentResultsKeepTheWindowCountsExact() throws Exception {
+        CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> callers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                callers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        call(breaker, false);
+                    }
+                }));
+            }
+            for (Future<?> caller : callers) {
+                caller.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 窗口里只有成功的调用, 再失败 5 次才达到 50%
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        call(breaker, true);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,61 @@
+package cn.pinming.resilience;
+
+import cn.pinming.annotation.Retry;
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.exception.PmWebClientResponseException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/25 9:40
+ */
+public class RetryPolicyTest {
+
+    @Retry(backoff = 100, maxBackoff = 1000, jitter = 0.5)
+    interface Annotated {
+    }
+
+    private final RetryPolicy policy = RetryPolicy.of(Annotated.class.getAnnotation(Retry.class));
+
+    @Test
+    public void retriesConfiguredStatusesAndExceptions() {
+        assertThat(policy.isRetryable(new PmWebClientResponseException("", 503, ""))).isTrue();
+        assertThat(policy.isRetryable(new PmWebClientResponseException("", 400, ""))).isFalse();
+        assertThat(policy.isRetryable(new IllegalStateException(new IOException("connection reset")))).isTrue();
+        assertThat(policy.isRetryable(new IllegalArgumentException())).isFalse();
+    }
+
+    @Test
+    public void backoffGrowsWithJitterAndIsCapped() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.backoff(1)).isBetween(Duration.ofMillis(50), Duration.ofMillis(150));
+            assertThat(policy.backoff(2)).isBetween(Duration.ofMillis(100), Duration.ofMillis(300));
+            assertThat(policy.backoff(10)).isLessThanOrEqualTo(Duration.ofMillis(1000));
+        }
+    }
+
+    @Test
+    public void budgetLimitsRetriesToFractionOfRequests() {
+        PmWebClientProperties.RetryBudgetProperties properties = new PmWebClientProperties.RetryBudgetProperties();
+        properties.setRatio(0.1);
+        properties.setMinRetriesPerSecond(0);
+        RetryBudget budget = new RetryBudget(properties);
+        for (int i = 0; i < 50; i++) {
+            budget.onRequest();
+        }
+
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (budget.tryRetry()) {
+                allowed++;
+            }
+        }
+
+        assertThat(allowed).isEqualTo(5);
+    }
+}
@@ -0,0 +1,37 @@
+package cn.pinming.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/28 15:20
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void allowsBurstThenRejects() {
+        TokenBucket bucket = new TokenBucket(1, 3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.reserve(0)).isEqualTo(0);
+        }
+        assertThat(bucket.reserve(0)).isEqualTo(TokenBucket.REJECTED);
+    }
+
+    @Test
+    public void waitsWithinMaxWait() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        assertThat(bucket.reserve(0)).isEqualTo(0);
+
+        long wait = bucket.reserve(TimeUnit.SECONDS.toNanos(1));
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        // 第三个请求排在第二个之后
+        long next = bucket.reserve(TimeUnit.SECONDS.toNanos(1));
+        assertThat(next).isGreaterThan(wait);
+        assertThat(bucket.reserve(TimeUnit.MILLISECONDS.toNanos(150))).isEqualTo(TokenBucket.REJECTED);
+    }
+}
@@ -0,0 +1,170 @@
+package cn.pinming.util;
+
+import cn.pinming.annotation.ApiServer;
+import cn.pinming.annotation.DownloadTo;
+import cn.pinming.annotation.PlainRequestBody;
+import cn.pinming.annotation.RequestForm;
+import cn.pinming.bean.InvocationPlan;
+import cn.pinming.bean.MethodInfo;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/01/11 14:20
+ */
+public class MetaInfoUtilTest {
+
+    interface SampleApi {
+
+        @GetMapping("/")
+        Flux<String> list();
+
+        @GetMapping("/{id}")
+        Mono<String> get(@PathVariable("id") String id, @RequestHeader("token") String token);
+
+        @PostMapping("/")
+        Mono<String> create(@RequestBody Mono<String> body, @RequestHeader Map<String, String> headers);
+
+        @PostMapping("/form")
+        Mono<String> form(@RequestForm Mono<MultiValueMap<String, ?>> form);
+
+        @PostMapping("/raw")
+        Mono<String> raw(@PlainRequestBody(contentType = MediaType.TEXT_PLAIN_VALUE) Mono<String> body);
+    }
+
+    interface ExtendedApi extends SampleApi {
+    }
+
+    @ApiServer(mediaType = "application/cbor")
+    interface CborApi extends SampleApi {
+    }
+
+    interface DownloadApi {
+
+        @GetMapping("/export")
+        Flux<DataBuffer> stream();
+
+        @GetMapping("/export/{id}")
+        Mono<Long> save(@PathVariable("id") String id, @DownloadTo Path target);
+
+        @PostMapping("/forward")
+        Mono<byte[]> forward(@PlainRequestBody(contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE) Flux<DataBuffer> body);
+
+        @PostMapping("/upload")
+        Mono<Void> upload(@PlainRequestBody(contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE) Path file);
+    }
+
+    @Test
+    public void compileAllMethods() {
+        Map<Method, InvocationPlan> plans = MetaInfoUtil.compileInvocationPlans(SampleApi.class);
+        assertThat(plans).hasSize(5);
+    }
+
+    @Test
+    public void inheritedMethodsBelongToTheProxiedInterface() throws NoSuchMethodException {
+        Map<Method, InvocationPlan> plans = MetaInfoUtil.compileInvocationPlans(ExtendedApi.class);
+        InvocationPlan plan = plans.get(SampleApi.class.getMethod("list"));
+        assertThat(plan.getMethod().getDeclaringClass()).isEqualTo(SampleApi.class);
+        assertThat(plan.getClientType()).isEqualTo(ExtendedApi.class);
+    }
+
+    @Test
+    public void inheritedMethodsUseTheMediaTypeOfTheProxiedInterface() throws NoSuchMethodException {
+        Method create = SampleApi.class.getMethod("create", Mono.class, Map.class);
+        InvocationPlan plan = MetaInfoUtil.compileInvocationPlans(CborApi.class).get(create);
+        assertThat(plan.getRequestContentType()).isEqualTo("application/cbor");
+        assertThat(plan.getAccept()).isEqualTo("application/cbor");
+
+        InvocationPlan json = MetaInfoUtil.compileInvocationPlan(create);
+        assertThat(json.getRequestContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(json.getAccept()).isNull();
+    }
+
+    @Test
+    public void bindPathVariableAndHeader() throws NoSuchMethodException {
+        Method method = SampleApi.class.getMethod("get", String.class, String.class);
+        InvocationPlan plan = MetaInfoUtil.compileInvocationPlan(method);
+        assertThat(plan.getInvokeType()).isEqualTo(InvocationPlan.InvokeType.REST);
+        assertThat(plan.getHttpMethod()).isEqualTo(HttpMethod.GET);
+
+        MethodInfo first = plan.bind(new Object[]{"1", "t1"});
+        MethodInfo second = plan.bind(new Object[]{"2", "t2"});
+        assertThat(first.getUrl()).isEqualTo("/{id}");
+        assertThat(first.getParams()).containsEntry("id", "1");
+        assertThat(first.getRequestHeaders()).containsEntry("token", "t1");
+        assertThat(second.getParams()).containsEntry("id", "2");
+        assertThat(second.getRequestHeaders()).containsEntry("token", "t2");
+    }
+
+    @Test
+    public void bindBodyAndHeaderMap() throws NoSuchMethodException {
+        Method method = SampleApi.class.getMethod("create", Mono.class, Map.class);
+        Mono<String> body = Mono.just("body");
+        MethodInfo methodInfo = MetaInfoUtil.extractMethodInfo(method, new Object[]{body, Collections.singletonMap("h", "v")});
+        assertThat(methodInfo.getBody()).isSameAs(body);
+        assertThat(methodInfo.getReqeustContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(methodInfo.getRequestHeaders()).containsEntry("h", "v");
+        assertThat(methodInfo.getParams()).isEmpty();
+    }
+
+    @Test
+    public void resolveInvokeType() throws NoSuchMethodException {
+        InvocationPlan form = MetaInfoUtil.compileInvocationPlan(SampleApi.class.getMethod("form", Mono.class));
+        assertThat(form.getInvokeType()).isEqualTo(InvocationPlan.InvokeType.FORM);
+        MethodInfo formInfo = form.bind(new Object[]{Mono.just(new LinkedMultiValueMap<String, String>())});
+        assertThat(formInfo.getFormData()).isNotNull();
+
+        InvocationPlan raw = MetaInfoUtil.compileInvocationPlan(SampleApi.class.getMethod("raw", Mono.class));
+        assertThat(raw.getInvokeType()).isEqualTo(InvocationPlan.InvokeType.PLAIN);
+        assertThat(raw.getRequestContentType()).isEqualTo(MediaType.TEXT_PLAIN_VALUE);
+
+        InvocationPlan list = MetaInfoUtil.compileInvocationPlan(SampleApi.class.getMethod("list"));
+        assertThat(list.isReturnFlux()).isTrue();
+        assertThat(list.bind(null).getParams()).isEmpty();
+    }
+
+    @Test
+    public void streamingMethodsBypassDecoders() throws NoSuchMethodException {
+        InvocationPlan stream = MetaInfoUtil.compileInvocationPlan(DownloadApi.class.getMethod("stream"));
+        assertThat(stream.getInvokeType()).isEqualTo(InvocationPlan.InvokeType.DOWNLOAD);
+
+        InvocationPlan save = MetaInfoUtil.compileInvocationPlan(DownloadApi.class.getMethod("save", String.class, Path.class));
+        assertThat(save.getInvokeType()).isEqualTo(InvocationPlan.InvokeType.DOWNLOAD);
+        Path target = Paths.get("report.csv");
+        MethodInfo info = save.bind(new Object[]{"1", target});
+        assertThat(info.getDownloadTarget()).isSameAs(target);
+        assertThat(info.getParams()).containsEntry("id", "1");
+    }
+
+    @Test
+    public void rawPlainBodiesBypassEncoders() throws NoSuchMethodException {
+        InvocationPlan forward = MetaInfoUtil.compileInvocationPlan(DownloadApi.class.getMethod("forward", Flux.class));
+        assertThat(forward.getInvokeType()).isEqualTo(InvocationPlan.InvokeType.PLAIN);
+        MethodInfo forwardInfo = forward.bind(new Object[]{Flux.<DataBuffer>empty()});
+        assertThat(forwardInfo.getBodyInserter()).isNotNull();
+        assertThat(forwardInfo.getBody()).isNull();
+
+        InvocationPlan upload = MetaInfoUtil.compileInvocationPlan(DownloadApi.class.getMethod("upload", Path.class));
+        assertThat(upload.bind(new Object[]{Paths.get("report.csv")}).getBodyInserter()).isNotNull();
+    }
+}
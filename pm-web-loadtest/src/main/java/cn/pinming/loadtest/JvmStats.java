@@ -0,0 +1,62 @@
+package cn.pinming.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * GC 次数、GC 耗时和已分配内存的快照, 两次快照相减得到压测期间的数据
+ * <p>
+ * 已分配内存是所有存活线程的累计分配量, 压测期间结束的线程分配的内存统计不到
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+@Getter
+@AllArgsConstructor
+public class JvmStats {
+
+    private final long gcCount;
+
+    private final long gcMillis;
+
+    /**
+     * 不支持统计线程分配量的 JVM 上为 -1
+     */
+    private final long allocatedBytes;
+
+    public static JvmStats snapshot() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new JvmStats(count, millis, allocatedBytes());
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : sunThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // 已经结束的线程返回 -1
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    public JvmStats minus(JvmStats before) {
+        long allocated = allocatedBytes < 0 || before.allocatedBytes < 0 ? -1 : allocatedBytes - before.allocatedBytes;
+        return new JvmStats(gcCount - before.gcCount, gcMillis - before.gcMillis, allocated);
+    }
+}
@@ -0,0 +1,55 @@
+package cn.pinming.loadtest;
+
+import java.util.Random;
+
+/**
+ * 桩服务的延迟分布
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+public enum LatencyDistribution {
+    /**
+     * 固定延迟
+     */
+    FIXED {
+        @Override
+        double sample(Random random, double mean) {
+            return mean;
+        }
+    },
+    /**
+     * [0, 2 * mean) 均匀分布
+     */
+    UNIFORM {
+        @Override
+        double sample(Random random, double mean) {
+            return random.nextDouble() * 2 * mean;
+        }
+    },
+    /**
+     * 指数分布, 大多数请求很快, 少数很慢
+     */
+    EXPONENTIAL {
+        @Override
+        double sample(Random random, double mean) {
+            return -mean * Math.log(1 - random.nextDouble());
+        }
+    },
+    /**
+     * 对数正态分布(sigma = 1), 比指数分布的长尾更重, 接近真实服务的耗时
+     */
+    LOG_NORMAL {
+        @Override
+        double sample(Random random, double mean) {
+            // E[X] = exp(mu + sigma^2 / 2)
+            double mu = Math.log(mean) - 0.5;
+            return Math.exp(mu + random.nextGaussian());
+        }
+    };
+
+    /**
+     * @return 延迟毫秒数
+     */
+    abstract double sample(Random random, double mean);
+}
@@ -0,0 +1,116 @@
+package cn.pinming.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 开放模型的压测: 按固定到达率发出请求, 不等待之前的请求完成
+ * <p>
+ * 耗时从请求计划发出的时间算起, 客户端或发压线程卡顿导致请求晚发时, 这段等待也计入耗时,
+ * 避免 coordinated omission 把慢的时间段从结果里"省略"掉
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+@Slf4j
+public class LoadGenerator {
+
+    /**
+     * 停止发压后等待未完成请求的最长时间
+     */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final int rate;
+
+    private final int maxOutstanding;
+
+    public LoadGenerator(int rate, int maxOutstanding) {
+        this.rate = rate;
+        this.maxOutstanding = maxOutstanding;
+    }
+
+    public LoadResult run(Supplier<Mono<?>> call, Duration duration) {
+        Histogram responseTime = new ConcurrentHistogram(3);
+        Histogram serviceTime = new ConcurrentHistogram(3);
+        LongAdder succeeded = new LongAdder();
+        Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicLong lastCompletion = new AtomicLong();
+
+        JvmStats before = JvmStats.snapshot();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long scheduled = 0;
+        long dropped = 0;
+        while (true) {
+            long intended = intendedStart(start, scheduled, rate);
+            if (intended >= end) {
+                break;
+            }
+            scheduled++;
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            if (outstanding.get() >= maxOutstanding) {
+                // 没有发出的请求不在耗时里, 单独统计, 不能当成失败
+                dropped++;
+                continue;
+            }
+            outstanding.incrementAndGet();
+            long actual = now;
+            Mono.defer(call).subscribe(null,
+                    e -> {
+                        errors.computeIfAbsent(e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+                        complete(intended, actual, responseTime, serviceTime, outstanding, lastCompletion);
+                    },
+                    () -> {
+                        succeeded.increment();
+                        complete(intended, actual, responseTime, serviceTime, outstanding, lastCompletion);
+                    });
+        }
+
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        if (outstanding.get() > 0) {
+            log.warn("{} requests still outstanding after {}", outstanding.get(), DRAIN_TIMEOUT);
+        }
+        JvmStats jvmStats = JvmStats.snapshot().minus(before);
+
+        Map<String, Long> errorCounts = new TreeMap<>();
+        errors.forEach((key, count) -> errorCounts.put(key, count.sum()));
+        long elapsed = Math.max(lastCompletion.get(), end) - start;
+        return new LoadResult(scheduled, dropped, succeeded.sum(), errorCounts, responseTime, serviceTime, elapsed, jvmStats);
+    }
+
+    /**
+     * 第 index 个请求计划发出的时间, 到达间隔固定为 1s / rate, 不受之前请求的影响
+     */
+    static long intendedStart(long start, long index, int rate) {
+        return start + index * TimeUnit.SECONDS.toNanos(1) / rate;
+    }
+
+    private static void complete(long intended, long actual, Histogram responseTime, Histogram serviceTime,
+                                 AtomicInteger outstanding, AtomicLong lastCompletion) {
+        long now = System.nanoTime();
+        responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(now - intended));
+        serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(now - actual));
+        lastCompletion.accumulateAndGet(now, Math::max);
+        outstanding.decrementAndGet();
+    }
+}
@@ -0,0 +1,60 @@
+package cn.pinming.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+/**
+ * 一轮压测的结果, 耗时单位是微秒
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+@Getter
+@AllArgsConstructor
+public class LoadResult {
+
+    /**
+     * 按计划应该发出的请求数
+     */
+    private final long scheduled;
+
+    /**
+     * 未完成的请求达到 maxOutstanding 时没有发出的请求数; 不为 0 时 responseTime 缺少这些请求, 不再修正 coordinated omission
+     */
+    private final long dropped;
+
+    private final long succeeded;
+
+    /**
+     * 按异常类型统计的失败数
+     */
+    private final Map<String, Long> errors;
+
+    /**
+     * 从计划发出时间算起的耗时, 修正了 coordinated omission
+     */
+    private final Histogram responseTime;
+
+    /**
+     * 从实际发出时间算起的耗时
+     */
+    private final Histogram serviceTime;
+
+    /**
+     * 从第一个请求计划发出到最后一个请求结束的时间
+     */
+    private final long elapsedNanos;
+
+    private final JvmStats jvmStats;
+
+    public long completed() {
+        return succeeded + errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public double throughput() {
+        return succeeded * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,109 @@
+package cn.pinming.loadtest;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.fixture.ClientFixture;
+import cn.pinming.fixture.StubServer;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Mono;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * 压测入口: 启动桩服务(或使用 --url 指定的服务), 预热后按固定到达率发压, 输出耗时分位数、吞吐量和 GC、内存分配统计
+ * <p>
+ * {@code java -jar pm-web-loadtest/target/loadtest.jar --rate=2000 --durationSeconds=60 --errorRate=0.01}
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    public static void main(String[] args) throws FileNotFoundException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        StubServer server = options.getUrl() == null ? startStub(options) : null;
+        String url = server == null ? options.getUrl() : server.url();
+        PmWebClientProperties properties = new PmWebClientProperties();
+        properties.setMaxConnections(options.getMaxConnections());
+        try (ClientFixture<LoadTestApi> client = new ClientFixture<>(LoadTestApi.class, url, properties, Collections.emptyList())) {
+            Supplier<Mono<?>> call = call(client.client(), options);
+            LoadGenerator generator = new LoadGenerator(options.getRate(), options.getMaxOutstanding());
+            if (options.getWarmupSeconds() > 0) {
+                log.info("warming up for {}s", options.getWarmupSeconds());
+                generator.run(call, Duration.ofSeconds(options.getWarmupSeconds()));
+            }
+            log.info("running {} {} req/s for {}s against {}", options.getMethod(), options.getRate(), options.getDurationSeconds(), url);
+            LoadResult result = generator.run(call, Duration.ofSeconds(options.getDurationSeconds()));
+            report(options, result, System.out);
+            if (options.getHistogramFile() != null) {
+                try (PrintStream out = new PrintStream(options.getHistogramFile())) {
+                    // 毫秒
+                    result.getResponseTime().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static StubServer startStub(LoadTestOptions options) {
+        StubRoutes routes = new StubRoutes(options);
+        StubServer server = new StubServer(routes);
+        log.info("stub server started at {}, latency: {} {}ms, error rate: {}, payload: {} bytes", server.url(),
+                options.getLatency(), options.getLatencyMillis(), options.getErrorRate(), routes.payloadBytes());
+        return server;
+    }
+
+    private static Supplier<Mono<?>> call(LoadTestApi api, LoadTestOptions options) {
+        if ("POST".equalsIgnoreCase(options.getMethod())) {
+            Payload payload = Payload.ofSize(options.getPayloadSize());
+            return () -> api.post(Mono.just(payload));
+        }
+        return api::get;
+    }
+
+    static void report(LoadTestOptions options, LoadResult result, PrintStream out) {
+        out.printf("%n==== %s %d req/s, %ds ====%n", options.getMethod(), options.getRate(), options.getDurationSeconds());
+        out.printf("scheduled: %d, dropped: %d, completed: %d, succeeded: %d, errors: %s%n",
+                result.getScheduled(), result.getDropped(), result.completed(), result.getSucceeded(), result.getErrors());
+        out.printf("throughput: %.1f req/s%n", result.throughput());
+        if (result.getDropped() > 0) {
+            // 丢掉的正是排队最久的那部分请求, 分位数会偏低
+            out.printf("WARNING: %d arrivals dropped at maxOutstanding=%d, response time below is NOT CO corrected%n",
+                    result.getDropped(), options.getMaxOutstanding());
+            printLatency(out, "response time (ms, INVALID)", result.getResponseTime());
+        } else {
+            printLatency(out, "response time (ms, CO corrected)", result.getResponseTime());
+        }
+        printLatency(out, "service time  (ms)", result.getServiceTime());
+        JvmStats jvm = result.getJvmStats();
+        out.printf("gc: %d collections, %d ms%n", jvm.getGcCount(), jvm.getGcMillis());
+        if (jvm.getAllocatedBytes() >= 0) {
+            long completed = Math.max(1, result.completed());
+            out.printf("allocated: %.1f MB, %.1f KB/request%n",
+                    jvm.getAllocatedBytes() / 1024.0 / 1024.0, jvm.getAllocatedBytes() / 1024.0 / completed);
+        }
+    }
+
+    private static void printLatency(PrintStream out, String name, Histogram histogram) {
+        StringBuilder line = new StringBuilder(name).append(':');
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(" p%s=%.2f", formatPercentile(percentile), histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        line.append(String.format(" max=%.2f mean=%.2f", histogram.getMaxValue() / 1000.0, histogram.getMean() / 1000.0));
+        out.println(line);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.floor(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,24 @@
+package cn.pinming.loadtest;
+
+import cn.pinming.annotation.ApiServer;
+import cn.pinming.fixture.ClientFixture;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import reactor.core.publisher.Mono;
+
+/**
+ * 压测使用的客户端接口, 地址由 {@link ClientFixture} 解析
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+@ApiServer(ClientFixture.URL_PLACEHOLDER)
+public interface LoadTestApi {
+
+    @GetMapping("/payload")
+    Mono<Payload> get();
+
+    @PostMapping("/payload")
+    Mono<Payload> post(@RequestBody Mono<Payload> payload);
+}
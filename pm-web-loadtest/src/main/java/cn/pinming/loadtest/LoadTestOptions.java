@@ -0,0 +1,99 @@
+package cn.pinming.loadtest;
+
+import lombok.Data;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+
+/**
+ * 压测参数, 命令行按 --name=value 指定, 比如 --rate=2000 --latency=EXPONENTIAL --errorRate=0.01
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+@Data
+public class LoadTestOptions {
+
+    /**
+     * Target arrival rate in requests per second. Requests are sent on schedule whether or not earlier ones have completed.
+     */
+    private int rate = 1000;
+
+    /**
+     * Warm-up time in seconds, results are discarded.
+     */
+    private int warmupSeconds = 10;
+
+    /**
+     * Measured run time in seconds.
+     */
+    private int durationSeconds = 60;
+
+    /**
+     * Request method sent by the client, GET or POST (the POST body has the same size as the response).
+     */
+    private String method = "GET";
+
+    /**
+     * Server to test. When empty an in-process stub server is started with the options below.
+     */
+    private String url;
+
+    /**
+     * Stub server latency distribution.
+     */
+    private LatencyDistribution latency = LatencyDistribution.EXPONENTIAL;
+
+    /**
+     * Mean stub server latency in milliseconds.
+     */
+    private double latencyMillis = 5;
+
+    /**
+     * Fraction of stub responses that get an extra spike latency, to model a slow tail.
+     */
+    private double spikeRate = 0;
+
+    /**
+     * Extra latency of a spike in milliseconds.
+     */
+    private long spikeMillis = 200;
+
+    /**
+     * Fraction of stub responses that fail with 500.
+     */
+    private double errorRate = 0;
+
+    /**
+     * Stub response body size in bytes.
+     */
+    private int payloadSize = 1024;
+
+    /**
+     * Client connection pool size.
+     */
+    private int maxConnections = 100;
+
+    /**
+     * Arrivals while this many requests are outstanding are not sent, so an overloaded run cannot exhaust memory.
+     * They are reported as dropped, and the CO-corrected response time is then flagged as invalid.
+     */
+    private int maxOutstanding = 10000;
+
+    /**
+     * If set, the CO-corrected response time distribution is also written to this file in HdrHistogram percentile format.
+     */
+    private String histogramFile;
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        BeanWrapper wrapper = new BeanWrapperImpl(options);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("参数格式为 --name=value: " + arg);
+            }
+            int index = arg.indexOf('=');
+            wrapper.setPropertyValue(arg.substring(2, index), arg.substring(index + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,33 @@
+package cn.pinming.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 压测报文, 用 data 的长度控制报文大小
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Payload {
+
+    private String id;
+
+    private String data;
+
+    /**
+     * 生成序列化后约为 size 字节的报文
+     */
+    public static Payload ofSize(int size) {
+        StringBuilder data = new StringBuilder(size);
+        // {"id":"1","data":""} 本身占 20 字节
+        for (int i = 0; i < Math.max(0, size - 20); i++) {
+            data.append((char) ('a' + i % 26));
+        }
+        return new Payload("1", data.toString());
+    }
+}
@@ -0,0 +1,65 @@
+package cn.pinming.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.HttpServerRoutes;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * 压测桩服务的路由, 按参数模拟延迟分布、错误率和报文大小, 不依赖数据库
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/05 10:00
+ */
+public class StubRoutes implements Consumer<HttpServerRoutes> {
+
+    private final LoadTestOptions options;
+
+    private final byte[] payload;
+
+    public StubRoutes(LoadTestOptions options) {
+        this.options = options;
+        try {
+            this.payload = new ObjectMapper().writeValueAsBytes(Payload.ofSize(options.getPayloadSize()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void accept(HttpServerRoutes routes) {
+        routes.get("/payload", (request, response) -> respond(response))
+                // 读完请求体再响应
+                .post("/payload", (request, response) -> request.receive().then().then(Mono.defer(() -> Mono.from(respond(response)))));
+    }
+
+    public int payloadBytes() {
+        return payload.length;
+    }
+
+    private Publisher<Void> respond(HttpServerResponse response) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double delay = options.getLatency().sample(random, options.getLatencyMillis());
+        if (random.nextDouble() < options.getSpikeRate()) {
+            delay += options.getSpikeMillis();
+        }
+        boolean error = random.nextDouble() < options.getErrorRate();
+        Mono<Void> send = Mono.defer(() -> {
+            if (error) {
+                return Mono.from(response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).send());
+            }
+            return Mono.from(response.header("Content-Type", "application/json")
+                    .send(Mono.fromSupplier(() -> Unpooled.wrappedBuffer(payload))));
+        });
+        long micros = (long) (delay * 1000);
+        return micros <= 0 ? send : Mono.delay(Duration.ofNanos(micros * 1000)).then(send);
+    }
+}
@@ -0,0 +1,74 @@
+package cn.pinming.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/09 15:00
+ */
+public class LoadGeneratorTest {
+
+    private static final long MILLIS_IN_MICROS = 1000;
+
+    @Test
+    public void arrivalsAreEvenlySpaced() {
+        assertThat(LoadGenerator.intendedStart(0, 0, 1000)).isZero();
+        assertThat(LoadGenerator.intendedStart(0, 1, 1000)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(LoadGenerator.intendedStart(500, 2000, 1000)).isEqualTo(500 + TimeUnit.SECONDS.toNanos(2));
+        // 间隔不是整数纳秒时不累积误差
+        assertThat(LoadGenerator.intendedStart(0, 3, 3)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(LoadGenerator.intendedStart(0, 1, 3)).isEqualTo(333_333_333);
+    }
+
+    @Test
+    public void stallsOfTheGeneratorCountInResponseTimeOnly() {
+        AtomicInteger calls = new AtomicInteger();
+        // 第一个请求让发压线程卡住 100ms, 之后计划在这段时间里发出的请求都晚发
+        LoadResult result = new LoadGenerator(100, 1000).run(() -> {
+            if (calls.incrementAndGet() == 1) {
+                sleep(100);
+            }
+            return Mono.empty();
+        }, Duration.ofMillis(200));
+
+        assertThat(result.getScheduled()).isEqualTo(20);
+        assertThat(result.getDropped()).isZero();
+        assertThat(result.getSucceeded()).isEqualTo(20);
+        // 计划在 0~80ms 发出的请求都晚了 20ms 以上
+        assertThat(slowerThan(result.getResponseTime(), 15)).isGreaterThanOrEqualTo(9);
+        // 从实际发出时间算起, 只有卡住的那个请求是慢的
+        assertThat(slowerThan(result.getServiceTime(), 15)).isEqualTo(1);
+    }
+
+    @Test
+    public void arrivalsAboveMaxOutstandingAreDroppedNotFailed() {
+        LoadResult result = new LoadGenerator(100, 1).run(() -> Mono.delay(Duration.ofMillis(200)), Duration.ofMillis(100));
+
+        assertThat(result.getScheduled()).isEqualTo(10);
+        assertThat(result.getDropped()).isEqualTo(9);
+        assertThat(result.getSucceeded()).isEqualTo(1);
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.completed()).isEqualTo(1);
+        assertThat(result.getResponseTime().getTotalCount()).isEqualTo(1);
+    }
+
+    private static long slowerThan(Histogram histogram, long millis) {
+        return histogram.getCountBetweenValues(millis * MILLIS_IN_MICROS, Math.max(histogram.getMaxValue(), millis * MILLIS_IN_MICROS));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cn.pinming.fixture;
+
+import cn.pinming.autoconfigure.PmWebClientProperties;
+import cn.pinming.http.codec.CodecRegistry;
+import cn.pinming.http.resources.PmWebClientResources;
+import cn.pinming.interceptor.Interceptor;
+import cn.pinming.interceptor.InterceptorChain;
+import cn.pinming.metrics.PmWebClientMetrics;
+import cn.pinming.proxy.GeneratedProxyCreator;
+import cn.pinming.proxy.JDKProxyCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 不启动 Spring 容器, 按自动配置的方式组装客户端, 供基准测试和压测工具使用
+ * <p>
+ * 接口的服务地址写成 {@link #URL_PLACEHOLDER}, 创建时替换成传入的地址, 通常是 {@link StubServer#url()}
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+public class ClientFixture<T> implements AutoCloseable {
+
+    public static final String URL_PLACEHOLDER = "${pm.fixture.url}";
+
+    private final PmWebClientMetrics metrics;
+
+    private final PmWebClientResources resources;
+
+    private final InterceptorChain interceptorChain;
+
+    private final T client;
+
+    public ClientFixture(Class<T> type, String url) {
+        this(type, url, new PmWebClientProperties(), Collections.emptyList());
+    }
+
+    public ClientFixture(Class<T> type, String url, PmWebClientProperties properties, List<Interceptor> interceptors) {
+        this(type, url, properties, interceptors, false);
+    }
+
+    /**
+     * @param generated 是否使用编译时生成的实现类, 否则使用 jdk 动态代理
+     */
+    public ClientFixture(Class<T> type, String url, PmWebClientProperties properties, List<Interceptor> interceptors, boolean generated) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.addEmbeddedValueResolver(value -> value.replace(URL_PLACEHOLDER, url));
+        this.metrics = new PmWebClientMetrics(new SimpleMeterRegistry(), properties.getMetrics());
+        this.resources = new PmWebClientResources(properties, metrics, new CodecRegistry());
+        this.interceptorChain = new InterceptorChain(interceptors);
+        JDKProxyCreator creator = generated
+                ? new GeneratedProxyCreator(properties, beanFactory, interceptorChain, resources, metrics)
+                : new JDKProxyCreator(properties, beanFactory, interceptorChain, resources, metrics);
+        this.client = type.cast(creator.createProxy(type));
+    }
+
+    public T client() {
+        return client;
+    }
+
+    @Override
+    public void close() {
+        resources.destroy();
+        interceptorChain.destroy();
+        metrics.destroy();
+    }
+}
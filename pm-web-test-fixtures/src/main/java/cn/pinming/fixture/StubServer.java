@@ -0,0 +1,35 @@
+package cn.pinming.fixture;
+
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRoutes;
+
+import java.util.function.Consumer;
+
+/**
+ * 进程内的 Reactor Netty 桩服务, 只监听本机的随机端口, 路由由调用方定义
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2021/02/04 9:30
+ */
+public class StubServer implements AutoCloseable {
+
+    private final DisposableServer server;
+
+    public StubServer(Consumer<? super HttpServerRoutes> routes) {
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes)
+                .bindNow();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}